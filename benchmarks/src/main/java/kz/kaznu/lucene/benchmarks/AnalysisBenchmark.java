@@ -0,0 +1,87 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query QPS of 64 concurrent clients with a new RussianAnalyzer and MultiFieldQueryParser
+ * for every query (as BasicSearchExamples did before) against parsers of MessageAnalysis.
+ * parse* methods leave the search out and show the cost of parsing alone
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar AnalysisBenchmark -p docs=1000000
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class AnalysisBenchmark {
+    private static final int LIMIT = 10;
+    private static final String[] FIELDS = {"body", "title"};
+
+    @Param({"1000000"})
+    public int docs;
+
+    private IndexReader reader;
+    private BasicSearchExamples search;
+    private String[] texts;
+
+    @State(Scope.Thread)
+    public static class Client {
+        private int next;
+
+        String nextText(final String[] texts) {
+            next = (next + 1) % texts.length;
+            return texts[next];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        search = new BasicSearchExamples(reader);
+        texts = new String[16];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = CorpusGenerator.word(400 + i) + " " + CorpusGenerator.word(600 + 3 * i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public SearchResults newParserPerQuery(final Client client) throws IOException, ParseException {
+        final MultiFieldQueryParser queryParser = new MultiFieldQueryParser(FIELDS, new RussianAnalyzer());
+        return search.search(queryParser.parse(client.nextText(texts)), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    public SearchResults sharedPipeline(final Client client) throws IOException, ParseException {
+        return search.search(search.multiFieldQuery(client.nextText(texts)), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    public Query parseWithNewParser(final Client client) throws ParseException {
+        return new MultiFieldQueryParser(FIELDS, new RussianAnalyzer()).parse(client.nextText(texts));
+    }
+
+    @Benchmark
+    public Query parseShared(final Client client) throws ParseException {
+        return MessageAnalysis.parse(FIELDS, client.nextText(texts));
+    }
+}
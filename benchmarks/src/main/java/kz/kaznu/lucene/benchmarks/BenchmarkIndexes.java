@@ -0,0 +1,50 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.index.BulkIndexer;
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.MessageIndexer;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Indexes of generated corpus shared by query benchmarks.
+ * Building 10M documents takes a while, so every index is built once and kept in
+ * -Dbench.dir (java.io.tmpdir/lucene-tutorial-bench by default) for the next runs and forks.
+ *
+ * Bump INDEX_VERSION whenever MessageToDocument changes what is indexed, so old indexes are rebuilt
+ */
+final class BenchmarkIndexes {
+    static final int INDEX_VERSION = 5;
+    private static final String COMPLETE_MARKER = "complete";
+
+    private BenchmarkIndexes() {
+    }
+
+    /**
+     * @param docs number of generated messages in the index
+     * @return indexer bound to ready to search index
+     */
+    static synchronized MessageIndexer forSize(final int docs) throws IOException {
+        final File folder = new File(baseDir(), "index-" + docs + "-v" + INDEX_VERSION);
+        final File marker = new File(folder, COMPLETE_MARKER);
+        final MessageIndexer indexer = new MessageIndexer(folder.getAbsolutePath());
+        if (!marker.exists()) {
+            FileUtils.deleteQuietly(folder);
+            System.out.println("Building benchmark index of " + docs + " documents in " + folder);
+            try (MessageIndexer builder = new MessageIndexer(folder.getAbsolutePath())) {
+                final BulkIndexer.Result result = new BulkIndexer()
+                        .index(new CorpusGenerator(docs), builder.openWriter(true, CommitPolicy.explicit()));
+                System.out.print(result);
+            }
+            FileUtils.touch(marker);
+        }
+        return indexer;
+    }
+
+    static File baseDir() {
+        return new File(System.getProperty("bench.dir",
+                new File(System.getProperty("java.io.tmpdir"), "lucene-tutorial-bench").getPath()));
+    }
+}
@@ -0,0 +1,181 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.model.Message;
+import kz.kaznu.lucene.utils.Helper;
+import kz.kaznu.lucene.utils.MessageStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic supply of synthetic news messages modeled on resources/tutorial.json:
+ * Russian titles and bodies, region arrays and creationDate strings in the same format.
+ *
+ * Words are taken from the tutorial messages with Zipf-like frequencies, a small share of
+ * made up words gives the long tail of rare terms that real news have.
+ * The same seed always produces the same corpus, so results are comparable across commits
+ */
+public class CorpusGenerator implements Iterator<Message> {
+    public static final long DEFAULT_SEED = 20160207L;
+
+    static final String[] REGIONS = {"ASTANA", "ALMATY", "ALMATY_REGION", "AKMOLA_REGION", "AKTOBE_REGION",
+            "KARAGANDA_REGION", "VKO_REGION", "GLOBAL"};
+    private static final String[] SYLLABLES = {"ка", "ра", "ту", "ли", "ме", "но", "за", "ст", "ов", "ий",
+            "ан", "ер", "ол", "ни", "ск", "да", "ви", "ре", "ко", "ма"};
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("MMM d, yyyy h:mm:ss a", Locale.ENGLISH);
+    private static final LocalDateTime FIRST_DATE = LocalDateTime.of(2015, 1, 1, 0, 0);
+    private static final int DATE_RANGE_SECONDS = 2 * 365 * 24 * 3600;
+    private static final double RARE_WORD_SHARE = 0.05;
+
+    private static volatile List<String> vocabulary;
+
+    private final Random random;
+    private final long count;
+    private long generated;
+
+    /**
+     * @param count how many messages to generate
+     * @param seed seed of the corpus
+     */
+    public CorpusGenerator(final long count, final long seed) {
+        this.count = count;
+        this.random = new Random(seed);
+    }
+
+    public CorpusGenerator(final long count) {
+        this(count, DEFAULT_SEED);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return generated < count;
+    }
+
+    @Override
+    public Message next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        generated++;
+        final Message message = new Message();
+        message.setTitle(sentence(6 + random.nextInt(6)));
+        message.setBody(sentence(40 + random.nextInt(120)));
+        message.setRegion(regions());
+        message.setCreationDate(DATE_FORMAT.format(FIRST_DATE.plusSeconds(random.nextInt(DATE_RANGE_SECONDS))));
+        return message;
+    }
+
+    /**
+     * @param rank 0 is the most frequent word of the corpus
+     * @return word of the vocabulary as it appears in generated text
+     */
+    public static String word(final int rank) {
+        return vocabulary().get(rank);
+    }
+
+    /**
+     * Creation date of the generated messages lies in [firstUnixTime, firstUnixTime + rangeSeconds)
+     * in the default time zone, as MessageToDocument parses it
+     */
+    public static long firstUnixTime() {
+        return FIRST_DATE.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    public static long rangeSeconds() {
+        return DATE_RANGE_SECONDS;
+    }
+
+    private String sentence(final int words) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            if (random.nextDouble() < RARE_WORD_SHARE) {
+                rareWord(text);
+            } else {
+                text.append(zipfWord());
+            }
+        }
+        return text.toString();
+    }
+
+    private String zipfWord() {
+        final List<String> words = vocabulary();
+        // rank ~ n^u gives frequencies falling roughly as 1/rank
+        final int rank = (int) Math.pow(words.size(), random.nextDouble()) - 1;
+        return words.get(Math.min(rank, words.size() - 1));
+    }
+
+    private void rareWord(final StringBuilder text) {
+        final int syllables = 3 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            text.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+    }
+
+    private String[] regions() {
+        final int size = 1 + random.nextInt(3);
+        final Set<String> regions = new LinkedHashSet<>();
+        while (regions.size() < size) {
+            regions.add(REGIONS[random.nextInt(REGIONS.length)]);
+        }
+        return regions.toArray(new String[regions.size()]);
+    }
+
+    private static List<String> vocabulary() {
+        if (vocabulary == null) {
+            synchronized (CorpusGenerator.class) {
+                if (vocabulary == null) {
+                    vocabulary = loadVocabulary();
+                }
+            }
+        }
+        return vocabulary;
+    }
+
+    /**
+     * Words of tutorial.json in order of first appearance, which is stable between runs
+     */
+    private static List<String> loadVocabulary() {
+        final Pattern wordPattern = Pattern.compile("[А-Яа-яЁё]{3,}");
+        final Set<String> words = new LinkedHashSet<>();
+        try (InputStream in = CorpusGenerator.class.getClassLoader().getResourceAsStream("tutorial.json")) {
+            final File copy = File.createTempFile("tutorial", ".json");
+            try {
+                Files.copy(in, copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                try (MessageStream messages = Helper.openMessageStream(copy)) {
+                    while (messages.hasNext()) {
+                        final Message message = messages.next();
+                        final Matcher matcher = wordPattern.matcher(message.getTitle() + " " + message.getBody());
+                        while (matcher.find()) {
+                            words.add(matcher.group().toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(copy.toPath());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read tutorial.json from classpath", e);
+        }
+        return new ArrayList<>(words);
+    }
+}
@@ -0,0 +1,73 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.SearchCursor;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One page of 20 hits deep in the results of a common word.
+ * sliced asks for page * 20 hits and drops the first ones as the UI did,
+ * cursor and newestCursor continue from the cursor of the previous page and should not depend on the page
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeepPagingBenchmark {
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000000"})
+    public int docs;
+
+    @Param({"1", "10", "100", "1000"})
+    public int page;
+
+    private IndexReader reader;
+    private BasicSearchExamples search;
+    private Query query;
+    private SearchCursor relevanceCursor;
+    private SearchCursor newestCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        search = new BasicSearchExamples(reader);
+        query = search.bodyQuery(CorpusGenerator.word(0));
+        // walk to the requested page once, as a client following next links would
+        for (int i = 1; i < page; i++) {
+            relevanceCursor = search.searchAfter(query, relevanceCursor, PAGE_SIZE).getNextCursor();
+            newestCursor = search.searchNewestAfter(query, newestCursor, PAGE_SIZE).getNextCursor();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public SearchResults sliced() throws IOException {
+        final SearchResults all = search.search(query, page * PAGE_SIZE);
+        return new SearchResults(all.getTotalHits(),
+                all.getHits().subList(Math.min(all.getHits().size(), (page - 1) * PAGE_SIZE), all.getHits().size()));
+    }
+
+    @Benchmark
+    public SearchResults cursor() throws IOException {
+        return search.searchAfter(query, relevanceCursor, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchResults newestCursor() throws IOException {
+        return search.searchNewestAfter(query, newestCursor, PAGE_SIZE);
+    }
+}
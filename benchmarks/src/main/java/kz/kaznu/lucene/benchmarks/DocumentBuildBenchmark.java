@@ -0,0 +1,77 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.index.MessageDocumentBuilder;
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.index.IndexOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting one message to a Lucene document.
+ * Run with the GC profiler to see allocations per document (gc.alloc.rate.norm):
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar DocumentBuildBenchmark -prof gc
+ * </pre>
+ * legacy is a copy of MessageToDocument.createWith before FieldType and date format were shared
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentBuildBenchmark {
+    private final String title = "О ДТП с полицейским рассказали в ДВД Астаны";
+    private final String body = "В ДВД Астаны рассказали подробности ДТП с участием полицейского, сообщает корреспондент";
+    private final String[] regions = {"Астана", "AKMOLA_REGION", "AKTOBE_REGION"};
+    private final String date = "Feb 7, 2016 7:55:20 PM";
+    private final MessageDocumentBuilder builder = new MessageDocumentBuilder();
+
+    @Benchmark
+    public Document legacy() {
+        return legacyCreateWith(title, body, regions, date);
+    }
+
+    @Benchmark
+    public Document createWith() {
+        return MessageToDocument.createWith(title, body, regions, date);
+    }
+
+    @Benchmark
+    public Document reusableBuilder() {
+        return builder.build(title, body, regions, date);
+    }
+
+    private static Document legacyCreateWith(final String titleStr, final String bodyStr,
+                                             final String[] regionStr, final String createDateStr) {
+        final Document document = new Document();
+
+        final FieldType textIndexedType = new FieldType();
+        textIndexedType.setStored(true);
+        textIndexedType.setIndexOptions(IndexOptions.DOCS);
+        textIndexedType.setTokenized(true);
+
+        DateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy hh:mm:ss a", Locale.ENGLISH);
+        long unixTime;
+        try {
+            unixTime = dateFormat.parse(createDateStr).getTime() / 1000;
+        } catch (ParseException e) {
+            unixTime = 0L;
+        }
+
+        document.add(new Field("title", titleStr, textIndexedType));
+        document.add(new Field("body", bodyStr, textIndexedType));
+        document.add(new Field("region", String.join(" ", regionStr), textIndexedType));
+        document.add(new LongField("creationDate", unixTime, Field.Store.YES));
+        return document;
+    }
+}
@@ -0,0 +1,64 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.DateInterval;
+import kz.kaznu.lucene.search.FacetedResults;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top 10 hits alone against the same search with region counts and daily histogram.
+ * Faceted search should stay below twice the cost of bare
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FacetBenchmark {
+
+    @Param({"1000000"})
+    public int docs;
+
+    /**
+     * Rank of the searched word, 0 matches the most documents
+     */
+    @Param({"0", "50"})
+    public int wordRank;
+
+    @Param({"DAY", "MONTH"})
+    public DateInterval interval;
+
+    private IndexReader reader;
+    private BasicSearchExamples search;
+    private Query query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        search = new BasicSearchExamples(reader);
+        query = search.bodyQuery(CorpusGenerator.word(wordRank));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public SearchResults bare() throws IOException {
+        return search.search(query, 10, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    public FacetedResults faceted() throws IOException {
+        return search.searchWithFacets(query, 10, interval, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+}
@@ -0,0 +1,68 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.MessageSearcherFactory;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Different text with the same region and date filters, as in searchByManyQueries.
+ * With filterCache the filters are computed once per segment and then read from a bitset
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterCacheBenchmark {
+    private static final String[] REGIONS = {"ALMATY_REGION"};
+    private static final int WORDS = 64;
+
+    @Param({"10000", "1000000"})
+    public int docs;
+
+    @Param({"false", "true"})
+    public boolean filterCache;
+
+    private IndexReader reader;
+    private IndexSearcher searcher;
+    private Query[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        searcher = new IndexSearcher(reader);
+        if (filterCache) {
+            MessageSearcherFactory.configure(searcher);
+        } else {
+            searcher.setQueryCache(null);
+        }
+        final BasicSearchExamples search = new BasicSearchExamples(reader);
+        final long from = CorpusGenerator.firstUnixTime();
+        final long[] dateWindow = {from, from + CorpusGenerator.rangeSeconds() / 2};
+        queries = new Query[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            queries[i] = search.manyQueriesQuery(CorpusGenerator.word(i * 7 + 3), REGIONS, dateWindow, 3);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public TopDocs textWithFilters() throws IOException {
+        final Query query = queries[next++ & (WORDS - 1)];
+        return searcher.search(query, 10);
+    }
+}
@@ -0,0 +1,104 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.FuzzyQueryBuilder;
+import kz.kaznu.lucene.search.LevenshteinAutomataCache;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Terms;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency percentiles of fuzzy search with typos in user input.
+ * raw is FuzzyQuery with two edits on the unanalyzed word, as fuzzySearch did before,
+ * typoTolerant goes through FuzzyQueryBuilder with hot automata in the cache,
+ * typoTolerantCold compiles automata for every query.
+ *
+ * The long tail of made up words of CorpusGenerator gives the body field of 1M documents
+ * more than a million terms, the term count is printed on setup
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar FuzzyBenchmark -p docs=1000000
+ * </pre>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FuzzyBenchmark {
+    private static final int LIMIT = 10;
+    private static final int WORDS = 64;
+
+    @Param({"1000000"})
+    public int docs;
+
+    @Param({"0", "1", "2"})
+    public int prefixLength;
+
+    private IndexReader reader;
+    private BasicSearchExamples raw;
+    private BasicSearchExamples hot;
+    private BasicSearchExamples cold;
+    private final List<String> misspelled = new ArrayList<>();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        long terms = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            final Terms body = leaf.reader().terms("body");
+            terms += body == null ? 0 : body.size();
+        }
+        System.out.println("Terms of body in all segments: " + terms);
+
+        raw = new BasicSearchExamples(reader);
+        hot = new BasicSearchExamples(reader);
+        hot.setFuzzyQueryBuilder(new FuzzyQueryBuilder(new RussianAnalyzer(), FuzzyQueryBuilder.DEFAULT_MAX_EDITS,
+                prefixLength, FuzzyQueryBuilder.DEFAULT_MAX_EXPANSIONS, new LevenshteinAutomataCache()));
+        cold = new BasicSearchExamples(reader);
+        // words are rotated, so a cache of one entry never hits
+        cold.setFuzzyQueryBuilder(new FuzzyQueryBuilder(new RussianAnalyzer(), FuzzyQueryBuilder.DEFAULT_MAX_EDITS,
+                prefixLength, FuzzyQueryBuilder.DEFAULT_MAX_EXPANSIONS, new LevenshteinAutomataCache(1)));
+
+        for (int rank = 0; misspelled.size() < WORDS; rank++) {
+            final String word = CorpusGenerator.word(rank);
+            if (word.length() >= 6) {
+                misspelled.add(QueryBenchmark.misspell(word.toLowerCase()));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public SearchResults raw() throws IOException {
+        return raw.search(raw.fuzzyQuery(nextWord(), "body"), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    public SearchResults typoTolerant() throws IOException {
+        return hot.search(hot.typoTolerantQuery(nextWord(), "body"), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    public SearchResults typoTolerantCold() throws IOException {
+        return cold.search(cold.typoTolerantQuery(nextWord(), "body"), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    private String nextWord() {
+        next = (next + 1) % WORDS;
+        return misspelled.get(next);
+    }
+}
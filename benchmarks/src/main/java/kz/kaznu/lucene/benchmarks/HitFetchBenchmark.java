@@ -0,0 +1,69 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.HitLoader;
+import kz.kaznu.lucene.search.SearchHit;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading stored fields for top-100 hits, the search itself is done once in setup.
+ * legacy is how showHits used to do it: five reader.document calls per hit in order of relevance
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HitFetchBenchmark {
+    private static final int TOP = 100;
+
+    @Param({"10000", "1000000"})
+    public int docs;
+
+    private IndexReader reader;
+    private ScoreDoc[] hits;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        final String word = QueryBenchmark.stem(CorpusGenerator.word(10));
+        hits = new IndexSearcher(reader).search(new TermQuery(new Term("body", word)), TOP).scoreDocs;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public void legacy(final Blackhole blackhole) throws IOException {
+        for (ScoreDoc hit : hits) {
+            blackhole.consume(reader.document(hit.doc).get("title"));
+            blackhole.consume(reader.document(hit.doc).get("body"));
+            blackhole.consume(reader.document(hit.doc).get("region"));
+            blackhole.consume(reader.document(hit.doc).get("creationDate"));
+            blackhole.consume(reader.document(hit.doc).get("test"));
+        }
+    }
+
+    @Benchmark
+    public List<SearchHit> allFields() throws IOException {
+        return HitLoader.load(reader, hits, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    public List<SearchHit> titleOnly() throws IOException {
+        return HitLoader.load(reader, hits, "title");
+    }
+}
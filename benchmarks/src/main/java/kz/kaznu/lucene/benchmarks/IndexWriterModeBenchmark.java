@@ -0,0 +1,79 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single document trickle feed: docs/sec of MessageIndexer.index(Boolean, Document),
+ * which opens and closes IndexWriter on every call, against the long-lived SharedIndexWriter.
+ *
+ * open-per-call takes the index write lock on every call, so run it with one thread only.
+ * Shared modes can be run with -t to add documents from many threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexWriterModeBenchmark {
+
+    @Param({"open-per-call", "shared-explicit", "shared-every-1000", "shared-every-100ms"})
+    public String mode;
+
+    private File indexFolder;
+    private MessageIndexer indexer;
+    private SharedIndexWriter writer;
+    private Document document;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        indexFolder = Files.createTempDirectory("writer_mode_bench").toFile();
+        indexer = new MessageIndexer(indexFolder.getAbsolutePath());
+        document = MessageToDocument.createWith("О ДТП с полицейским рассказали в ДВД Астаны",
+                "В ДВД Астаны рассказали подробности ДТП с участием полицейского, сообщает корреспондент",
+                new String[]{"Астана", "AKMOLA_REGION"}, "Feb 7, 2016 7:55:20 PM");
+
+        switch (mode) {
+            case "open-per-call":
+                indexer.index(true, document);
+                break;
+            case "shared-explicit":
+                writer = indexer.openWriter(true, CommitPolicy.explicit());
+                break;
+            case "shared-every-1000":
+                writer = indexer.openWriter(true, CommitPolicy.everyDocs(1000));
+                break;
+            case "shared-every-100ms":
+                writer = indexer.openWriter(true, CommitPolicy.everyMillis(100));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        indexer.close();
+        FileUtils.deleteQuietly(indexFolder);
+    }
+
+    @Benchmark
+    public void addDocument() throws IOException {
+        if (writer == null) {
+            indexer.index(false, document);
+        } else {
+            writer.add(document);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.model.Message;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of MessageIndexer.index(Boolean, List) in documents per second.
+ * Every invocation appends one batch of generated messages to the same index
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexingBenchmark {
+    private static final int BATCH = 10000;
+
+    private File indexFolder;
+    private MessageIndexer indexer;
+    private List<Document> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        indexFolder = Files.createTempDirectory("indexing_bench").toFile();
+        indexer = new MessageIndexer(indexFolder.getAbsolutePath());
+        batch = new ArrayList<>(BATCH);
+        final CorpusGenerator corpus = new CorpusGenerator(BATCH);
+        while (corpus.hasNext()) {
+            final Message message = corpus.next();
+            batch.add(message.convertToDocument());
+        }
+        indexer.index(true, new ArrayList<Document>());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        indexer.close();
+        FileUtils.deleteQuietly(indexFolder);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void index() throws IOException {
+        indexer.index(false, batch);
+    }
+}
@@ -0,0 +1,112 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.index.BulkIndexer;
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.IndexingProfile;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing profiles: index builds the whole corpus of docs messages with BulkIndexer
+ * through the shared writer of the profile (including the final merge of BULK),
+ * search runs two-word queries on the index built by the same profile.
+ * Segment count and size of every built index are printed
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar IndexingProfileBenchmark -p docs=300000
+ * </pre>
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexingProfileBenchmark {
+    private static final int LIMIT = 10;
+    private static final int QUERIES = 64;
+
+    @Param({"300000"})
+    public int docs;
+
+    @Param({"DEFAULT", "BULK", "REALTIME"})
+    public IndexingProfile profile;
+
+    private File indexFolder;
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        FileUtils.deleteQuietly(indexFolder);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long index() throws IOException {
+        indexFolder = Files.createTempDirectory("profile_bench").toFile();
+        return build(indexFolder, docs, profile);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public SearchResults search(final Built built) throws IOException {
+        return built.search.search(built.nextQuery(), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    /**
+     * Index built once with the profile of the benchmark
+     */
+    @State(Scope.Benchmark)
+    public static class Built {
+        private File folder;
+        private IndexReader reader;
+        BasicSearchExamples search;
+        private final Query[] queries = new Query[QUERIES];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(final IndexingProfileBenchmark benchmark) throws IOException, ParseException {
+            folder = Files.createTempDirectory("profile_bench").toFile();
+            build(folder, benchmark.docs, benchmark.profile);
+            reader = new MessageIndexer(folder.getAbsolutePath()).readIndex();
+            search = new BasicSearchExamples(reader);
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = search.multiFieldQuery(CorpusGenerator.word(100 + 5 * i) + " " + CorpusGenerator.word(400 + 7 * i));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            reader.close();
+            FileUtils.deleteQuietly(folder);
+        }
+
+        Query nextQuery() {
+            next = (next + 1) % QUERIES;
+            return queries[next];
+        }
+    }
+
+    private static long build(final File folder, final int docs, final IndexingProfile profile) throws IOException {
+        final long indexed;
+        try (MessageIndexer indexer = new MessageIndexer(folder.getAbsolutePath(), profile)) {
+            indexed = new BulkIndexer().index(new CorpusGenerator(docs), indexer.openWriter(true, CommitPolicy.explicit()))
+                    .getIndexed();
+        }
+        try (IndexReader reader = new MessageIndexer(folder.getAbsolutePath()).readIndex()) {
+            System.out.println(profile + ": " + reader.leaves().size() + " segments, "
+                    + FileUtils.sizeOfDirectory(folder) / (1024 * 1024) + " MB");
+        }
+        return indexed;
+    }
+}
@@ -0,0 +1,72 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.search.MessageFilters;
+import kz.kaznu.lucene.search.NewestFirst;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Latest 50 in region" feed query.
+ * fullSort sorts every match by creationDate, newest only visits the latest dates
+ * and stops early in segments merged by SortingMergePolicy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LatestInRegionBenchmark {
+    private static final int LATEST = 50;
+
+    @Param({"1000000", "10000000"})
+    public int docs;
+
+    private IndexReader reader;
+    private IndexSearcher searcher;
+    private BasicSearchExamples search;
+    private Query region;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        searcher = new IndexSearcher(reader);
+        search = new BasicSearchExamples(reader);
+        region = MessageFilters.regions(new String[]{"ALMATY_REGION"});
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public TopDocs fullSort() throws IOException {
+        return searcher.search(region, LATEST, MessageIndexer.NEWEST_FIRST);
+    }
+
+    @Benchmark
+    public TopDocs newest() throws IOException {
+        return NewestFirst.search(searcher, region, 0, LATEST);
+    }
+
+    @Benchmark
+    public TopDocs newestThirdPage() throws IOException {
+        return NewestFirst.search(searcher, region, 2 * LATEST, LATEST);
+    }
+
+    @Benchmark
+    public SearchResults newestWithFields() throws IOException {
+        // loading stored fields of 50 hits costs more than finding them
+        return search.searchNewest(region, LATEST, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+}
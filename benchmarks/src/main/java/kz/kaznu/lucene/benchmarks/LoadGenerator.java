@@ -0,0 +1,146 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.metrics.LatencyHistogram;
+import kz.kaznu.lucene.server.SearchServer;
+import kz.kaznu.lucene.server.ServerConfig;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.index.IndexReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load on SearchServer: requests are sent at a fixed rate whatever the latency of previous ones,
+ * and latency is counted from the moment a request was due, so a stalled server is not hidden by
+ * clients that wait for it (coordinated omission). Reports achieved QPS, p50/p99/p99.9 of answered
+ * requests, 503 answers and server counters. Without url the server runs in this JVM over the benchmark index
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar kz.kaznu.lucene.benchmarks.LoadGenerator \
+ *        docs=100000 qps=500 seconds=20 connections=64 distinct=200 workers=1 queue=64 maxQueueMillis=200
+ * </pre>
+ */
+public class LoadGenerator {
+    private final String url;
+    private final int qps;
+    private final int seconds;
+    private final String[] queries;
+    private final ExecutorService clients;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    LoadGenerator(final String url, final int qps, final int seconds, final int connections, final int distinct) {
+        this.url = url;
+        this.qps = qps;
+        this.seconds = seconds;
+        this.clients = Executors.newFixedThreadPool(connections);
+        final Random random = new Random(CorpusGenerator.DEFAULT_SEED);
+        queries = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            queries[i] = CorpusGenerator.word(100 + random.nextInt(800)) + " " + CorpusGenerator.word(100 + random.nextInt(800));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final String[] option = arg.split("=", 2);
+            options.put(option[0], option[1]);
+        }
+        final int qps = Integer.parseInt(options.getOrDefault("qps", "500"));
+        final int seconds = Integer.parseInt(options.getOrDefault("seconds", "20"));
+        final int connections = Integer.parseInt(options.getOrDefault("connections", "64"));
+        final int distinct = Integer.parseInt(options.getOrDefault("distinct", "200"));
+
+        if (options.containsKey("url")) {
+            new LoadGenerator(options.get("url"), qps, seconds, connections, distinct).run();
+            return;
+        }
+        final int docs = Integer.parseInt(options.getOrDefault("docs", "100000"));
+        final ServerConfig config = ServerConfig.defaults()
+                .withWorkers(Integer.parseInt(options.getOrDefault("workers",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                        Integer.parseInt(options.getOrDefault("queue", String.valueOf(ServerConfig.DEFAULT_QUEUE_CAPACITY))))
+                .withMaxQueueMillis(Long.parseLong(options.getOrDefault("maxQueueMillis",
+                        String.valueOf(ServerConfig.DEFAULT_MAX_QUEUE_MILLIS))));
+        try (IndexReader reader = BenchmarkIndexes.forSize(docs).readIndex();
+             SearchServer server = new SearchServer(new BasicSearchExamples(reader), config)) {
+            System.out.println(config + ", docs=" + docs);
+            new LoadGenerator("http://localhost:" + server.getPort(), qps, seconds, connections, distinct).run();
+            System.out.println("server: requests=" + server.getRequests() + ", coalesced=" + server.getCoalesced()
+                    + ", rejected=" + server.getRejected() + ", shed=" + server.getShed());
+        }
+    }
+
+    void run() throws InterruptedException {
+        // short warm up at the same rate, not counted
+        send(Math.max(1, seconds / 4), false);
+        final long started = System.nanoTime();
+        send(seconds, true);
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.MINUTES);
+        final double elapsed = (System.nanoTime() - started) / 1e9;
+        System.out.printf("qps target=%d achieved=%.0f ok=%d 503=%d errors=%d%n",
+                qps, ok.sum() / elapsed, ok.sum(), unavailable.sum(), errors.sum());
+        System.out.printf("latency ms p50=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", latencies.getMillisAtPercentile(50),
+                latencies.getMillisAtPercentile(99), latencies.getMillisAtPercentile(99.9),
+                latencies.getMaxNanos() / 1e6);
+    }
+
+    private void send(final int duration, final boolean measure) {
+        final Random random = new Random();
+        final long intervalNanos = 1_000_000_000L / qps;
+        final long start = System.nanoTime();
+        final long total = (long) qps * duration;
+        for (long i = 0; i < total; i++) {
+            final long due = start + i * intervalNanos;
+            final long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            final String query = queries[random.nextInt(queries.length)];
+            clients.execute(() -> request(query, due, measure));
+        }
+    }
+
+    private void request(final String query, final long due, final boolean measure) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(url + "/search?fields=title&q="
+                    + URLEncoder.encode(query, "UTF-8")).openConnection();
+            final int status = connection.getResponseCode();
+            // body is read to the end, so the connection is kept alive for the next request
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+            if (!measure) {
+                return;
+            }
+            if (status == 200) {
+                latencies.record(System.nanoTime() - due);
+                ok.increment();
+            } else if (status == 503) {
+                unavailable.increment();
+            } else {
+                errors.increment();
+            }
+        } catch (IOException e) {
+            if (measure) {
+                errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.metrics.SearchMetrics;
+import kz.kaznu.lucene.metrics.SlowQueryLog;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of measuring searches. search runs cheap one word queries returning only docIds, the worst case
+ * for relative overhead, without metrics, with latency histograms, and with histograms plus slow query log
+ * sampling one query of 10000. record is the histogram bookkeeping alone, to compare with the 100
+ * microseconds one query may take at 10k QPS
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+    private static final int QUERIES = 64;
+
+    @Param({"10000"})
+    public int docs;
+
+    @Param({"off", "histograms", "slowlog"})
+    public String metrics;
+
+    private IndexReader reader;
+    private BasicSearchExamples search;
+    private SearchMetrics searchMetrics;
+    private final SearchMetrics bookkeeping = new SearchMetrics();
+    private Query[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        search = new BasicSearchExamples(reader);
+        searchMetrics = new SearchMetrics();
+        if (!"off".equals(metrics)) {
+            search.setMetrics(searchMetrics);
+        }
+        if ("slowlog".equals(metrics)) {
+            searchMetrics.setSlowQueryLog(new SlowQueryLog(100, 10_000));
+        }
+        queries = new Query[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            // rare words, so a query is a few microseconds of matching plus loading hits
+            try {
+                queries[i] = search.bodyQuery(CorpusGenerator.word(900 + i));
+            } catch (ParseException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        if (!"off".equals(metrics)) {
+            System.out.println(searchMetrics.getLatencies());
+        }
+    }
+
+    @Benchmark
+    public SearchResults search() throws IOException {
+        next = (next + 1) % QUERIES;
+        return search.search(queries[next], 10);
+    }
+
+    @Benchmark
+    public SearchMetrics record() {
+        next = (next + 1) % QUERIES;
+        bookkeeping.record(SearchMetrics.RELEVANCE, queries[next], 50_000 + next, 10);
+        return bookkeeping;
+    }
+}
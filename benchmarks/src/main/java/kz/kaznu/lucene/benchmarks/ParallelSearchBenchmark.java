@@ -0,0 +1,90 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.SearchResults;
+import kz.kaznu.lucene.search.SlicedIndexSearcher;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heavy queries searched in the calling thread (searchThreads=0) against slices searched
+ * on a shared executor, see SlicedIndexSearcher.
+ * latency is one client alone, the case parallel slices are for.
+ * underLoad is many clients at once, where slices compete with other queries for the same cores
+ * and throughput should not fall much below the sequential one.
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar ParallelSearchBenchmark -p docs=1000000 -p searchThreads=0,4
+ * </pre>
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelSearchBenchmark {
+    private static final int LIMIT = 10;
+
+    @Param({"1000000"})
+    public int docs;
+
+    /**
+     * Size of the shared executor, 0 to search without one
+     */
+    @Param({"0", "4"})
+    public int searchThreads;
+
+    @Param({"250000", "50000"})
+    public int maxDocsPerSlice;
+
+    @Param({"fuzzy", "moreLikeThis"})
+    public String queryType;
+
+    private IndexReader reader;
+    private ExecutorService executor;
+    private BasicSearchExamples search;
+    private Query query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        executor = searchThreads == 0 ? null : SlicedIndexSearcher.newExecutor(searchThreads);
+        final SlicedIndexSearcher searcher = new SlicedIndexSearcher(reader, executor, maxDocsPerSlice,
+                SlicedIndexSearcher.DEFAULT_MAX_SEGMENTS_PER_SLICE);
+        System.out.println("Segments: " + reader.leaves().size() + ", slices: " + searcher.getSliceCount());
+        search = new BasicSearchExamples(searcher);
+
+        if ("fuzzy".equals(queryType)) {
+            query = search.fuzzyQuery(QueryBenchmark.misspell(CorpusGenerator.word(15)), "body");
+        } else {
+            final String likeText = CorpusGenerator.word(12) + " " + CorpusGenerator.word(40) + " " + CorpusGenerator.word(70);
+            query = search.moreLikeThis(likeText, new String[]{"title", "body"}, "body");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Threads(1)
+    public SearchResults latency() throws IOException {
+        return search.search(query, LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(8)
+    public SearchResults underLoad() throws IOException {
+        return search.search(query, LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+}
@@ -0,0 +1,138 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.index.MessageIndexer;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and throughput of every query type of BasicSearchExamples over generated corpus.
+ * Indexes are built on first use and reused, see BenchmarkIndexes.
+ *
+ * Search methods print their hits, stdout is muted during the run, so printing is not measured
+ * but loading of stored fields for the hits is.
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar QueryBenchmark -p docs=10000 -rf json -rff query.json
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    private static final int LIMIT = 10;
+    private static final String[] REGIONS = {"ASTANA", "ALMATY_REGION"};
+
+    @Param({"10000", "1000000", "10000000"})
+    public int docs;
+
+    private PrintStream stdout;
+    private IndexReader reader;
+    private BasicSearchExamples search;
+
+    private String frequentWord;
+    private String stemmedWord;
+    private String twoWords;
+    private String misspelledWord;
+    private String likeText;
+    private long[] dateWindow;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final MessageIndexer indexer = BenchmarkIndexes.forSize(docs);
+        reader = indexer.readIndex();
+        search = new BasicSearchExamples(reader);
+
+        frequentWord = CorpusGenerator.word(10);
+        stemmedWord = stem(frequentWord);
+        twoWords = CorpusGenerator.word(20) + " " + CorpusGenerator.word(30);
+        misspelledWord = misspell(CorpusGenerator.word(15));
+        likeText = CorpusGenerator.word(12) + " " + CorpusGenerator.word(40) + " " + CorpusGenerator.word(70);
+        final long month = 30L * 24 * 3600;
+        final long from = CorpusGenerator.firstUnixTime() + CorpusGenerator.rangeSeconds() / 2;
+        dateWindow = new long[]{from, from + month};
+
+        stdout = System.out;
+        System.setOut(new PrintStream(new NullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        reader.close();
+    }
+
+    @Benchmark
+    public void term() throws IOException, ParseException {
+        search.searchIndexWithTermQuery(stemmedWord, "body", LIMIT);
+    }
+
+    @Benchmark
+    public void queryParser() throws IOException, ParseException {
+        search.searchInBody(frequentWord, LIMIT);
+    }
+
+    @Benchmark
+    public void multiField() throws IOException, ParseException {
+        search.SearchInMultiField(twoWords, LIMIT);
+    }
+
+    @Benchmark
+    public void numericRange() throws IOException {
+        search.searchByRangeDate(dateWindow[1], dateWindow[0], LIMIT);
+    }
+
+    @Benchmark
+    public void region() throws IOException, ParseException {
+        search.searchInRegion(REGIONS, LIMIT);
+    }
+
+    @Benchmark
+    public void combined() throws IOException, ParseException {
+        search.searchByManyQueries(frequentWord, REGIONS, dateWindow, 3, LIMIT);
+    }
+
+    @Benchmark
+    public void fuzzy() throws IOException {
+        search.fuzzySearch(misspelledWord, "body", LIMIT);
+    }
+
+    @Benchmark
+    public void moreLikeThis() throws IOException {
+        search.moreLikeThisQuery(likeText, new String[]{"title", "body"}, "body", LIMIT);
+    }
+
+    /**
+     * Term as RussianAnalyzer puts it into the index, TermQuery is not analyzed
+     */
+    static String stem(final String word) throws IOException {
+        try (RussianAnalyzer analyzer = new RussianAnalyzer();
+             TokenStream stream = analyzer.tokenStream("body", word)) {
+            final CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            final String stemmed = stream.incrementToken() ? term.toString() : word;
+            stream.end();
+            return stemmed;
+        }
+    }
+
+    /**
+     * Word with one letter replaced, for fuzzy queries
+     */
+    static String misspell(final String word) {
+        final int position = word.length() / 2;
+        final char replacement = word.charAt(position) == 'о' ? 'а' : 'о';
+        return word.substring(0, position) + replacement + word.substring(position + 1);
+    }
+}
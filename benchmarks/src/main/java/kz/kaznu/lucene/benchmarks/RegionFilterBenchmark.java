@@ -0,0 +1,176 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import kz.kaznu.lucene.model.Message;
+import kz.kaznu.lucene.search.MessageFilters;
+import kz.kaznu.lucene.search.RegionFilter;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.util.BytesRef;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region filters on two indexes of the same corpus:
+ * legacy keeps regions as one text field analyzed by RussianAnalyzer and filters with regions parsed by QueryParser,
+ * as MessageFilters.regions did before, the current index keeps every region as an exact term and is filtered
+ * with term queries of MessageFilters.regionTerms (terms) or with RegionFilter over DocValues ordinals (ordinals).
+ * Filter queries are created for every search, as a request would, and the query cache is off, so every search
+ * pays for the filter. count filters the whole index, withText filters a two-word text query.
+ * Sizes of both indexes are printed at setup, both are merged into one segment
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar RegionFilterBenchmark -p docs=100000
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegionFilterBenchmark {
+    private static final int LIMIT = 10;
+    private static final int QUERIES = 64;
+    private static final String[] TEXT_FIELDS = {"body", "title"};
+    private static final String COMPLETE_MARKER = "complete";
+
+    /**
+     * Region field of MessageToDocument before regions became exact terms
+     */
+    private static final FieldType LEGACY_REGION_TYPE = new FieldType();
+    static {
+        LEGACY_REGION_TYPE.setStored(true);
+        LEGACY_REGION_TYPE.setIndexOptions(IndexOptions.DOCS);
+        LEGACY_REGION_TYPE.setTokenized(true);
+        LEGACY_REGION_TYPE.freeze();
+    }
+
+    @Param({"100000"})
+    public int docs;
+
+    @Param({"legacy", "terms", "ordinals"})
+    public String filter;
+
+    /**
+     * How many regions the filter asks for
+     */
+    @Param({"1", "3"})
+    public int regions;
+
+    private IndexReader reader;
+    private IndexSearcher searcher;
+    private String[] wanted;
+    private Query[] texts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        final File legacy = build(docs, true);
+        final File exact = build(docs, false);
+        System.out.printf("%nlegacy index %d KB, exact regions index %d KB%n",
+                FileUtils.sizeOfDirectory(legacy) >> 10, FileUtils.sizeOfDirectory(exact) >> 10);
+
+        reader = new MessageIndexer(("legacy".equals(filter) ? legacy : exact).getAbsolutePath()).readIndex();
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+        wanted = Arrays.copyOf(new String[]{"ALMATY_REGION", "ASTANA", "AKTOBE_REGION"}, regions);
+
+        final Random random = new Random(CorpusGenerator.DEFAULT_SEED);
+        texts = new Query[QUERIES];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = MessageAnalysis.parse(TEXT_FIELDS, CorpusGenerator.word(100 + random.nextInt(800)) + " "
+                    + CorpusGenerator.word(100 + random.nextInt(800)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public int count() throws IOException, ParseException {
+        // IndexSearcher.count would take docFreq of a single term instead of visiting the documents
+        final TotalHitCountCollector collector = new TotalHitCountCollector();
+        searcher.search(regionFilter(), collector);
+        return collector.getTotalHits();
+    }
+
+    @Benchmark
+    public TopDocs withText() throws IOException, ParseException {
+        final Query query = new BooleanQuery.Builder()
+                .add(texts[next++ % texts.length], BooleanClause.Occur.MUST)
+                .add(regionFilter(), BooleanClause.Occur.FILTER)
+                .build();
+        return searcher.search(query, LIMIT);
+    }
+
+    private Query regionFilter() throws ParseException {
+        switch (filter) {
+            case "legacy":
+                final BooleanQuery.Builder anyRegion = new BooleanQuery.Builder();
+                for (String region : wanted) {
+                    anyRegion.add(MessageAnalysis.parse("region", region), BooleanClause.Occur.SHOULD);
+                }
+                return anyRegion.build();
+            case "terms":
+                return MessageFilters.regionTerms(wanted);
+            default:
+                return new RegionFilter(wanted);
+        }
+    }
+
+    // index of the generated corpus kept in BenchmarkIndexes.baseDir for the next forks
+    private static File build(final int docs, final boolean legacy) throws IOException {
+        final File folder = new File(BenchmarkIndexes.baseDir(),
+                "regions-" + (legacy ? "legacy" : "exact") + "-" + docs + "-v" + BenchmarkIndexes.INDEX_VERSION);
+        final File marker = new File(folder, COMPLETE_MARKER);
+        if (!marker.exists()) {
+            FileUtils.deleteQuietly(folder);
+            System.out.println("Building " + (legacy ? "legacy" : "exact") + " regions index of " + docs
+                    + " documents in " + folder);
+            try (MessageIndexer indexer = new MessageIndexer(folder.getAbsolutePath());
+                 SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit())) {
+                final CorpusGenerator corpus = new CorpusGenerator(docs);
+                while (corpus.hasNext()) {
+                    final Message message = corpus.next();
+                    final Document document = MessageToDocument.createWith(message.getTitle(), message.getBody(),
+                            message.getRegion(), message.getCreationDate());
+                    if (legacy) {
+                        document.removeFields("region");
+                        document.add(new Field("region", String.join(" ", message.getRegion()), LEGACY_REGION_TYPE));
+                        for (String region : message.getRegion()) {
+                            document.add(new SortedSetDocValuesField("region", new BytesRef(region)));
+                        }
+                    }
+                    writer.add(document);
+                }
+                writer.getIndexWriter().forceMerge(1);
+                writer.commit();
+            }
+            FileUtils.touch(marker);
+        }
+        return folder;
+    }
+}
@@ -0,0 +1,98 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.RelatedDocuments;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.index.IndexReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency percentiles of "related news" under an article.
+ * byText analyzes the stored text of the article with MoreLikeThisQuery, as moreLikeThisQuery does,
+ * byDocId reads its term vectors (searchRelated with a cache of one entry, so it never hits),
+ * byDocIdCached takes the query of interesting terms from the cache, as for popular articles.
+ * The target is p95 below 20 ms on 5M documents
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar RelatedBenchmark -p docs=5000000
+ * </pre>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RelatedBenchmark {
+    private static final int LIMIT = 5;
+    private static final int ARTICLES = 256;
+    private static final String[] FIELDS = {"title"};
+
+    @Param({"1000000"})
+    public int docs;
+
+    @Param({"10", "2"})
+    public int maxDocFreqPct;
+
+    @Param({"0", "30"})
+    public int minShouldMatchPct;
+
+    private IndexReader reader;
+    private BasicSearchExamples uncached;
+    private BasicSearchExamples cached;
+    private int[] articles;
+    private String[] articleTexts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        uncached = new BasicSearchExamples(reader);
+        uncached.setRelatedDocuments(new RelatedDocuments(RelatedDocuments.DEFAULT_FIELDS,
+                RelatedDocuments.DEFAULT_MIN_TERM_FREQ, RelatedDocuments.DEFAULT_MIN_DOC_FREQ,
+                maxDocFreqPct, RelatedDocuments.DEFAULT_MAX_QUERY_TERMS, minShouldMatchPct, 1));
+        cached = new BasicSearchExamples(reader);
+        cached.setRelatedDocuments(new RelatedDocuments(RelatedDocuments.DEFAULT_FIELDS,
+                RelatedDocuments.DEFAULT_MIN_TERM_FREQ, RelatedDocuments.DEFAULT_MIN_DOC_FREQ,
+                maxDocFreqPct, RelatedDocuments.DEFAULT_MAX_QUERY_TERMS, minShouldMatchPct,
+                RelatedDocuments.DEFAULT_CACHE_SIZE));
+
+        final Random random = new Random(CorpusGenerator.DEFAULT_SEED);
+        articles = new int[ARTICLES];
+        articleTexts = new String[ARTICLES];
+        for (int i = 0; i < ARTICLES; i++) {
+            articles[i] = random.nextInt(reader.maxDoc());
+            articleTexts[i] = reader.document(articles[i]).get("body");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public SearchResults byText() throws IOException {
+        final int article = nextArticle();
+        return cached.search(cached.moreLikeThis(articleTexts[article], RelatedDocuments.DEFAULT_FIELDS, "body"),
+                LIMIT, FIELDS);
+    }
+
+    @Benchmark
+    public SearchResults byDocId() throws IOException {
+        return uncached.searchRelated(articles[nextArticle()], LIMIT, FIELDS);
+    }
+
+    @Benchmark
+    public SearchResults byDocIdCached() throws IOException {
+        return cached.searchRelated(articles[nextArticle()], LIMIT, FIELDS);
+    }
+
+    private int nextArticle() {
+        next = (next + 1) % ARTICLES;
+        return next;
+    }
+}
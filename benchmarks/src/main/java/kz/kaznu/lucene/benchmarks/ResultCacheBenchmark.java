@@ -0,0 +1,74 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.QueryResultCache;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeated searchByManyQueries style query with and without QueryResultCache.
+ * combined parses the query on every call like callers do, combinedPrebuilt measures the lookup alone.
+ * SampleTime mode reports p99, cached lookup should stay well below a millisecond
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultCacheBenchmark {
+    private static final String[] REGIONS = {"ASTANA", "ALMATY_REGION"};
+
+    @Param({"10000", "1000000"})
+    public int docs;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private IndexReader reader;
+    private BasicSearchExamples search;
+    private String word;
+    private long[] dateWindow;
+    private Query prebuilt;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        reader = BenchmarkIndexes.forSize(docs).readIndex();
+        search = new BasicSearchExamples(reader);
+        if (cached) {
+            search.setResultCache(new QueryResultCache());
+        }
+        word = CorpusGenerator.word(10);
+        final long from = CorpusGenerator.firstUnixTime() + CorpusGenerator.rangeSeconds() / 2;
+        dateWindow = new long[]{from, from + 30L * 24 * 3600};
+        try {
+            prebuilt = search.manyQueriesQuery(word, REGIONS, dateWindow, 3);
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public SearchResults combined() throws IOException, ParseException {
+        // query is parsed every time, as callers do
+        return search.search(search.manyQueriesQuery(word, REGIONS, dateWindow, 3), 10,
+                BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    public SearchResults combinedPrebuilt() throws IOException {
+        // only the lookup, without query parsing
+        return search.search(prebuilt, 10, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+}
@@ -0,0 +1,151 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.ShardRouting;
+import kz.kaznu.lucene.index.ShardedIndexer;
+import kz.kaznu.lucene.search.MessageFilters;
+import kz.kaznu.lucene.search.SearchResults;
+import kz.kaznu.lucene.search.ShardedSearcher;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sharded index with routing by hash into 1 to 16 shards: index routes the whole corpus,
+ * text runs two-word queries over all shards, lastMonth adds a one month date filter,
+ * and monthly runs the same filtered queries over one shard per month, so all but one or two shards are skipped.
+ * Shards are searched on a pool of one thread per processor
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar ShardingBenchmark -p docs=100000
+ * </pre>
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardingBenchmark {
+    private static final int LIMIT = 10;
+    private static final int QUERIES = 64;
+    private static final String[] TEXT_FIELDS = {"body", "title"};
+    private static final long MONTH_SECONDS = 30L * 24 * 3600;
+
+    @Param({"100000"})
+    public int docs;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int shards;
+
+    private File indexFolder;
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        FileUtils.deleteQuietly(indexFolder);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public long index() throws IOException {
+        indexFolder = Files.createTempDirectory("sharding_bench").toFile();
+        try (ShardedIndexer indexer = new ShardedIndexer(indexFolder.getAbsolutePath(), ShardRouting.byIdHash(shards))) {
+            return indexer.index(true, new CorpusGenerator(docs), MessageIndexer.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public SearchResults text(final Built built) throws IOException {
+        return built.byHash.search(built.nextText(), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public SearchResults lastMonth(final Built built) throws IOException {
+        return built.byHash.search(built.nextLastMonth(), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public SearchResults monthly(final Built built) throws IOException {
+        return built.byMonth.search(built.nextLastMonth(), LIMIT, BasicSearchExamples.DEFAULT_FIELDS);
+    }
+
+    /**
+     * Index routed by hash into the number of shards of the benchmark, and the same corpus routed by month
+     */
+    @State(Scope.Benchmark)
+    public static class Built {
+        private File folder;
+        private ExecutorService executor;
+        ShardedSearcher byHash;
+        ShardedSearcher byMonth;
+        private final Query[] text = new Query[QUERIES];
+        private final Query[] lastMonth = new Query[QUERIES];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(final ShardingBenchmark benchmark) throws IOException, ParseException {
+            folder = Files.createTempDirectory("sharding_bench").toFile();
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            byHash = build(new File(folder, "hash"), benchmark.docs, ShardRouting.byIdHash(benchmark.shards));
+            byMonth = build(new File(folder, "month"), benchmark.docs, ShardRouting.monthly());
+
+            final long monthStart = CorpusGenerator.firstUnixTime() + CorpusGenerator.rangeSeconds() - MONTH_SECONDS;
+            for (int i = 0; i < QUERIES; i++) {
+                text[i] = MessageAnalysis.parse(TEXT_FIELDS, CorpusGenerator.word(100 + 5 * i) + " " + CorpusGenerator.word(400 + 7 * i));
+                lastMonth[i] = new BooleanQuery.Builder()
+                        .add(text[i], BooleanClause.Occur.MUST)
+                        .add(MessageFilters.dateRange(monthStart, monthStart + MONTH_SECONDS), BooleanClause.Occur.FILTER)
+                        .build();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            byHash.close();
+            byMonth.close();
+            executor.shutdown();
+            FileUtils.deleteQuietly(folder);
+        }
+
+        Query nextText() {
+            next = (next + 1) % QUERIES;
+            return text[next];
+        }
+
+        Query nextLastMonth() {
+            next = (next + 1) % QUERIES;
+            return lastMonth[next];
+        }
+
+        private ShardedSearcher build(final File shardsFolder, final int docs, final ShardRouting routing)
+                throws IOException {
+            try (ShardedIndexer indexer = new ShardedIndexer(shardsFolder.getAbsolutePath(), routing)) {
+                indexer.index(true, new CorpusGenerator(docs), MessageIndexer.DEFAULT_BATCH_SIZE);
+            }
+            final ShardedSearcher searcher = ShardedSearcher.open(
+                    new ShardedIndexer(shardsFolder.getAbsolutePath(), routing), executor);
+            System.out.println(routing + ": " + searcher.getShardNames().size() + " shards, "
+                    + FileUtils.sizeOfDirectory(shardsFolder) / (1024 * 1024) + " MB");
+            return searcher;
+        }
+    }
+}
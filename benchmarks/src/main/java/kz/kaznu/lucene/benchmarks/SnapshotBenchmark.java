@@ -0,0 +1,128 @@
+package kz.kaznu.lucene.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.model.Message;
+import kz.kaznu.lucene.utils.Helper;
+import kz.kaznu.lucene.utils.MessageSnapshotReader;
+import kz.kaznu.lucene.utils.MessageSnapshotWriter;
+import kz.kaznu.lucene.utils.MessageStream;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding an index from the same dump: reindexJson parses the JSON file with Gson as MessageIndexer.index(Boolean, File)
+ * does, reindexSnapshot reads the binary snapshot made once with MessageSnapshotWriter.convert.
+ * readJson and readSnapshot only read every message, which is the part the snapshot replaces
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar SnapshotBenchmark -p docs=100000
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({"100000"})
+    public int docs;
+
+    private File folder;
+    private File json;
+    private File snapshot;
+    private File indexFolder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("snapshot_bench").toFile();
+        json = new File(folder, "dump.json");
+        snapshot = new File(folder, "dump.snapshot");
+        final Gson gson = new Gson();
+        try (JsonWriter out = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(json), StandardCharsets.UTF_8)))) {
+            out.beginArray();
+            final CorpusGenerator corpus = new CorpusGenerator(docs);
+            while (corpus.hasNext()) {
+                gson.toJson(corpus.next(), Message.class, out);
+            }
+            out.endArray();
+        }
+        final long start = System.nanoTime();
+        MessageSnapshotWriter.convert(json, snapshot);
+        System.out.printf("%njson %d MB, snapshot %d MB, converted in %d ms%n", json.length() >> 20,
+                snapshot.length() >> 20, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(folder);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeIndex() {
+        FileUtils.deleteQuietly(indexFolder);
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long reindexJson() throws IOException {
+        indexFolder = new File(folder, "index");
+        try (MessageIndexer indexer = new MessageIndexer(indexFolder.getAbsolutePath())) {
+            return indexer.index(true, json);
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long reindexSnapshot() throws IOException {
+        indexFolder = new File(folder, "index");
+        try (MessageIndexer indexer = new MessageIndexer(indexFolder.getAbsolutePath());
+             MessageSnapshotReader messages = new MessageSnapshotReader(snapshot)) {
+            return indexer.index(true, messages);
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public void readJson(final Blackhole blackhole) throws IOException {
+        try (MessageStream messages = Helper.openMessageStream(json)) {
+            while (messages.hasNext()) {
+                final Message message = messages.next();
+                blackhole.consume(message.getTitle());
+                blackhole.consume(message.getBody());
+                blackhole.consume(message.getRegion());
+                blackhole.consume(message.getCreationDate());
+            }
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public void readSnapshot(final Blackhole blackhole) throws IOException {
+        try (MessageSnapshotReader messages = new MessageSnapshotReader(snapshot)) {
+            while (messages.hasNext()) {
+                messages.next();
+                blackhole.consume(messages.getTitle());
+                blackhole.consume(messages.getBody());
+                for (int i = 0; i < messages.getRegionCount(); i++) {
+                    blackhole.consume(messages.getRegionBytes(i));
+                }
+                blackhole.consume(messages.getCreationDate());
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import kz.kaznu.lucene.index.DirectoryConfig;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.search.MessageSearcherFactory;
+import kz.kaznu.lucene.search.SearcherWarmer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup to steady state: how long the first queries take in a new JVM right after the index is opened.
+ * Every fork opens the index once, then firstQueries runs QUERIES queries of traffic a single time
+ * and openAndFirstQueries also includes opening the directory and warming.
+ * steadyState is the same traffic on a JVM and searcher that have been running for a while.
+ *
+ * warmup replay runs another QUERIES queries of similar traffic before the searcher is used.
+ * pageCache cold drops the OS page cache before open (needs root, prints a warning otherwise),
+ * hot leaves index files cached by the previous forks
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar StartupBenchmark -p docs=1000000
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private static final int LIMIT = 10;
+    private static final int QUERIES = 50;
+    private static final String[] FIELDS = {"body", "title"};
+
+    @Param({"1000000"})
+    public int docs;
+
+    @Param({"default", "nio", "mmap", "mmapPreload"})
+    public String directory;
+
+    @Param({"none", "replay"})
+    public String warmup;
+
+    @Param({"hot", "cold"})
+    public String pageCache;
+
+    private MessageIndexer indexer;
+    private List<Query> replay;
+    private List<Query> traffic;
+    private IndexSearcher opened;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ParseException {
+        final String path = BenchmarkIndexes.forSize(docs).getPathToIndexFolder();
+        indexer = new MessageIndexer(path, directoryConfig(directory));
+        // similar, but not the same queries: traffic after restart is not the replayed log
+        replay = queries(0);
+        traffic = queries(1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (opened != null) {
+            opened.getIndexReader().close();
+            opened = null;
+        }
+    }
+
+    /**
+     * Opening and warming is not measured, only QUERIES queries right after it
+     */
+    @Benchmark
+    public long firstQueries(final Opened opened) throws IOException {
+        return runTraffic(opened.search);
+    }
+
+    @Benchmark
+    public long openAndFirstQueries() throws IOException {
+        dropPageCache();
+        opened = open();
+        return runTraffic(new BasicSearchExamples(opened));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 3, time = 2)
+    @Fork(1)
+    public long steadyState(final Opened opened) throws IOException {
+        return runTraffic(opened.search);
+    }
+
+    /**
+     * Index opened and warmed before the measured queries
+     */
+    @State(Scope.Benchmark)
+    public static class Opened {
+        private IndexSearcher searcher;
+        BasicSearchExamples search;
+
+        @Setup(Level.Trial)
+        public void open(final StartupBenchmark benchmark) throws IOException {
+            benchmark.dropPageCache();
+            searcher = benchmark.open();
+            search = new BasicSearchExamples(searcher);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            searcher.getIndexReader().close();
+        }
+    }
+
+    private IndexSearcher open() throws IOException {
+        final IndexReader reader = indexer.readIndex();
+        final SearcherWarmer warmer = "replay".equals(warmup) ? new SearcherWarmer(replay) : null;
+        final long start = System.nanoTime();
+        final IndexSearcher searcher = new MessageSearcherFactory(null, Integer.MAX_VALUE, Integer.MAX_VALUE, warmer)
+                .newSearcher(reader, null);
+        if (warmer != null) {
+            System.out.println("Warmed " + directory + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return searcher;
+    }
+
+    private long runTraffic(final BasicSearchExamples search) throws IOException {
+        long hits = 0;
+        for (Query query : traffic) {
+            hits += search.search(query, LIMIT, BasicSearchExamples.DEFAULT_FIELDS).getTotalHits();
+        }
+        return hits;
+    }
+
+    private void dropPageCache() {
+        if (!"cold".equals(pageCache)) {
+            return;
+        }
+        final File dropCaches = new File("/proc/sys/vm/drop_caches");
+        try (FileWriter writer = new FileWriter(dropCaches)) {
+            writer.write("1");
+        } catch (IOException e) {
+            System.out.println("Could not drop page cache, results are for hot cache: " + e);
+        }
+    }
+
+    private static List<Query> queries(final int offset) throws ParseException {
+        final List<Query> queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            // mid-frequency words like real queries, the same distribution for both sets
+            queries.add(MessageAnalysis.parse(FIELDS, CorpusGenerator.word(100 + 3 * i + offset) + " "
+                    + CorpusGenerator.word(400 + 11 * i + offset)));
+        }
+        return queries;
+    }
+
+    private static DirectoryConfig directoryConfig(final String directory) {
+        switch (directory) {
+            case "nio":
+                return DirectoryConfig.nio();
+            case "mmap":
+                return DirectoryConfig.mmap(false);
+            case "mmapPreload":
+                return DirectoryConfig.mmap(true);
+            default:
+                return DirectoryConfig.defaults();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.MessageDocumentBuilder;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageUpserter;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import kz.kaznu.lucene.model.Message;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-sent news: time to ingest a batch of BATCH messages that are already indexed,
+ * changedPct percent of them with new content.
+ * blindUpdate replaces every message with updateDocument, as a nightly rebuild would rewrite them,
+ * upsertCached skips unchanged ones with ids and hashes in the cache of a long-lived upserter,
+ * upsertLookup does the same with a new upserter, so every id goes through primary-key lookup in the index
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar UpsertBenchmark -p docs=100000
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpsertBenchmark {
+    private static final int BATCH = 10_000;
+
+    @Param({"100000"})
+    public int docs;
+
+    @Param({"1", "10", "100"})
+    public int changedPct;
+
+    private File indexFolder;
+    private MessageIndexer indexer;
+    private SharedIndexWriter writer;
+    private MessageUpserter cached;
+    private final List<Message> resent = new ArrayList<>(BATCH);
+    private final MessageDocumentBuilder builder = new MessageDocumentBuilder();
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        indexFolder = Files.createTempDirectory("upsert_bench").toFile();
+        indexer = new MessageIndexer(indexFolder.getAbsolutePath());
+        writer = indexer.openWriter(true, CommitPolicy.explicit());
+        final CorpusGenerator corpus = new CorpusGenerator(docs);
+        final Random random = new Random(CorpusGenerator.DEFAULT_SEED);
+        final List<Message> all = new ArrayList<>(docs);
+        for (long id = 0; corpus.hasNext(); id++) {
+            final Message message = corpus.next();
+            message.setNotificationId(id);
+            all.add(message);
+        }
+        for (Message message : all) {
+            writer.update(message.getId(), builder.build(message));
+        }
+        writer.commit();
+        for (int i = 0; i < BATCH; i++) {
+            resent.add(all.get(random.nextInt(docs)));
+        }
+        cached = new MessageUpserter(writer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cached.close();
+        indexer.close();
+        FileUtils.deleteQuietly(indexFolder);
+    }
+
+    @Benchmark
+    public int blindUpdate() throws IOException {
+        nextRound();
+        for (Message message : resent) {
+            writer.update(message.getId(), builder.build(message));
+        }
+        return resent.size();
+    }
+
+    @Benchmark
+    public long upsertCached() throws IOException {
+        nextRound();
+        return cached.upsert(resent.iterator(), MessageIndexer.DEFAULT_BATCH_SIZE);
+    }
+
+    @Benchmark
+    public long upsertLookup() throws IOException {
+        nextRound();
+        try (MessageUpserter upserter = new MessageUpserter(writer)) {
+            return upserter.upsert(resent.iterator(), MessageIndexer.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Change content of changedPct percent of the batch, so they differ from what was written before
+     */
+    private void nextRound() {
+        round++;
+        final int changed = BATCH * changedPct / 100;
+        for (int i = 0; i < changed; i++) {
+            final Message message = resent.get(i);
+            final String body = message.getBody();
+            final int roundMark = body.lastIndexOf(" #");
+            message.setBody((roundMark < 0 ? body : body.substring(0, roundMark)) + " #" + round);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package kz.kaznu.lucene.benchmarks;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.metrics.LatencyHistogram;
+import kz.kaznu.lucene.server.SearchExecutor;
+import kz.kaznu.lucene.server.ServerConfig;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bursts of concurrent searches on SearchExecutor: all requests of a burst are submitted at once, on a pool of
+ * platform threads or on virtual threads capped by permits. Every request searches two words and loads titles,
+ * after ioMillis of blocking that stands for a call the request makes elsewhere (remote shard, cold disk).
+ * Reports time to answer the burst, latency from submit and peak number of live threads.
+ * Needs JDK 21 and the tutorial jar built with the java21 profile for virtual threads
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar kz.kaznu.lucene.benchmarks.VirtualThreadBenchmark \
+ *        docs=100000 bursts=1000,10000,50000 ioMillis=0,10 threads=200 permits=10000
+ * </pre>
+ */
+public class VirtualThreadBenchmark {
+    private static final long NO_SHEDDING_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final String[] option = arg.split("=", 2);
+            options.put(option[0], option[1]);
+        }
+        final int docs = Integer.parseInt(options.getOrDefault("docs", "100000"));
+        final int threads = Integer.parseInt(options.getOrDefault("threads", "200"));
+        final int permits = Integer.parseInt(options.getOrDefault("permits", "10000"));
+
+        try (IndexReader reader = BenchmarkIndexes.forSize(docs).readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+            final Random random = new Random(CorpusGenerator.DEFAULT_SEED);
+            final Query[] queries = new Query[1000];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = search.multiFieldQuery(CorpusGenerator.word(100 + random.nextInt(800)) + " "
+                        + CorpusGenerator.word(100 + random.nextInt(800)));
+            }
+            System.out.println("docs=" + docs + ", platform threads=" + threads + ", virtual permits=" + permits
+                    + ", processors=" + Runtime.getRuntime().availableProcessors());
+            for (String io : options.getOrDefault("ioMillis", "0,10").split(",")) {
+                for (String burst : options.getOrDefault("bursts", "1000,10000,50000").split(",")) {
+                    final int requests = Integer.parseInt(burst);
+                    final ServerConfig config = ServerConfig.defaults().withMaxQueueMillis(NO_SHEDDING_MILLIS);
+                    // every request is admitted, so only the execution mode differs
+                    run(search, queries, Long.parseLong(io), requests, config.withWorkers(threads, requests));
+                    run(search, queries, Long.parseLong(io), requests,
+                            config.withWorkers(permits, requests).withVirtualThreads(true));
+                }
+            }
+        }
+    }
+
+    private static void run(final BasicSearchExamples search, final Query[] queries, final long ioMillis,
+                            final int requests, final ServerConfig config) throws Exception {
+        // warm up at the same size, not counted
+        burst(search, queries, ioMillis, requests, config, new LatencyHistogram());
+        System.gc();
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final long elapsed = burst(search, queries, ioMillis, requests, config, latencies);
+        System.out.printf("%-8s io=%2d ms requests=%6d: %7d ms, %7.0f req/s, p50=%8.2f p99=%8.2f max=%8.2f ms,"
+                        + " peak threads=%d%n", config.isVirtualThreads() ? "virtual" : "platform", ioMillis, requests,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), requests / (elapsed / 1e9),
+                latencies.getMillisAtPercentile(50), latencies.getMillisAtPercentile(99),
+                latencies.getMaxNanos() / 1e6, threads.getPeakThreadCount());
+    }
+
+    private static long burst(final BasicSearchExamples search, final Query[] queries, final long ioMillis,
+                              final int requests, final ServerConfig config, final LatencyHistogram latencies)
+            throws Exception {
+        final List<CompletableFuture<Void>> answers = new ArrayList<>(requests);
+        final long start = System.nanoTime();
+        try (SearchExecutor executor = SearchExecutor.create(config)) {
+            for (int i = 0; i < requests; i++) {
+                final Query query = queries[i % queries.length];
+                final long submitted = System.nanoTime();
+                answers.add(executor.submit(() -> {
+                    if (ioMillis > 0) {
+                        Thread.sleep(ioMillis);
+                    }
+                    return search.search(query, 10, "title");
+                }).thenAccept(results -> latencies.record(System.nanoTime() - submitted)));
+            }
+            CompletableFuture.allOf(answers.toArray(new CompletableFuture[0])).get();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -1,20 +1,79 @@
 package kz.kaznu.lucene;
 
-import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.metrics.SearchMetrics;
+import kz.kaznu.lucene.search.DateInterval;
+import kz.kaznu.lucene.search.FacetCollector;
+import kz.kaznu.lucene.search.FacetedResults;
+import kz.kaznu.lucene.search.FuzzyQueryBuilder;
+import kz.kaznu.lucene.search.HitLoader;
+import kz.kaznu.lucene.search.MessageFilters;
+import kz.kaznu.lucene.search.MessageSearcherFactory;
+import kz.kaznu.lucene.search.MessageSearcherManager;
+import kz.kaznu.lucene.search.NewestFirst;
+import kz.kaznu.lucene.search.QueryResultCache;
+import kz.kaznu.lucene.search.RelatedDocuments;
+import kz.kaznu.lucene.search.SearchCursor;
+import kz.kaznu.lucene.search.SearchHit;
+import kz.kaznu.lucene.search.SearchResults;
+import kz.kaznu.lucene.search.SlicedIndexSearcher;
+import kz.kaznu.lucene.search.TimeLimitedSearch;
 import org.apache.lucene.index.*;
 import org.apache.lucene.queries.mlt.MoreLikeThisQuery;
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class BasicSearchExamples {
     public static final int DEFAULT_LIMIT = 10;
-    private final IndexReader reader;
+    public static final String[] DEFAULT_FIELDS = {"title", "body", "region", "creationDate"};
+    private static final String[] TEXT_FIELDS = {"body", "title"};
+    private final IndexSearcher searcher;
+    private final MessageSearcherManager searcherManager;
+    private volatile QueryResultCache resultCache;
+    private volatile long timeoutMillis;
+    private volatile SearchMetrics metrics;
+    private volatile FuzzyQueryBuilder fuzzyQueries = new FuzzyQueryBuilder(MessageAnalysis.queryAnalyzer());
+    private volatile RelatedDocuments relatedDocuments = new RelatedDocuments();
 
+    /**
+     * Search over fixed reader, new documents will not be visible
+     * @param reader reader to search, for example MessageIndexer.readIndex()
+     */
     public BasicSearchExamples(IndexReader reader) {
-        this.reader = reader;
+        this(reader, null);
+    }
+
+    /**
+     * Search over fixed reader, segments of every query are searched in parallel, see SlicedIndexSearcher
+     * @param reader reader to search, for example MessageIndexer.readIndex()
+     * @param executor executor shared by all searches, null to search in the calling thread
+     */
+    public BasicSearchExamples(IndexReader reader, ExecutorService executor) {
+        this(new SlicedIndexSearcher(reader, executor));
+    }
+
+    /**
+     * Search with a searcher created elsewhere, for example SlicedIndexSearcher with tuned slice size.
+     * Filter caching of MessageSearcherFactory is set on it
+     * @param searcher searcher over fixed reader
+     */
+    public BasicSearchExamples(IndexSearcher searcher) {
+        this.searcher = searcher;
+        MessageSearcherFactory.configure(searcher);
+        this.searcherManager = null;
+    }
+
+    /**
+     * Search over near-real-time searchers, new documents become visible as manager refreshes
+     * @param searcherManager manager opened on the indexing writer
+     */
+    public BasicSearchExamples(MessageSearcherManager searcherManager) {
+        this.searcher = null;
+        this.searcherManager = searcherManager;
     }
 
     /**
@@ -26,13 +85,156 @@ public class BasicSearchExamples {
      * @throws ParseException
      */
     public void searchIndexWithTermQuery(final String toSearch, final String searchField, final int limit) throws IOException, ParseException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
+        final Query query = termQuery(toSearch, searchField);
+        showHits(search(query, limit, DEFAULT_FIELDS));
+    }
+
+    /**
+     * Search with any query, for example built by one of *Query methods of this class
+     * @param query query to execute
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see DEFAULT_FIELDS
+     * @return hits in order of relevance
+     * @throws IOException
+     */
+    public SearchResults search(final Query query, final int limit, final String... fields) throws IOException {
+        return search(query, null, 0, limit, null, fields);
+    }
+
+    /**
+     * Page of search results in order of relevance. Works with any query, for example termQuery,
+     * bodyQuery, multiFieldQuery, rangeDateQuery, regionQuery or manyQueriesQuery.
+     * Deep pages cost as much as the first one, unlike a bigger limit
+     * @param query query to execute
+     * @param after getNextCursor() of the previous page, null for the first page
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see DEFAULT_FIELDS
+     * @return hits in order of relevance and cursor of the next page
+     * @throws IOException
+     */
+    public SearchResults searchAfter(final Query query, final SearchCursor after, final int limit,
+                                     final String... fields) throws IOException {
+        return search(query, after, 0, limit, null, fields);
+    }
+
+    /**
+     * Newest documents matching the query, see NewestFirst.
+     * Nothing is scored and not every match is visited, so total hits is only a lower bound
+     * @param query query to execute, for example MessageFilters.regions
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see DEFAULT_FIELDS
+     * @return hits ordered by creationDate, newest first
+     * @throws IOException
+     */
+    public SearchResults searchNewest(final Query query, final int limit, final String... fields) throws IOException {
+        return searchNewest(query, 0, limit, fields);
+    }
+
+    /**
+     * One page of searchNewest. Every page collects offset + limit newest matches,
+     * so the cost grows with the page number
+     * @param query query to execute
+     * @param offset how many newest results to skip, for example page * limit
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see DEFAULT_FIELDS
+     * @return hits ordered by creationDate, newest first
+     * @throws IOException
+     */
+    public SearchResults searchNewest(final Query query, final int offset, final int limit,
+                                      final String... fields) throws IOException {
+        return search(query, null, offset, limit, MessageIndexer.NEWEST_FIRST, fields);
+    }
+
+    /**
+     * Page of searchNewest, deep pages cost as much as the first one
+     * @param query query to execute
+     * @param after getNextCursor() of the previous page, null for the first page
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see DEFAULT_FIELDS
+     * @return hits ordered by creationDate, newest first, and cursor of the next page
+     * @throws IOException
+     */
+    public SearchResults searchNewestAfter(final Query query, final SearchCursor after, final int limit,
+                                           final String... fields) throws IOException {
+        return search(query, after, 0, limit, MessageIndexer.NEWEST_FIRST, fields);
+    }
+
+    /**
+     * Hits in order of relevance with counts per region and date bucket of all matched documents,
+     * everything in one pass over the matches
+     * @param query query to execute
+     * @param limit how many results to return
+     * @param interval width of date buckets
+     * @param fields stored fields to load for every hit, see DEFAULT_FIELDS
+     * @throws IOException
+     */
+    public FacetedResults searchWithFacets(final Query query, final int limit, final DateInterval interval,
+                                           final String... fields) throws IOException {
+        final long start = System.nanoTime();
+        final IndexSearcher indexSearcher = acquireSearcher();
+        try {
+            final TopScoreDocCollector hitsCollector = TopScoreDocCollector.create(limit);
+            final FacetCollector facetCollector = new FacetCollector(interval);
+            indexSearcher.search(query, MultiCollector.wrap(hitsCollector, facetCollector));
+
+            final TopDocs search = hitsCollector.topDocs();
+            final List<SearchHit> hits = HitLoader.load(indexSearcher.getIndexReader(), search.scoreDocs, fields);
+            record(SearchMetrics.FACETS, query, start, search.totalHits);
+            return new FacetedResults(new SearchResults(search.totalHits, hits), facetCollector.getFacets());
+        } finally {
+            releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Cache results of search. Queries should not be modified after they were searched with
+     * @param resultCache cache to use or null to switch caching off
+     */
+    public void setResultCache(final QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Measure latency of every search by query type, see SearchMetrics
+     * @param metrics metrics to record to or null to switch measuring off
+     */
+    public void setMetrics(final SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stop collecting hits of search and searchAfter after a timeout, see TimeLimitedSearch.
+     * Results are then marked with isTimedOut() and not cached.
+     * Rewriting of fuzzy and more like this queries is done before and is not limited
+     * @param timeoutMillis how long one query may collect hits, 0 for no limit
+     */
+    public void setTimeout(final long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeout should not be negative: " + timeoutMillis);
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
 
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+
+    /**
+     * TermQuery, toSearch is not analyzed
+     * @param toSearch term to search
+     * @param searchField field where to search. We have "body" and "title" fields
+     */
+    public Query termQuery(final String toSearch, final String searchField) {
         final Term term = new Term(searchField, toSearch);
-        final Query query = new TermQuery(term);
-        final TopDocs search = indexSearcher.search(query, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        return new TermQuery(term);
     }
 
     /***
@@ -40,9 +242,15 @@ public class BasicSearchExamples {
      * @throws IOException
      */
     public void countTerm() throws IOException {
-
-        long countBody = reader.getSumDocFreq("body");
-        long countTitle = reader.getSumDocFreq("title");
+        final IndexSearcher indexSearcher = acquireSearcher();
+        final long countBody;
+        final long countTitle;
+        try {
+            countBody = indexSearcher.getIndexReader().getSumDocFreq("body");
+            countTitle = indexSearcher.getIndexReader().getSumDocFreq("title");
+        } finally {
+            releaseSearcher(indexSearcher);
+        }
 
         System.out.println("Body: " + countBody);
         System.out.println("Title: " + countTitle);
@@ -70,15 +278,19 @@ public class BasicSearchExamples {
      * @throws ParseException
      */
     public void searchInBody(final String toSearch, final int limit) throws IOException, ParseException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
-
-        final QueryParser queryParser = new QueryParser("body", new RussianAnalyzer());
-        final Query query = queryParser.parse(toSearch);
+        final Query query = bodyQuery(toSearch);
         System.out.println("Type of query: " + query.getClass().getSimpleName());
 
-        final TopDocs search = indexSearcher.search(query, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        showHits(search(query, limit, DEFAULT_FIELDS));
+    }
+
+    /**
+     * Query for "body" field parsed with QueryParser
+     * @param toSearch query string
+     * @throws ParseException
+     */
+    public Query bodyQuery(final String toSearch) throws ParseException {
+        return MessageAnalysis.parse("body", toSearch);
     }
 
     /***
@@ -89,15 +301,19 @@ public class BasicSearchExamples {
      * @throws ParseException
      */
     public void SearchInMultiField(final String toSearch, final int limit) throws IOException, ParseException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
-
-        final MultiFieldQueryParser queryParser = new MultiFieldQueryParser(new String[]{"body","title"}, new RussianAnalyzer());
-        final Query query = queryParser.parse(toSearch);
+        final Query query = multiFieldQuery(toSearch);
         System.out.println("Type of query: " + query.getClass().getSimpleName());
 
-        final TopDocs search = indexSearcher.search(query, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        showHits(search(query, limit, DEFAULT_FIELDS));
+    }
+
+    /**
+     * Query for "body" and "title" fields parsed with MultiFieldQueryParser
+     * @param toSearch query string
+     * @throws ParseException
+     */
+    public Query multiFieldQuery(final String toSearch) throws ParseException {
+        return MessageAnalysis.parse(TEXT_FIELDS, toSearch);
     }
 
     /***
@@ -107,14 +323,18 @@ public class BasicSearchExamples {
      * @throws IOException
      */
     public void searchByBeforeDate(long date, final int limit) throws IOException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
-
-        Query q = NumericRangeQuery.newLongRange("creationDate", 0L, date, true, true);
+        Query q = beforeDateQuery(date);
         System.out.println("Type of query: " + q.getClass().getSimpleName());
 
-        final TopDocs search = indexSearcher.search(q, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        showHits(search(q, limit, DEFAULT_FIELDS));
+    }
+
+    /**
+     * Documents created at or before date
+     * @param date unix time in seconds
+     */
+    public Query beforeDateQuery(final long date) {
+        return NumericRangeQuery.newLongRange("creationDate", 0L, date, true, true);
     }
 
     /***
@@ -124,16 +344,18 @@ public class BasicSearchExamples {
      * @throws IOException
      */
     public void searchByAfterDate(long date, final int limit) throws IOException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
-
-        long now = System.currentTimeMillis() / 1000L;
-
-        Query q = NumericRangeQuery.newLongRange("creationDate", date, now, true, true);
+        Query q = afterDateQuery(date);
         System.out.println("Type of query: " + q.getClass().getSimpleName());
 
-        final TopDocs search = indexSearcher.search(q, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        showHits(search(q, limit, DEFAULT_FIELDS));
+    }
+
+    /**
+     * Documents created from date till now, see MessageFilters.since
+     * @param date unix time in seconds
+     */
+    public Query afterDateQuery(final long date) {
+        return MessageFilters.since(date);
     }
 
     /***
@@ -144,14 +366,19 @@ public class BasicSearchExamples {
      * @throws IOException
      */
     public void searchByRangeDate(long firstDate, long secondDate, final int limit) throws IOException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
-
-        Query q = NumericRangeQuery.newLongRange("creationDate", secondDate, firstDate, true, true);
+        Query q = rangeDateQuery(firstDate, secondDate);
         System.out.println("Type of query: " + q.getClass().getSimpleName());
 
-        final TopDocs search = indexSearcher.search(q, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        showHits(search(q, limit, DEFAULT_FIELDS));
+    }
+
+    /**
+     * Documents created between two dates, both inclusive
+     * @param firstDate later date, unix time in seconds
+     * @param secondDate earlier date, unix time in seconds
+     */
+    public Query rangeDateQuery(final long firstDate, final long secondDate) {
+        return NumericRangeQuery.newLongRange("creationDate", secondDate, firstDate, true, true);
     }
 
 
@@ -163,33 +390,38 @@ public class BasicSearchExamples {
      * @throws ParseException
      */
     public void searchInRegion(final String[] toSearch, final int limit) throws IOException, ParseException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
-
-        BooleanQuery bq = new BooleanQuery();
-
-        BooleanQuery bq1 = new BooleanQuery();
-        final QueryParser queryParser = new QueryParser("region", new RussianAnalyzer());
-
-        for(int i = 0; i < toSearch.length; i++) {
-
-            final Query query = queryParser.parse(toSearch[i]);
-            bq1.add((query), BooleanClause.Occur.SHOULD);
-
-            System.out.println(toSearch[i]);
-
+        for (String region : toSearch) {
+            System.out.println(region);
         }
+        showHits(search(regionQuery(toSearch), limit, DEFAULT_FIELDS));
+    }
 
-        bq.add((bq1), BooleanClause.Occur.MUST);
-
-        final QueryParser queryParser1 = new QueryParser("title", new RussianAnalyzer());
-        final Query query = queryParser1.parse("Тима");
-        bq.add((query), BooleanClause.Occur.MUST);
-
-        Query q2 = new ConstantScoreQuery(bq);
+    /**
+     * Documents in any of the regions with "Тима" in the title.
+     * Regions are a filter, so hits are scored by the title match only. They are matched by RegionFilter
+     * of MessageFilters.regions, names should be spelled exactly as in the messages
+     * @param toSearch regions to search(String[])
+     * @throws ParseException
+     */
+    public Query regionQuery(final String[] toSearch) throws ParseException {
+        return new BooleanQuery.Builder()
+                .add(MessageAnalysis.parse("title", "Тима"), BooleanClause.Occur.MUST)
+                .add(MessageFilters.regions(toSearch), BooleanClause.Occur.FILTER)
+                .build();
+    }
 
-        final TopDocs search = indexSearcher.search(q2, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+    /***
+     * Search newest documents in regions, see searchNewest
+     * @param toSearch regions to search(String[])
+     * @param limit how many results to return
+     * @throws IOException
+     * @throws ParseException
+     */
+    public void searchLatestInRegion(final String[] toSearch, final int limit) throws IOException, ParseException {
+        for (String region : toSearch) {
+            System.out.println(region);
+        }
+        showHits(searchNewest(MessageFilters.regions(toSearch), limit, DEFAULT_FIELDS));
     }
 
     /***
@@ -206,78 +438,97 @@ public class BasicSearchExamples {
     public void searchByManyQueries(final String strSearch, final String[] strArrayRegion,
                                     final long[] searchDate, final int howSearchInDate,
                                     final int limit) throws IOException, ParseException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
-        final long firstDate;
-        final long secondDate;
-
-        BooleanQuery mainBooleanQuery = new BooleanQuery();
-
-        BooleanQuery regionBooleanQuery = new BooleanQuery();
-        final QueryParser queryParserRegion = new QueryParser("region", new RussianAnalyzer());
-
-        for(int i = 0; i < strArrayRegion.length; i++) {
-
-            final Query query = queryParserRegion.parse(strArrayRegion[i]);
-            regionBooleanQuery.add((query), BooleanClause.Occur.SHOULD);
-
-            System.out.println(strArrayRegion[i]);
-
+        for (String region : strArrayRegion) {
+            System.out.println(region);
         }
+        final Query query = manyQueriesQuery(strSearch, strArrayRegion, searchDate, howSearchInDate);
+        showHits(search(query, limit, DEFAULT_FIELDS));
+    }
 
-        mainBooleanQuery.add((regionBooleanQuery), BooleanClause.Occur.MUST);
-
-        final MultiFieldQueryParser queryParser = new MultiFieldQueryParser(new String[]{"body","title"}, new RussianAnalyzer());
-        final Query query = queryParser.parse(strSearch);
-        mainBooleanQuery.add((query), BooleanClause.Occur.MUST);
-
+    /**
+     * Query of searchByManyQueries
+     * @param strSearch string to search
+     * @param strArrayRegion string array of regions
+     * @param searchDate long array of dates
+     * @param howSearchInDate 1 - before searchDate[0], 2 - after searchDate[0],
+     *                        3 - between searchDate[0] and searchDate[1], anything else - any date
+     * @throws ParseException
+     */
+    public Query manyQueriesQuery(final String strSearch, final String[] strArrayRegion,
+                                  final long[] searchDate, final int howSearchInDate) throws ParseException {
+        final Query searchByDate;
         switch(howSearchInDate) {
             case 1:
-                firstDate = 0L;
-                secondDate = searchDate[0];
+                searchByDate = MessageFilters.dateRange(0L, searchDate[0]);
                 break;
             case 2:
-                firstDate = searchDate[0];
-                secondDate = System.currentTimeMillis() / 1000L;
+                searchByDate = MessageFilters.since(searchDate[0]);
                 break;
             case 3:
-                firstDate = searchDate[0];
-                secondDate = searchDate[1];
+                searchByDate = MessageFilters.dateRange(searchDate[0], searchDate[1]);
                 break;
             default:
-                firstDate = 0L;
-                secondDate = System.currentTimeMillis() / 1000L;
+                searchByDate = MessageFilters.since(0L);
                 break;
         }
 
-        Query searchByDate = NumericRangeQuery.newLongRange("creationDate", firstDate, secondDate, true, true);
-        mainBooleanQuery.add(searchByDate, BooleanClause.Occur.MUST);
-
-        Query q2 = new ConstantScoreQuery(mainBooleanQuery);
-
-        final TopDocs search = indexSearcher.search(q2, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        // only the text is scored, regions and dates are cached filters
+        return new BooleanQuery.Builder()
+                .add(MessageAnalysis.parse(TEXT_FIELDS, strSearch), BooleanClause.Occur.MUST)
+                .add(MessageFilters.regions(strArrayRegion), BooleanClause.Occur.FILTER)
+                .add(searchByDate, BooleanClause.Occur.FILTER)
+                .build();
     }
 
     /***
-     * Search using MoreLikeThisQuery.
-     * Actually dont work right now
+     * Search using MoreLikeThisQuery, likeText is analyzed for every query.
+     * For documents that are already in the index use searchRelated
      *
-     * @param likeText
-     * @param moreLikeFields
-     * @param searchField
-     * @param limit
+     * @param likeText text to find similar documents to
+     * @param moreLikeFields fields to compare
+     * @param searchField field to analyze likeText as
+     * @param limit how many results to return
      * @throws IOException
      */
     public void moreLikeThisQuery(final String likeText, final String[] moreLikeFields,
                                   final String searchField, final int limit) throws IOException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
+        showHits(search(moreLikeThis(likeText, moreLikeFields, searchField), limit, DEFAULT_FIELDS));
+    }
 
-        final MoreLikeThisQuery test = new MoreLikeThisQuery(likeText, moreLikeFields,  new RussianAnalyzer(), searchField);
+    /**
+     * MoreLikeThisQuery, see moreLikeThisQuery
+     */
+    public Query moreLikeThis(final String likeText, final String[] moreLikeFields, final String searchField) {
+        return new MoreLikeThisQuery(likeText, moreLikeFields, MessageAnalysis.queryAnalyzer(), searchField);
+    }
 
-        final TopDocs search = indexSearcher.search(test, limit);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+    /**
+     * Related news: documents most similar to a document of the index, see RelatedDocuments
+     * @param docId document id, for example SearchHit.getDocId() of a hit returned by this instance
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see DEFAULT_FIELDS
+     * @return similar documents without the document itself
+     * @throws IOException
+     */
+    public SearchResults searchRelated(final int docId, final int limit, final String... fields) throws IOException {
+        final long start = System.nanoTime();
+        final IndexSearcher indexSearcher = acquireSearcher();
+        try {
+            final TopDocs related = relatedDocuments.search(indexSearcher, docId, limit);
+            final List<SearchHit> hits = HitLoader.load(indexSearcher.getIndexReader(), related.scoreDocs, fields);
+            record(SearchMetrics.RELATED, null, start, related.totalHits);
+            return new SearchResults(related.totalHits, hits);
+        } finally {
+            releaseSearcher(indexSearcher);
+        }
+    }
+
+    /**
+     * Settings of searchRelated, for example term frequency limits and cache size
+     * @param relatedDocuments related documents finder to use
+     */
+    public void setRelatedDocuments(final RelatedDocuments relatedDocuments) {
+        this.relatedDocuments = relatedDocuments;
     }
 
     /**
@@ -293,7 +544,7 @@ public class BasicSearchExamples {
     }
 
     /**
-     * Search using FuzzyQuery.
+     * Typo tolerant search, see typoTolerantQuery
      * @param toSearch string to search
      * @param searchField field where to search. We have "body" and "title" fields
      * @param limit how many results to return
@@ -301,16 +552,39 @@ public class BasicSearchExamples {
      * @throws ParseException
      */
     public void fuzzySearch(final String toSearch, final String searchField, final int limit) throws IOException {
-        final IndexSearcher indexSearcher = new IndexSearcher(reader);
+        final SearchResults results = search(typoTolerantQuery(toSearch, searchField), limit, DEFAULT_FIELDS);
+        System.out.println("Total hits: " + results.getTotalHits());
+        showHits(results);
+    }
 
+    /**
+     * FuzzyQuery, toSearch is not analyzed
+     * @param toSearch term to search
+     * @param searchField field where to search. We have "body" and "title" fields
+     */
+    public Query fuzzyQuery(final String toSearch, final String searchField) {
         final Term term = new Term(searchField, toSearch);
 
         final int maxEdits = 2; // This is very important variable. It regulates fuzziness of the query
-        final Query query = new FuzzyQuery(term, maxEdits);
-        final TopDocs search = indexSearcher.search(query, limit);
-        System.out.println(search);
-        final ScoreDoc[] hits = search.scoreDocs;
-        showHits(hits);
+        return new FuzzyQuery(term, maxEdits);
+    }
+
+    /**
+     * Words of toSearch are stemmed by RussianAnalyzer and each stem is matched with typos,
+     * see FuzzyQueryBuilder
+     * @param toSearch words to search
+     * @param searchField field where to search. We have "body" and "title" fields
+     */
+    public Query typoTolerantQuery(final String toSearch, final String searchField) {
+        return fuzzyQueries.build(searchField, toSearch);
+    }
+
+    /**
+     * Settings of typoTolerantQuery, for example prefix length and max expansions
+     * @param fuzzyQueries builder to use
+     */
+    public void setFuzzyQueryBuilder(final FuzzyQueryBuilder fuzzyQueries) {
+        this.fuzzyQueries = fuzzyQueries;
     }
 
     /**
@@ -325,21 +599,94 @@ public class BasicSearchExamples {
         fuzzySearch(toSearch, "body", DEFAULT_LIMIT);
     }
 
-    private void showHits(final ScoreDoc[] hits) throws IOException {
-        if (hits.length == 0) {
+    // sort is null for relevance, otherwise MessageIndexer.NEWEST_FIRST
+    private SearchResults search(final Query query, final SearchCursor after, final int offset, final int limit,
+                                 final Sort sort, final String[] fields) throws IOException {
+        final long start = System.nanoTime();
+        final SearchResults results = execute(query, after, offset, limit, sort, fields);
+        final String operation = sort == null ? (after == null ? SearchMetrics.RELEVANCE : SearchMetrics.RELEVANCE_AFTER)
+                : (after == null ? SearchMetrics.NEWEST : SearchMetrics.NEWEST_AFTER);
+        record(operation, query, start, results.getTotalHits());
+        return results;
+    }
+
+    private SearchResults execute(final Query query, final SearchCursor after, final int offset, final int limit,
+                                  final Sort sort, final String[] fields) throws IOException {
+        if (offset < 0 || limit < 1) {
+            throw new IllegalArgumentException("offset should not be negative and limit should be positive: "
+                    + offset + ", " + limit);
+        }
+        final SearchCursor.Order order = sort == null ? SearchCursor.Order.RELEVANCE : SearchCursor.Order.NEWEST_FIRST;
+        if (after != null && after.getOrder() != order) {
+            throw new IllegalArgumentException("Cursor of " + after.getOrder() + " search can not be used for " + order);
+        }
+        // deep pages are rarely repeated, only first pages are cached
+        final QueryResultCache cache = after == null ? resultCache : null;
+        final IndexSearcher indexSearcher = acquireSearcher();
+        try {
+            final IndexReader reader = indexSearcher.getIndexReader();
+            final QueryResultCache.Key key = cache == null ? null : QueryResultCache.key(query, offset, limit, sort, fields);
+            if (cache != null) {
+                final SearchResults cached = cache.get(key, reader);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            final TopDocs search;
+            final long timeout = timeoutMillis;
+            boolean timedOut = false;
+            if (sort == null && timeout > 0) {
+                final TimeLimitedSearch.TimedTopDocs timed = TimeLimitedSearch.searchAfter(indexSearcher,
+                        after == null ? null : after.toScoreDoc(), query, limit, timeout);
+                search = timed;
+                timedOut = timed.isTimedOut();
+            } else if (sort == null) {
+                search = indexSearcher.searchAfter(after == null ? null : after.toScoreDoc(), query, limit);
+            } else if (after == null) {
+                search = NewestFirst.search(indexSearcher, query, offset, limit);
+            } else {
+                search = NewestFirst.searchAfter(indexSearcher, query, (FieldDoc) after.toScoreDoc(), limit);
+            }
+            final List<SearchHit> hits = HitLoader.load(reader, search.scoreDocs, fields);
+            final SearchCursor next = search.scoreDocs.length < limit ? null
+                    : SearchCursor.after(order, search.scoreDocs[search.scoreDocs.length - 1]);
+            final SearchResults results = new SearchResults(search.totalHits, hits, next, timedOut);
+            if (cache != null && !timedOut) {
+                cache.put(key, reader, results);
+            }
+            return results;
+        } finally {
+            releaseSearcher(indexSearcher);
+        }
+    }
+
+    private void record(final String operation, final Query query, final long startNanos, final int totalHits) {
+        final SearchMetrics searchMetrics = metrics;
+        if (searchMetrics != null) {
+            searchMetrics.record(operation, query, System.nanoTime() - startNanos, totalHits);
+        }
+    }
+
+    private IndexSearcher acquireSearcher() throws IOException {
+        return searcherManager != null ? searcherManager.acquire() : searcher;
+    }
+
+    private void releaseSearcher(final IndexSearcher indexSearcher) throws IOException {
+        if (searcherManager != null) {
+            searcherManager.release(indexSearcher);
+        }
+    }
+
+    private static void showHits(final SearchResults results) {
+        if (results.isEmpty()) {
             System.out.println("\n\tНичего не найдено");
             return;
         }
         System.out.println("\n\tРезультаты поиска:");
-        for (ScoreDoc hit : hits) {
-            final String title = reader.document(hit.doc).get("title");
-            final String body = reader.document(hit.doc).get("body");
-            final String region = reader.document(hit.doc).get("region");
-            final String creationDate = reader.document(hit.doc).get("creationDate");
-            final String test = reader.document(hit.doc).get("test");
-            final Float score = hit.score;
-            System.out.println(score);
-            System.out.println("\n\tDocument Id = " + hit.doc + "\n\ttitle = " + title + "\n\tbody = " + body + "\n\tregion = " + region + "\n\tcreationDate = " + creationDate + "\n\ttest = " + test);
+        for (SearchHit hit : results.getHits()) {
+            System.out.println(hit.getScore());
+            System.out.println("\n\tDocument Id = " + hit.getDocId() + "\n\ttitle = " + hit.get("title") + "\n\tbody = " + hit.get("body") + "\n\tregion = " + hit.get("region") + "\n\tcreationDate = " + hit.get("creationDate"));
         }
     }
 }
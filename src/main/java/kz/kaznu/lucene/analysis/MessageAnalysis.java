@@ -0,0 +1,110 @@
+package kz.kaznu.lucene.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Analyzers and query parsers shared by indexing and search.
+ * RussianAnalyzer loads its stop words and builds its components once, after that it is thread-safe
+ * and reuses token streams per thread, so one instance serves every query and every IndexWriter.
+ *
+ * QueryParser keeps state while parsing and can not be shared between threads,
+ * so a parse takes an idle parser of its field (or set of fields) from a pool and returns it after.
+ * The pool is not per thread, so virtual threads that live for one request reuse parsers too.
+ * At most MAX_IDLE_PARSERS idle parsers are kept per set of fields, more concurrent parses create
+ * parsers that are dropped after use. Pools of at most MAX_FIELD_SETS sets of fields are kept,
+ * the least recently used one is dropped for a new set, so fields taken from requests can not grow it
+ */
+public final class MessageAnalysis {
+    private static final Analyzer INDEX_ANALYZER = new RussianAnalyzer();
+    private static final Analyzer QUERY_ANALYZER = new RussianAnalyzer();
+
+    static final int MAX_IDLE_PARSERS = 64;
+    static final int MAX_FIELD_SETS = 32;
+
+    // least recently used set of fields first
+    private static final Map<List<String>, Queue<QueryParser>> PARSERS = Collections.synchronizedMap(
+            new LinkedHashMap<List<String>, Queue<QueryParser>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<List<String>, Queue<QueryParser>> eldest) {
+                    return size() > MAX_FIELD_SETS;
+                }
+            });
+
+    private MessageAnalysis() {
+    }
+
+    /**
+     * @return analyzer for IndexWriterConfig, do not close it
+     */
+    public static Analyzer indexAnalyzer() {
+        return INDEX_ANALYZER;
+    }
+
+    /**
+     * @return analyzer for query text, same analysis as indexAnalyzer(), do not close it
+     */
+    public static Analyzer queryAnalyzer() {
+        return QUERY_ANALYZER;
+    }
+
+    /**
+     * Parse query with QueryParser syntax
+     * @param field default field of the query, "body", "title" or "region"
+     * @param text query string
+     * @throws ParseException
+     */
+    public static Query parse(final String field, final String text) throws ParseException {
+        return parse(new String[]{field}, text);
+    }
+
+    /**
+     * Parse query with MultiFieldQueryParser syntax, words are searched in all the fields
+     * @param fields fields to search, for example "body" and "title"
+     * @param text query string
+     * @throws ParseException
+     */
+    public static Query parse(final String[] fields, final String text) throws ParseException {
+        final String[] copy = fields.clone();
+        final Queue<QueryParser> idle = PARSERS.computeIfAbsent(Arrays.asList(copy),
+                key -> new ArrayBlockingQueue<>(MAX_IDLE_PARSERS));
+        QueryParser parser = idle.poll();
+        if (parser == null) {
+            parser = copy.length == 1 ? new QueryParser(copy[0], QUERY_ANALYZER)
+                    : new MultiFieldQueryParser(copy, QUERY_ANALYZER);
+        }
+        try {
+            return parser.parse(text);
+        } finally {
+            // dropped if the pool is full, or with the pool if its fields were evicted meanwhile
+            idle.offer(parser);
+        }
+    }
+
+    /**
+     * @return number of sets of fields with a pool of parsers
+     */
+    static int pooledFieldSets() {
+        return PARSERS.size();
+    }
+
+    /**
+     * @return number of idle parsers of the fields in the pool
+     */
+    static int idleParsers(final String... fields) {
+        final Queue<QueryParser> idle = PARSERS.get(Arrays.asList(fields));
+        return idle == null ? 0 : idle.size();
+    }
+}
@@ -0,0 +1,246 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.model.Message;
+import kz.kaznu.lucene.utils.Helper;
+import kz.kaznu.lucene.utils.MessageStream;
+import org.apache.lucene.document.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-threaded indexing pipeline for big reindexes:
+ * <pre>
+ *   parse (1 thread) -> build (buildThreads) -> index (indexThreads) -> SharedIndexWriter
+ * </pre>
+ * Stages are connected with bounded queues, so fast stage blocks instead of filling the memory.
+ * Throughput of every stage is reported in Result to find out which one is the bottleneck
+ */
+public class BulkIndexer {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    // end of stream markers, compared by reference
+    private static final Message NO_MORE_MESSAGES = new Message();
+    private static final Document NO_MORE_DOCUMENTS = new Document();
+
+    private final int buildThreads;
+    private final int indexThreads;
+    private final int queueCapacity;
+
+    /**
+     * Pipeline using all available processors for building and indexing
+     */
+    public BulkIndexer() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+                DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param buildThreads how many threads convert messages to documents
+     * @param indexThreads how many threads add documents to the IndexWriter
+     * @param queueCapacity how many items may wait between two stages
+     */
+    public BulkIndexer(final int buildThreads, final int indexThreads, final int queueCapacity) {
+        if (buildThreads < 1 || indexThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Threads and queue capacity should be positive: "
+                    + buildThreads + ", " + indexThreads + ", " + queueCapacity);
+        }
+        this.buildThreads = buildThreads;
+        this.indexThreads = indexThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Index JSON file with array of messages, same format as resources/tutorial.json
+     *
+     * @param file file to index
+     * @param writer writer to add documents to, it is committed at the end
+     * @return throughput of every stage
+     * @throws IOException
+     */
+    public Result index(final File file, final SharedIndexWriter writer) throws IOException {
+        try (MessageStream messages = Helper.openMessageStream(file)) {
+            return index(messages, writer);
+        }
+    }
+
+    /**
+     * Index messages from the iterator. It is read from one thread only
+     *
+     * @param messages messages to index
+     * @param writer writer to add documents to, it is committed at the end
+     * @return throughput of every stage
+     * @throws IOException
+     */
+    public Result index(final Iterator<Message> messages, final SharedIndexWriter writer) throws IOException {
+        final BlockingQueue<Message> messageQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Document> documentQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final StageStats parse = new StageStats("parse", 1);
+        final StageStats build = new StageStats("build", buildThreads);
+        final StageStats index = new StageStats("index", indexThreads);
+        final AtomicInteger runningBuilders = new AtomicInteger(buildThreads);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(1 + buildThreads + indexThreads, r -> {
+            final Thread thread = new Thread(r, "bulk-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        final long start = System.nanoTime();
+        try {
+            stages.submit(() -> {
+                try {
+                    while (true) {
+                        final long t0 = System.nanoTime();
+                        if (!messages.hasNext()) {
+                            break;
+                        }
+                        final Message message = messages.next();
+                        final long t1 = System.nanoTime();
+                        messageQueue.put(message);
+                        parse.addBusy(t1 - t0, 1);
+                        parse.addWait(System.nanoTime() - t1);
+                    }
+                } finally {
+                    for (int i = 0; i < buildThreads; i++) {
+                        messageQueue.put(NO_MORE_MESSAGES);
+                    }
+                }
+                return null;
+            });
+            for (int i = 0; i < buildThreads; i++) {
+                stages.submit(() -> {
+                    try {
+                        while (true) {
+                            final long t0 = System.nanoTime();
+                            final Message message = messageQueue.take();
+                            if (message == NO_MORE_MESSAGES) {
+                                break;
+                            }
+                            final long t1 = System.nanoTime();
+                            final Document document = message.convertToDocument();
+                            final long t2 = System.nanoTime();
+                            documentQueue.put(document);
+                            build.addBusy(t2 - t1, 1);
+                            build.addWait(t1 - t0 + System.nanoTime() - t2);
+                        }
+                    } finally {
+                        // last builder tells indexing threads to stop
+                        if (runningBuilders.decrementAndGet() == 0) {
+                            for (int j = 0; j < indexThreads; j++) {
+                                documentQueue.put(NO_MORE_DOCUMENTS);
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (int i = 0; i < indexThreads; i++) {
+                stages.submit(() -> {
+                    while (true) {
+                        final long t0 = System.nanoTime();
+                        final Document document = documentQueue.take();
+                        if (document == NO_MORE_DOCUMENTS) {
+                            break;
+                        }
+                        final long t1 = System.nanoTime();
+                        writer.add(document);
+                        index.addBusy(System.nanoTime() - t1, 1);
+                        index.addWait(t1 - t0);
+                    }
+                    return null;
+                });
+            }
+            awaitAll(stages, 1 + buildThreads + indexThreads);
+        } finally {
+            executor.shutdownNow();
+        }
+        writer.commit();
+
+        final long wall = System.nanoTime() - start;
+        for (StageStats stats : Arrays.asList(parse, build, index)) {
+            stats.setWallNanos(wall);
+        }
+        return new Result(Arrays.asList(parse, build, index), wall);
+    }
+
+    private static void awaitAll(final CompletionService<Void> stages, final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            try {
+                stages.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for indexing", e);
+            } catch (ExecutionException e) {
+                // other stages would wait forever on the queues, executor.shutdownNow interrupts them
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Indexing failed", e.getCause());
+            }
+        }
+    }
+
+    public int getBuildThreads() {
+        return buildThreads;
+    }
+
+    public int getIndexThreads() {
+        return indexThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Outcome of one BulkIndexer run
+     */
+    public static class Result {
+        private final List<StageStats> stages;
+        private final long wallNanos;
+
+        Result(final List<StageStats> stages, final long wallNanos) {
+            this.stages = stages;
+            this.wallNanos = wallNanos;
+        }
+
+        /**
+         * @return parse, build and index stages in this order
+         */
+        public List<StageStats> getStages() {
+            return stages;
+        }
+
+        /**
+         * @return number of indexed documents
+         */
+        public long getIndexed() {
+            return stages.get(stages.size() - 1).getItems();
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder report = new StringBuilder();
+            for (StageStats stage : stages) {
+                report.append(stage).append('\n');
+            }
+            return report.toString();
+        }
+    }
+}
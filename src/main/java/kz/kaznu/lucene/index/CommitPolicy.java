@@ -0,0 +1,60 @@
+package kz.kaznu.lucene.index;
+
+/**
+ * Decides when SharedIndexWriter commits added documents.
+ * Commit happens after maxDocs documents or after maxMillis milliseconds, whichever comes first.
+ * Zero means the limit is not used. SharedIndexWriter.commit can be called explicitly with any policy
+ */
+public final class CommitPolicy {
+    private final int maxDocs;
+    private final long maxMillis;
+
+    private CommitPolicy(final int maxDocs, final long maxMillis) {
+        if (maxDocs < 0 || maxMillis < 0) {
+            throw new IllegalArgumentException("Limits should not be negative: " + maxDocs + ", " + maxMillis);
+        }
+        this.maxDocs = maxDocs;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Commit only when SharedIndexWriter.commit or close is called
+     */
+    public static CommitPolicy explicit() {
+        return new CommitPolicy(0, 0);
+    }
+
+    /**
+     * Commit after every maxDocs added documents
+     */
+    public static CommitPolicy everyDocs(final int maxDocs) {
+        return new CommitPolicy(maxDocs, 0);
+    }
+
+    /**
+     * Commit every maxMillis milliseconds if something was added
+     */
+    public static CommitPolicy everyMillis(final long maxMillis) {
+        return new CommitPolicy(0, maxMillis);
+    }
+
+    /**
+     * Commit after maxDocs added documents or after maxMillis milliseconds, whichever comes first
+     */
+    public static CommitPolicy everyDocsOrMillis(final int maxDocs, final long maxMillis) {
+        return new CommitPolicy(maxDocs, maxMillis);
+    }
+
+    public int getMaxDocs() {
+        return maxDocs;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CommitPolicy{maxDocs=" + maxDocs + ", maxMillis=" + maxMillis + "}";
+    }
+}
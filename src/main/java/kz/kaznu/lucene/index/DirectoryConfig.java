@@ -0,0 +1,129 @@
+package kz.kaznu.lucene.index;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * How MessageIndexer opens the index folder.
+ * FSDirectory.open picks the implementation itself: MMapDirectory only where it can unmap files,
+ * otherwise NIOFSDirectory (this is the case on Java 9+ with Lucene 5). mmap and nio choose it explicitly.
+ *
+ * MMapDirectory maps files even where unmapping is not supported, then files of closed readers
+ * stay mapped until garbage collection, which is fine for long-lived readers.
+ * With preload all mapped pages are read into memory when a file is opened, so the first queries
+ * don't wait for disk, at the cost of slower open.
+ *
+ * withNrtCaching keeps small freshly flushed segments in memory until commit,
+ * near-real-time refresh then opens them without going to disk
+ */
+public final class DirectoryConfig {
+    public static final double DEFAULT_NRT_MAX_MERGE_SIZE_MB = 5;
+    public static final double DEFAULT_NRT_MAX_CACHED_MB = 60;
+
+    private enum Type {
+        DEFAULT, MMAP, NIOFS
+    }
+
+    private final Type type;
+    private final boolean preload;
+    private final double nrtMaxMergeSizeMB;
+    private final double nrtMaxCachedMB;
+
+    private DirectoryConfig(final Type type, final boolean preload,
+                            final double nrtMaxMergeSizeMB, final double nrtMaxCachedMB) {
+        if (nrtMaxMergeSizeMB < 0 || nrtMaxCachedMB < 0) {
+            throw new IllegalArgumentException("Cache sizes should not be negative: "
+                    + nrtMaxMergeSizeMB + ", " + nrtMaxCachedMB);
+        }
+        this.type = type;
+        this.preload = preload;
+        this.nrtMaxMergeSizeMB = nrtMaxMergeSizeMB;
+        this.nrtMaxCachedMB = nrtMaxCachedMB;
+    }
+
+    /**
+     * Whatever FSDirectory.open chooses for the platform
+     */
+    public static DirectoryConfig defaults() {
+        return new DirectoryConfig(Type.DEFAULT, false, 0, 0);
+    }
+
+    /**
+     * MMapDirectory
+     *
+     * @param preload read all pages of a file into memory when it is opened
+     */
+    public static DirectoryConfig mmap(final boolean preload) {
+        return new DirectoryConfig(Type.MMAP, preload, 0, 0);
+    }
+
+    /**
+     * NIOFSDirectory, reads go through positional FileChannel reads and the page cache
+     */
+    public static DirectoryConfig nio() {
+        return new DirectoryConfig(Type.NIOFS, false, 0, 0);
+    }
+
+    /**
+     * Same directory wrapped with NRTCachingDirectory of default sizes
+     */
+    public DirectoryConfig withNrtCaching() {
+        return withNrtCaching(DEFAULT_NRT_MAX_MERGE_SIZE_MB, DEFAULT_NRT_MAX_CACHED_MB);
+    }
+
+    /**
+     * Same directory wrapped with NRTCachingDirectory
+     *
+     * @param maxMergeSizeMB only flushed and merged segments smaller than this are cached
+     * @param maxCachedMB limit of memory used by all cached segments
+     */
+    public DirectoryConfig withNrtCaching(final double maxMergeSizeMB, final double maxCachedMB) {
+        if (maxMergeSizeMB <= 0 || maxCachedMB <= 0) {
+            throw new IllegalArgumentException("Cache sizes should be positive: " + maxMergeSizeMB + ", " + maxCachedMB);
+        }
+        return new DirectoryConfig(type, preload, maxMergeSizeMB, maxCachedMB);
+    }
+
+    /**
+     * Open directory of the index folder, it should be closed by the caller
+     *
+     * @throws IOException
+     */
+    public Directory open(final Path path) throws IOException {
+        final Directory dir;
+        switch (type) {
+            case MMAP:
+                final MMapDirectory mmap = new MMapDirectory(path);
+                mmap.setPreload(preload);
+                dir = mmap;
+                break;
+            case NIOFS:
+                dir = new NIOFSDirectory(path);
+                break;
+            default:
+                dir = FSDirectory.open(path);
+        }
+        return isNrtCaching() ? new NRTCachingDirectory(dir, nrtMaxMergeSizeMB, nrtMaxCachedMB) : dir;
+    }
+
+    public boolean isPreload() {
+        return preload;
+    }
+
+    public boolean isNrtCaching() {
+        return nrtMaxCachedMB > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryConfig{type=" + type + ", preload=" + preload
+                + (isNrtCaching() ? ", nrtMaxMergeSizeMB=" + nrtMaxMergeSizeMB + ", nrtMaxCachedMB=" + nrtMaxCachedMB : "")
+                + "}";
+    }
+}
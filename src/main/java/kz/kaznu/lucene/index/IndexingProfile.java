@@ -0,0 +1,95 @@
+package kz.kaznu.lucene.index;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+
+import java.io.IOException;
+
+/**
+ * IndexWriter settings for the way MessageIndexer is used, chosen when it is created
+ */
+public enum IndexingProfile {
+    /**
+     * Lucene defaults: 16 MB RAM buffer, TieredMergePolicy, ConcurrentMergeScheduler
+     */
+    DEFAULT(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, 0),
+    /**
+     * Big reindexes: large RAM buffer, so few big segments are flushed,
+     * wide merge tiers, so little is merged while indexing, and one merge down to a single segment at the end
+     */
+    BULK(256, 1),
+    /**
+     * Trickle feed with near-real-time search: small RAM buffer, so flushes are short,
+     * merges run one at a time and are throttled, so they take less I/O from searches
+     */
+    REALTIME(8, 0);
+
+    static final int BULK_SEGMENTS_PER_TIER = 50;
+    static final int REALTIME_MAX_MERGES = 2;
+    static final int REALTIME_MERGE_THREADS = 1;
+    static final double REALTIME_MAX_MERGED_SEGMENT_MB = 1024;
+
+    private final double ramBufferSizeMB;
+    private final int finalSegments;
+
+    IndexingProfile(final double ramBufferSizeMB, final int finalSegments) {
+        this.ramBufferSizeMB = ramBufferSizeMB;
+        this.finalSegments = finalSegments;
+    }
+
+    /**
+     * Apply RAM buffer, merge policy and merge scheduler of this profile
+     *
+     * @return the same config
+     */
+    public IndexWriterConfig configure(final IndexWriterConfig iwc) {
+        iwc.setRAMBufferSizeMB(ramBufferSizeMB);
+        switch (this) {
+            case BULK:
+                final TieredMergePolicy bulkMerges = new TieredMergePolicy();
+                bulkMerges.setSegmentsPerTier(BULK_SEGMENTS_PER_TIER);
+                bulkMerges.setMaxMergeAtOnce(BULK_SEGMENTS_PER_TIER);
+                // everything is merged at the end anyway, compound files would only be written twice
+                bulkMerges.setNoCFSRatio(0);
+                iwc.setMergePolicy(bulkMerges);
+                break;
+            case REALTIME:
+                final TieredMergePolicy realtimeMerges = new TieredMergePolicy();
+                realtimeMerges.setMaxMergedSegmentMB(REALTIME_MAX_MERGED_SEGMENT_MB);
+                iwc.setMergePolicy(realtimeMerges);
+                final ConcurrentMergeScheduler scheduler = new ConcurrentMergeScheduler();
+                scheduler.setMaxMergesAndThreads(REALTIME_MAX_MERGES, REALTIME_MERGE_THREADS);
+                scheduler.enableAutoIOThrottle();
+                iwc.setMergeScheduler(scheduler);
+                break;
+            default:
+                break;
+        }
+        return iwc;
+    }
+
+    /**
+     * Called once at the end of a load, by SharedIndexWriter.close or MessageIndexer.finish,
+     * merges the index down to getFinalSegments segments if the profile says so
+     *
+     * @throws IOException
+     */
+    public void finish(final IndexWriter writer) throws IOException {
+        if (finalSegments > 0) {
+            writer.forceMerge(finalSegments);
+        }
+    }
+
+    public double getRamBufferSizeMB() {
+        return ramBufferSizeMB;
+    }
+
+    /**
+     * @return number of segments left after finish, 0 if the index is not merged at the end
+     */
+    public int getFinalSegments() {
+        return finalSegments;
+    }
+}
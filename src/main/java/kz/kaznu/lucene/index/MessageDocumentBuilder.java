@@ -0,0 +1,160 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.model.Message;
+import kz.kaznu.lucene.utils.MessageSnapshotReader;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Same document as MessageToDocument.createWith, but Document and its fields are created once
+ * and only their values are replaced for every message.
+ *
+ * Returned document is valid until the next build call, so pass it to IndexWriter before that.
+ * Not thread-safe, use forCurrentThread or one instance per thread
+ */
+public class MessageDocumentBuilder {
+    private static final ThreadLocal<MessageDocumentBuilder> perThread =
+            ThreadLocal.withInitial(MessageDocumentBuilder::new);
+
+    private final Document document = new Document();
+    private final Field title = new Field("title", "", MessageToDocument.TEXT_WITH_VECTORS_TYPE);
+    private final Field body = new Field("body", "", MessageToDocument.TEXT_WITH_VECTORS_TYPE);
+    private final LongField creationDate = new LongField("creationDate", 0L, Field.Store.YES);
+    private final NumericDocValuesField creationDateValues = new NumericDocValuesField("creationDate", 0L);
+    private final StringField id = new StringField("id", "", Field.Store.YES);
+    private final NumericDocValuesField contentHash = new NumericDocValuesField("contentHash", 0L);
+    private boolean idInDocument;
+    // region terms and values of all messages so far, first ones are in the document
+    private final List<StringField> regionTerms = new ArrayList<>();
+    private final List<SortedSetDocValuesField> regionValues = new ArrayList<>();
+    private final List<BytesRefBuilder> regionBytes = new ArrayList<>();
+    private int regionValuesInDocument;
+
+    // dumps have a lot of messages with the same date, so last one is remembered
+    private String lastDateStr;
+    private long lastUnixTime;
+
+    public MessageDocumentBuilder() {
+        document.add(title);
+        document.add(body);
+        document.add(creationDate);
+        document.add(creationDateValues);
+    }
+
+    /**
+     * @return builder owned by the current thread
+     */
+    public static MessageDocumentBuilder forCurrentThread() {
+        return perThread.get();
+    }
+
+    public Document build(final Message message) {
+        return build(message.getId(), message.getTitle(), message.getBody(), message.getRegion(),
+                message.getCreationDate());
+    }
+
+    public Document build(final String titleStr, final String bodyStr,
+                          final String[] regionStr, final String createDateStr) {
+        return build(null, titleStr, bodyStr, regionStr, createDateStr);
+    }
+
+    /**
+     * @param idStr unique id, see MessageToDocument.createWith, null for document without id
+     */
+    public Document build(final String idStr, final String titleStr, final String bodyStr,
+                          final String[] regionStr, final String createDateStr) {
+        setId(idStr, titleStr, bodyStr, regionStr, createDateStr);
+
+        if (createDateStr == null || !createDateStr.equals(lastDateStr)) {
+            lastUnixTime = MessageToDocument.parseDate(createDateStr);
+            lastDateStr = createDateStr;
+        }
+
+        setRegionValues(regionStr);
+        title.setStringValue(titleStr);
+        body.setStringValue(bodyStr);
+        creationDate.setLongValue(lastUnixTime);
+        creationDateValues.setLongValue(lastUnixTime);
+        return document;
+    }
+
+    /**
+     * Document of the current record of a snapshot, its date is parsed and content hash computed already.
+     * Region values are the bytes of the snapshot dictionary, they are not copied
+     */
+    public Document build(final MessageSnapshotReader snapshot) {
+        final String idStr = snapshot.getId();
+        setId(idStr, snapshot.getContentHash());
+        final int regionCount = snapshot.getRegionCount();
+        putRegionValues(regionCount);
+        for (int i = 0; i < regionCount; i++) {
+            regionTerms.get(i).setStringValue(snapshot.getRegion(i));
+            regionValues.get(i).setBytesValue(snapshot.getRegionBytes(i));
+        }
+        title.setStringValue(snapshot.getTitle());
+        body.setStringValue(snapshot.getBody());
+        creationDate.setLongValue(snapshot.getCreationDate());
+        creationDateValues.setLongValue(snapshot.getCreationDate());
+        return document;
+    }
+
+    private void setId(final String idStr, final String titleStr, final String bodyStr,
+                       final String[] regionStr, final String createDateStr) {
+        setId(idStr, idStr == null ? 0L : MessageToDocument.contentHash(titleStr, bodyStr, regionStr, createDateStr));
+    }
+
+    private void setId(final String idStr, final long hash) {
+        if (idStr == null) {
+            if (idInDocument) {
+                document.removeFields("id");
+                document.removeFields("contentHash");
+                idInDocument = false;
+            }
+            return;
+        }
+        if (!idInDocument) {
+            document.add(id);
+            document.add(contentHash);
+            idInDocument = true;
+        }
+        id.setStringValue(idStr);
+        contentHash.setLongValue(hash);
+    }
+
+    private void setRegionValues(final String[] regionStr) {
+        putRegionValues(regionStr.length);
+        for (int i = 0; i < regionStr.length; i++) {
+            regionTerms.get(i).setStringValue(regionStr[i]);
+            final BytesRefBuilder bytes = regionBytes.get(i);
+            bytes.copyChars(regionStr[i]);
+            regionValues.get(i).setBytesValue(bytes.get());
+        }
+    }
+
+    // makes the document have count region terms and values, they are set by the caller
+    private void putRegionValues(final int count) {
+        while (regionValues.size() < count) {
+            regionTerms.add(new StringField("region", "", Field.Store.YES));
+            regionValues.add(new SortedSetDocValuesField("region", new BytesRef()));
+            regionBytes.add(new BytesRefBuilder());
+        }
+        if (regionValuesInDocument != count) {
+            // number of values changed, put all fields named "region" again
+            document.removeFields("region");
+            for (int i = 0; i < count; i++) {
+                document.add(regionTerms.get(i));
+                document.add(regionValues.get(i));
+            }
+            regionValuesInDocument = count;
+        }
+    }
+}
@@ -1,59 +1,153 @@
 package kz.kaznu.lucene.index;
 
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import kz.kaznu.lucene.metrics.IndexMetrics;
+import kz.kaznu.lucene.model.Message;
+import kz.kaznu.lucene.utils.Helper;
+import kz.kaznu.lucene.utils.MessageSnapshotReader;
+import kz.kaznu.lucene.utils.MessageStream;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.ru.RussianAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
  * Default Indexer that we will use in tutorial
  * Be default it will use RussianAnalyzer to analyze text
  */
-public class MessageIndexer {
+public class MessageIndexer implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Order of documents inside merged segments. Newest first lets "latest N" searches
+     * stop after N matches in every sorted segment, see EarlyTerminatingSortingCollector
+     */
+    public static final Sort NEWEST_FIRST = new Sort(new SortField("creationDate", SortField.Type.LONG, true));
+
     private final String pathToIndexFolder;
+    private final DirectoryConfig directoryConfig;
+    private final IndexingProfile profile;
+    private final IndexMetrics metrics = new IndexMetrics(this::countSegments);
+    private SharedIndexWriter sharedWriter; // guarded by this
 
     /**
      * Get instance of MessageIndex providing path where indexes will be stored
      * @param pathToIndexFolder File System path where indexes will be stored. For example /tmp/tutorial_indexes
      */
     public MessageIndexer(final String pathToIndexFolder) {
+        this(pathToIndexFolder, DirectoryConfig.defaults());
+    }
+
+    /**
+     * Get instance of MessageIndex that opens index folder as directoryConfig says
+     * @param pathToIndexFolder File System path where indexes will be stored. For example /tmp/tutorial_indexes
+     * @param directoryConfig Directory implementation to use, for example DirectoryConfig.mmap(true)
+     */
+    public MessageIndexer(final String pathToIndexFolder, final DirectoryConfig directoryConfig) {
+        this(pathToIndexFolder, directoryConfig, IndexingProfile.DEFAULT);
+    }
+
+    /**
+     * Get instance of MessageIndex that writes index with settings of the profile
+     * @param pathToIndexFolder File System path where indexes will be stored. For example /tmp/tutorial_indexes
+     * @param profile IndexWriter settings, for example IndexingProfile.BULK for full reindex
+     */
+    public MessageIndexer(final String pathToIndexFolder, final IndexingProfile profile) {
+        this(pathToIndexFolder, DirectoryConfig.defaults(), profile);
+    }
+
+    /**
+     * @param pathToIndexFolder File System path where indexes will be stored. For example /tmp/tutorial_indexes
+     * @param directoryConfig Directory implementation to use, for example DirectoryConfig.mmap(true)
+     * @param profile IndexWriter settings, for example IndexingProfile.BULK for full reindex
+     */
+    public MessageIndexer(final String pathToIndexFolder, final DirectoryConfig directoryConfig,
+                          final IndexingProfile profile) {
         this.pathToIndexFolder = pathToIndexFolder;
+        this.directoryConfig = directoryConfig;
+        this.profile = profile;
     }
 
     /**
-     * Indexing documents using provided Analyzer
+     * Indexing documents using provided Analyzer.
+     * While the shared writer is open documents go through it, and it analyzes them with its own analyzer,
+     * so only that analyzer is accepted
      *
      * @param create to decide create new or append to previous one
      * @throws IOException
+     * @throws IllegalStateException if the shared writer is open with another analyzer
      */
     public void index(final Boolean create, List<Document> documents, Analyzer analyzer) throws IOException {
-        final Directory dir = FSDirectory.open(Paths.get(pathToIndexFolder));
-        final IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
-        if (create) {
-            // Create a new index in the directory, removing any
-            // previously indexed documents:
-            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
-        }
-        else {
-            // Add new documents to an existing index:
-            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        final SharedIndexWriter shared = getOpenWriter();
+        if (shared != null) {
+            if (analyzer != shared.getIndexWriter().getAnalyzer()) {
+                throw new IllegalStateException("Shared writer is open with another analyzer: "
+                        + shared.getIndexWriter().getAnalyzer());
+            }
+            // writer is already opened and holds the index lock, so reuse it
+            if (create) {
+                shared.deleteAll();
+            }
+            shared.add(documents);
+            return;
         }
 
-        final IndexWriter w = new IndexWriter(dir, iwc);
-        w.addDocuments(documents);
+        try (Directory dir = openDirectory(); IndexWriter w = new IndexWriter(dir, newConfig(create, analyzer))) {
+            w.addDocuments(documents);
+            metrics.indexed(documents.size());
+        }
+    }
 
-        System.out.println(w.numDocs());
-        w.close();
+    /**
+     * Indexing messages one by one as they come from the iterator.
+     * Messages are converted and passed to the IndexWriter in batches of batchSize,
+     * so only one batch is kept in memory at any time
+     *
+     * @param create to decide create new or append to previous one
+     * @param messages messages to index, for example opened with Helper.openMessageStream
+     * @param batchSize how many documents to hand to the IndexWriter at once
+     * @return number of indexed messages
+     * @throws IOException
+     */
+    public long index(final Boolean create, Iterator<Message> messages, int batchSize) throws IOException {
+        return index(create, messages, batchSize, MessageDocumentBuilder::build);
+    }
 
-        //final LeafReader w = new LeafReader();
+    /**
+     * Indexing JSON file without reading it into memory, see index(Boolean, Iterator, int)
+     *
+     * @param create to decide create new or append to previous one
+     * @param file JSON file with array of messages, same format as resources/tutorial.json
+     * @return number of indexed messages
+     * @throws IOException
+     */
+    public long index(final Boolean create, File file) throws IOException {
+        try (MessageStream messages = Helper.openMessageStream(file)) {
+            return index(create, messages, DEFAULT_BATCH_SIZE);
+        }
+    }
 
+    /**
+     * Indexing a binary snapshot, see MessageSnapshotWriter.convert to make one from a JSON file.
+     * Nothing is parsed, so this is the fast way to rebuild an index from the same dump again and again
+     *
+     * @param create to decide create new or append to previous one
+     * @param snapshot open snapshot, indexing starts from its current record
+     * @return number of indexed messages
+     * @throws IOException
+     */
+    public long index(final Boolean create, final MessageSnapshotReader snapshot) throws IOException {
+        return index(create, snapshot, DEFAULT_BATCH_SIZE, MessageDocumentBuilder::build);
     }
 
     /**
@@ -63,8 +157,7 @@ public class MessageIndexer {
      * @throws IOException
      */
     public void index(final Boolean create, List<Document> documents) throws IOException {
-        final Analyzer analyzer = new RussianAnalyzer();
-        index(create, documents, analyzer);
+        index(create, documents, MessageAnalysis.indexAnalyzer());
     }
 
     /**
@@ -80,17 +173,199 @@ public class MessageIndexer {
     }
 
     /**
-     * Get IndexReader by using pathToIndexFolder
+     * Open long-lived writer that is shared by all threads using this indexer.
+     * While it is open all index methods go through it instead of opening their own IndexWriter.
+     * Calling it again returns already opened writer
+     *
+     * @param create to decide create new or append to previous one
+     * @param commitPolicy when added documents should be committed
+     * @return opened writer
+     * @throws IOException
+     */
+    public synchronized SharedIndexWriter openWriter(final Boolean create, final CommitPolicy commitPolicy) throws IOException {
+        if (sharedWriter == null || !sharedWriter.isOpen()) {
+            final Directory dir = openDirectory();
+            final IndexWriter writer;
+            try {
+                writer = new IndexWriter(dir, newConfig(create, MessageAnalysis.indexAnalyzer()));
+            } catch (IOException | RuntimeException e) {
+                dir.close();
+                throw e;
+            }
+            // closes the directory together with the writer
+            sharedWriter = new SharedIndexWriter(writer, commitPolicy, profile, metrics);
+        }
+        return sharedWriter;
+    }
+
+    /**
+     * Upserter of messages by id working through the shared writer, opened in append mode if it was not
+     * opened yet. Close the upserter before this indexer
+     *
+     * @param commitPolicy when written documents should be committed, used if the writer is opened now
+     * @return new upserter
+     * @throws IOException
+     */
+    public MessageUpserter openUpserter(final CommitPolicy commitPolicy) throws IOException {
+        return new MessageUpserter(openWriter(false, commitPolicy));
+    }
+
+    /**
+     * End of a bulk load: merge the index as the IndexingProfile says, see IndexingProfile.finish.
+     * Index methods that open their own writer never merge, so call it once after the last of them.
+     * The shared writer merges on close anyway
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        final SharedIndexWriter shared = getOpenWriter();
+        if (shared != null) {
+            profile.finish(shared.getIndexWriter());
+            shared.commit();
+            return;
+        }
+
+        try (Directory dir = openDirectory();
+             IndexWriter w = new IndexWriter(dir, newConfig(false, MessageAnalysis.indexAnalyzer()))) {
+            profile.finish(w);
+        }
+    }
+
+    /**
+     * Close shared writer if it was opened, committing everything added to it
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (sharedWriter != null) {
+            sharedWriter.close();
+            sharedWriter = null;
+        }
+    }
+
+    /**
+     * Get IndexReader by using pathToIndexFolder. The reader has its own Directory, closed together with the reader
      *
      * @return IndexReader or IOException if any
      * @throws IOException
      */
     public IndexReader readIndex() throws IOException {
-        final Directory dir = FSDirectory.open(Paths.get(pathToIndexFolder));
-        return DirectoryReader.open(dir);
+        final Directory dir = openDirectory();
+        final DirectoryReader reader;
+        try {
+            reader = DirectoryReader.open(dir);
+        } catch (IOException | RuntimeException e) {
+            dir.close();
+            throw e;
+        }
+        reader.addReaderClosedListener(closed -> dir.close());
+        return reader;
     }
 
     public String getPathToIndexFolder() {
         return pathToIndexFolder;
     }
+
+    public DirectoryConfig getDirectoryConfig() {
+        return directoryConfig;
+    }
+
+    public IndexingProfile getIndexingProfile() {
+        return profile;
+    }
+
+    /**
+     * Indexing throughput, flush and merge times of writers opened by this indexer and segments of the index,
+     * can be published with MetricsExporter
+     */
+    public IndexMetrics getMetrics() {
+        return metrics;
+    }
+
+    private <T> long index(final Boolean create, final Iterator<T> messages, final int batchSize,
+                           final DocumentBuild<T> build) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize should be positive: " + batchSize);
+        }
+        final SharedIndexWriter shared = getOpenWriter();
+        if (shared != null) {
+            if (create) {
+                shared.deleteAll();
+            }
+            return addInBatches(messages, batchSize, build, shared::add);
+        }
+
+        try (Directory dir = openDirectory();
+             IndexWriter w = new IndexWriter(dir, newConfig(create, MessageAnalysis.indexAnalyzer()))) {
+            final long indexed = addInBatches(messages, batchSize, build, batch -> {
+                w.addDocuments(batch);
+                metrics.indexed(batch.size());
+            });
+            return indexed;
+        }
+    }
+
+    private Directory openDirectory() throws IOException {
+        return directoryConfig.open(Paths.get(pathToIndexFolder));
+    }
+
+    private int countSegments() throws IOException {
+        try (Directory dir = openDirectory()) {
+            return SegmentInfos.readLatestCommit(dir).size();
+        } catch (IndexNotFoundException e) {
+            return 0;
+        }
+    }
+
+    private synchronized SharedIndexWriter getOpenWriter() {
+        return sharedWriter != null && sharedWriter.isOpen() ? sharedWriter : null;
+    }
+
+    private IndexWriterConfig newConfig(final Boolean create, final Analyzer analyzer) {
+        final IndexWriterConfig iwc = metrics.instrument(profile.configure(new IndexWriterConfig(analyzer)));
+        if (create) {
+            // Create a new index in the directory, removing any
+            // previously indexed documents:
+            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        }
+        else {
+            // Add new documents to an existing index:
+            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        }
+        // merged segments are sorted by date, freshly flushed ones stay in insertion order
+        iwc.setMergePolicy(new SortingMergePolicy(iwc.getMergePolicy(), NEWEST_FIRST));
+        return iwc;
+    }
+
+    private static <T> long addInBatches(final Iterator<T> messages, final int batchSize,
+                                         final DocumentBuild<T> build, final BatchSink sink) throws IOException {
+        long indexed = 0;
+        final List<Document> batch = new ArrayList<>(batchSize);
+        // every position in the batch reuses its document, they are consumed by IndexWriter before reuse
+        final MessageDocumentBuilder[] builders = new MessageDocumentBuilder[batchSize];
+        while (messages.hasNext()) {
+            final int slot = batch.size();
+            if (builders[slot] == null) {
+                builders[slot] = new MessageDocumentBuilder();
+            }
+            batch.add(build.build(builders[slot], messages.next()));
+            if (batch.size() == batchSize) {
+                sink.add(batch);
+                indexed += batch.size();
+                batch.clear();
+            }
+        }
+        sink.add(batch);
+        indexed += batch.size();
+        return indexed;
+    }
+
+    private interface BatchSink {
+        void add(List<Document> batch) throws IOException;
+    }
+
+    private interface DocumentBuild<T> {
+        Document build(MessageDocumentBuilder builder, T message);
+    }
 }
@@ -2,17 +2,50 @@ package kz.kaznu.lucene.index;
 
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.util.BytesRef;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * We will use this class to convert messages to Lucene documents
  */
 public class MessageToDocument {
+    /**
+     * Type of title and body fields. Term frequencies for scoring and term vectors,
+     * so MoreLikeThis reads terms of a document without analyzing its text again
+     */
+    static final FieldType TEXT_WITH_VECTORS_TYPE = new FieldType();
+    static {
+        TEXT_WITH_VECTORS_TYPE.setStored(true);
+        TEXT_WITH_VECTORS_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+        TEXT_WITH_VECTORS_TYPE.setTokenized(true);
+        TEXT_WITH_VECTORS_TYPE.setStoreTermVectors(true);
+        TEXT_WITH_VECTORS_TYPE.freeze();
+    }
+
+    /**
+     * Format of creationDate in tutorial.json, for example "Feb 7, 2016 7:55:20 PM". Thread-safe
+     */
+    static final DateTimeFormatter DATE_FORMAT = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("MMM d, yyyy h:mm:ss a")
+            .toFormatter(Locale.ENGLISH);
+
+    /**
+     * creationDate of messages whose date could not be parsed
+     */
+    public static final long UNPARSED_DATE = 0L;
+
+    private static final AtomicLong dateParseFailures = new AtomicLong();
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
 
     /**
      * Creates Lucene Document using two strings: body and title
@@ -21,41 +54,99 @@ public class MessageToDocument {
      */
     public static Document createWith(final String titleStr, final String bodyStr,
                                       final String[] regionStr, final String createDateStr) {
-        final Document document = new Document();
-
-        final FieldType textIndexedType = new FieldType();
-        textIndexedType.setStored(true);
-        textIndexedType.setIndexOptions(IndexOptions.DOCS);
-        textIndexedType.setTokenized(true);
-
-        DateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy hh:mm:ss a", Locale.ENGLISH);
-        Date date = null;
-        long unixTime;
-        try {
-            date = dateFormat.parse(createDateStr);
-            unixTime = date.getTime()/1000;
-
-        } catch (ParseException e) {
-            e.printStackTrace();
-            unixTime = 0L;
-        }
+        return createWith(null, titleStr, bodyStr, regionStr, createDateStr);
+    }
 
-        String regionString = String.join(" ", regionStr);
+    /**
+     * Creates Lucene Document with unique id, so it can be updated or deleted by id later.
+     * contentHash of the message is kept next to the id to find out whether a re-sent message changed
+     *
+     * @param idStr unique id, see Message.getId, null for document without id
+     * @return resulted document
+     */
+    public static Document createWith(final String idStr, final String titleStr, final String bodyStr,
+                                      final String[] regionStr, final String createDateStr) {
+        final Document document = new Document();
 
+        final long unixTime = parseDate(createDateStr);
 
         //index title
-        Field title = new Field("title", titleStr, textIndexedType);
+        Field title = new Field("title", titleStr, TEXT_WITH_VECTORS_TYPE);
         //index body
-        Field body = new Field("body", bodyStr, textIndexedType);
-        //index region
-        Field region = new Field("region", regionString, textIndexedType);
+        Field body = new Field("body", bodyStr, TEXT_WITH_VECTORS_TYPE);
         //index date
         LongField creationDate = new LongField("creationDate", unixTime, Field.Store.YES);
+        //date column for sorting by date
+        NumericDocValuesField creationDateValues = new NumericDocValuesField("creationDate", unixTime);
 
         document.add(title);
         document.add(body);
-        document.add(region);
+        for (String regionValue : regionStr) {
+            //index region as it is, one exact term per region, not analyzed
+            document.add(new StringField("region", regionValue, Field.Store.YES));
+            //region values for facet counts and RegionFilter
+            document.add(new SortedSetDocValuesField("region", new BytesRef(regionValue)));
+        }
         document.add(creationDate);
+        document.add(creationDateValues);
+        if (idStr != null) {
+            //exact id for updates and deletes
+            document.add(new StringField("id", idStr, Field.Store.YES));
+            document.add(new NumericDocValuesField("contentHash",
+                    contentHash(titleStr, bodyStr, regionStr, createDateStr)));
+        }
         return document;
     }
+
+    /**
+     * 64-bit FNV-1a hash of everything indexed from the message except its id
+     */
+    public static long contentHash(final String titleStr, final String bodyStr,
+                                   final String[] regionStr, final String createDateStr) {
+        long hash = hash(FNV_OFFSET_BASIS, titleStr);
+        hash = hash(hash, bodyStr);
+        for (String regionValue : regionStr) {
+            hash = hash(hash, regionValue);
+        }
+        return hash(hash, createDateStr);
+    }
+
+    private static long hash(long hash, final String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+        }
+        // separator, so "ab" + "c" differs from "a" + "bc", and null from ""
+        return (hash ^ (value == null ? 0x1ff : 0x100)) * FNV_PRIME;
+    }
+
+    /**
+     * Convert creationDate string to unix time in seconds using default time zone.
+     * Dates that could not be parsed become UNPARSED_DATE and are counted in getDateParseFailures
+     *
+     * @param createDateStr date like "Feb 7, 2016 7:55:20 PM"
+     * @return unix time in seconds
+     */
+    public static long parseDate(final String createDateStr) {
+        if (createDateStr == null) {
+            dateParseFailures.incrementAndGet();
+            return UNPARSED_DATE;
+        }
+        try {
+            return LocalDateTime.parse(createDateStr, DATE_FORMAT).atZone(ZoneId.systemDefault()).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            dateParseFailures.incrementAndGet();
+            return UNPARSED_DATE;
+        }
+    }
+
+    /**
+     * @return how many dates could not be parsed since start of the application
+     */
+    public static long getDateParseFailures() {
+        return dateParseFailures.get();
+    }
 }
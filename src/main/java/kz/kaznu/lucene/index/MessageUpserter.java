@@ -0,0 +1,360 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.model.Message;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adds, replaces and deletes messages by id (see Message.getId), so re-sent messages are not duplicated.
+ * A message whose id is already indexed with the same content hash is skipped without a write.
+ *
+ * Content hash of an id is looked up in a bounded LRU cache of recently seen ids first, then in the index
+ * with a primary-key lookup: seekExact of the id term in every segment of a near-real-time reader.
+ * The reader is reopened only when ids written since the last reopen could have left the cache,
+ * so every write of this upserter is seen either in the cache or in the reader.
+ * All id-keyed writes to the index should go through one upserter.
+ * Get instance with MessageIndexer.openUpserter. Thread-safe, calls are serialized
+ */
+public class MessageUpserter implements Closeable {
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    private final SharedIndexWriter writer;
+    private final int cacheSize;
+    // id -> content hash, null value means the id is known to be absent
+    private final Map<String, Long> hashes;
+    private final MessageDocumentBuilder builder = new MessageDocumentBuilder();
+    // lookups and writes do I/O holding it, synchronized would pin the carrier of a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private DirectoryReader reader;
+    private LeafLookup[] leaves;
+    private int cachedSinceReopen;
+
+    private long added;
+    private long updated;
+    private long unchanged;
+    private long deleted;
+
+    public MessageUpserter(final SharedIndexWriter writer) throws IOException {
+        this(writer, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param writer writer to update documents with, see MessageIndexer.openWriter
+     * @param cacheSize how many ids and their content hashes to keep in memory
+     * @throws IOException
+     */
+    public MessageUpserter(final SharedIndexWriter writer, final int cacheSize) throws IOException {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize should be positive: " + cacheSize);
+        }
+        this.writer = writer;
+        this.cacheSize = cacheSize;
+        this.hashes = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+                return size() > MessageUpserter.this.cacheSize;
+            }
+        };
+        this.reader = DirectoryReader.open(writer.getIndexWriter(), true);
+        this.leaves = lookups(reader);
+    }
+
+    /**
+     * Add the message, replace indexed one with the same id, or do nothing if it did not change
+     *
+     * @param message message with notificationId or URL
+     * @return true if something was written
+     * @throws IOException
+     */
+    public boolean upsert(final Message message) throws IOException {
+        lock.lock();
+        try {
+            final String id = idOf(message);
+            return write(id, message, storedHash(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Upsert messages as they come from the iterator, for example from the ingestion stream.
+     * Ids of a batch are looked up in sorted order, which is faster for the terms dictionary
+     *
+     * @param messages messages with notificationId or URL
+     * @param batchSize how many messages to look up at once
+     * @return how many messages were written, the rest did not change
+     * @throws IOException
+     */
+    public long upsert(final Iterator<Message> messages, final int batchSize) throws IOException {
+        lock.lock();
+        try {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize should be positive: " + batchSize);
+            }
+            long written = 0;
+            final List<Message> batch = new ArrayList<>(batchSize);
+            while (messages.hasNext()) {
+                batch.add(messages.next());
+                if (batch.size() == batchSize || !messages.hasNext()) {
+                    written += upsertBatch(batch);
+                    batch.clear();
+                }
+            }
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove message with the id
+     *
+     * @return true if it was indexed
+     * @throws IOException
+     */
+    public boolean delete(final String id) throws IOException {
+        lock.lock();
+        try {
+            final boolean existed = storedHash(id) != null;
+            if (existed) {
+                writer.delete(id);
+                cache(id, null);
+                deleted++;
+            }
+            return existed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if a message with the id is indexed, including ones not committed yet
+     * @throws IOException
+     */
+    public boolean exists(final String id) throws IOException {
+        lock.lock();
+        try {
+            return storedHash(id) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAdded() {
+        lock.lock();
+        try {
+            return added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getUpdated() {
+        lock.lock();
+        try {
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how many messages were skipped because they were indexed with the same content
+     */
+    public long getUnchanged() {
+        lock.lock();
+        try {
+            return unchanged;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDeleted() {
+        lock.lock();
+        try {
+            return deleted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the lookup reader, the writer stays open
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            reader.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "MessageUpserter{added=" + added + ", updated=" + updated + ", unchanged=" + unchanged
+                    + ", deleted=" + deleted + ", cached=" + hashes.size() + "}";
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long upsertBatch(final List<Message> batch) throws IOException {
+        final String[] ids = new String[batch.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idOf(batch.get(i));
+        }
+        // every id is cached by the lookup and may be cached again by the write
+        maybeReopen(2 * ids.length);
+
+        final Integer[] byId = new Integer[ids.length];
+        for (int i = 0; i < byId.length; i++) {
+            byId[i] = i;
+        }
+        Arrays.sort(byId, (a, b) -> ids[a].compareTo(ids[b]));
+        for (int i : byId) {
+            storedHash(ids[i]);
+        }
+
+        long written = 0;
+        for (int i = 0; i < ids.length; i++) {
+            // from the cache now, including writes of the same id earlier in the batch
+            if (write(ids[i], batch.get(i), storedHash(ids[i]))) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private boolean write(final String id, final Message message, final Long storedHash) throws IOException {
+        final long hash = MessageToDocument.contentHash(message.getTitle(), message.getBody(),
+                message.getRegion(), message.getCreationDate());
+        if (storedHash != null && storedHash == hash) {
+            unchanged++;
+            return false;
+        }
+        writer.update(id, builder.build(message));
+        cache(id, hash);
+        if (storedHash == null) {
+            added++;
+        } else {
+            updated++;
+        }
+        return true;
+    }
+
+    private Long storedHash(final String id) throws IOException {
+        if (hashes.containsKey(id)) {
+            return hashes.get(id);
+        }
+        maybeReopen(2);
+        final Long hash = lookup(new BytesRef(id));
+        cache(id, hash);
+        return hash;
+    }
+
+    private Long lookup(final BytesRef id) throws IOException {
+        // newest segments last, they are most likely to have recently sent ids
+        for (int i = leaves.length - 1; i >= 0; i--) {
+            final Long hash = leaves[i].lookup(id);
+            if (hash != null) {
+                return hash;
+            }
+        }
+        return null;
+    }
+
+    private void cache(final String id, final Long hash) {
+        hashes.put(id, hash);
+        cachedSinceReopen++;
+    }
+
+    /**
+     * Reopen the reader if caching more ids could evict ids that were written after it was opened
+     */
+    private void maybeReopen(final int more) throws IOException {
+        if (cachedSinceReopen + more <= cacheSize) {
+            return;
+        }
+        final DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer.getIndexWriter(), true);
+        if (newReader != null) {
+            reader.close();
+            reader = newReader;
+            leaves = lookups(reader);
+        }
+        cachedSinceReopen = 0;
+    }
+
+    private static String idOf(final Message message) {
+        final String id = message.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("Message has neither notificationId nor URL: " + message.getTitle());
+        }
+        return id;
+    }
+
+    private static LeafLookup[] lookups(final DirectoryReader reader) throws IOException {
+        final List<LeafLookup> lookups = new ArrayList<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            final Terms ids = leaf.reader().terms("id");
+            if (ids != null) {
+                lookups.add(new LeafLookup(leaf.reader(), ids.iterator()));
+            }
+        }
+        return lookups.toArray(new LeafLookup[lookups.size()]);
+    }
+
+    /**
+     * Terms and doc values of one segment, reused for all lookups until the reader is reopened
+     */
+    private static final class LeafLookup {
+        private final TermsEnum ids;
+        private final NumericDocValues hashes;
+        private final Bits liveDocs;
+        private PostingsEnum postings;
+
+        LeafLookup(final LeafReader reader, final TermsEnum ids) throws IOException {
+            this.ids = ids;
+            this.hashes = reader.getNumericDocValues("contentHash");
+            this.liveDocs = reader.getLiveDocs();
+        }
+
+        Long lookup(final BytesRef id) throws IOException {
+            if (!ids.seekExact(id)) {
+                return null;
+            }
+            postings = ids.postings(postings, PostingsEnum.NONE);
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                if (liveDocs == null || liveDocs.get(doc)) {
+                    return hashes == null ? 0L : hashes.get(doc);
+                }
+            }
+            return null;
+        }
+    }
+}
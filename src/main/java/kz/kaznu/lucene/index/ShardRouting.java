@@ -0,0 +1,75 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.model.Message;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * Decides which shard of ShardedIndexer a message goes to. Shard name is also the name of its folder.
+ * Create with byIdHash or monthly
+ */
+public final class ShardRouting {
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final int shards;
+
+    private ShardRouting(final int shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Spread messages evenly over a fixed number of shards "shard-0" .. "shard-(shards-1)" by hash of
+     * Message.getId, so a re-sent message lands in the same shard. Messages without id are routed by title and body
+     *
+     * @param shards number of shards
+     */
+    public static ShardRouting byIdHash(final int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Number of shards should be positive: " + shards);
+        }
+        return new ShardRouting(shards);
+    }
+
+    /**
+     * One shard per calendar month of creationDate, named like "2016-02".
+     * Old months stop receiving documents, so their shards stop merging,
+     * and date range searches skip shards of months out of the range
+     */
+    public static ShardRouting monthly() {
+        return new ShardRouting(0);
+    }
+
+    /**
+     * @return name of the shard for the message
+     */
+    public String shardFor(final Message message) {
+        if (shards == 0) {
+            final long unixTime = MessageToDocument.parseDate(message.getCreationDate());
+            return MONTH_FORMAT.format(YearMonth.from(Instant.ofEpochSecond(unixTime).atZone(ZoneId.systemDefault())));
+        }
+        final String id = message.getId();
+        final int hash = id != null ? id.hashCode() : Objects.hash(message.getTitle(), message.getBody());
+        // spread bits of similar ids like "1", "2", "3" before taking the remainder
+        return shardName(Math.floorMod(hash * 0x9E3779B9, shards));
+    }
+
+    /**
+     * @return number of shards, 0 if they are created as documents come, as in monthly routing
+     */
+    public int getShardCount() {
+        return shards;
+    }
+
+    static String shardName(final int shard) {
+        return "shard-" + shard;
+    }
+
+    @Override
+    public String toString() {
+        return shards == 0 ? "ShardRouting{monthly}" : "ShardRouting{byIdHash, shards=" + shards + "}";
+    }
+}
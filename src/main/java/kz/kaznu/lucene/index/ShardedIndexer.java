@@ -0,0 +1,202 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.model.Message;
+import kz.kaznu.lucene.utils.Helper;
+import kz.kaznu.lucene.utils.MessageStream;
+import org.apache.lucene.document.Document;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index split into several MessageIndexer folders (shards) inside pathToIndexFolder, see ShardRouting.
+ * Every shard merges and reopens on its own, so each of them stays small.
+ * Search all shards at once with ShardedSearcher.open
+ */
+public class ShardedIndexer implements Closeable {
+    private final String pathToIndexFolder;
+    private final ShardRouting routing;
+    private final DirectoryConfig directoryConfig;
+    private final IndexingProfile profile;
+    private final Map<String, MessageIndexer> shards = new TreeMap<>(); // guarded by this
+
+    /**
+     * @param pathToIndexFolder folder with one sub folder per shard. For example /tmp/tutorial_indexes
+     * @param routing how messages are spread over shards
+     */
+    public ShardedIndexer(final String pathToIndexFolder, final ShardRouting routing) {
+        this(pathToIndexFolder, routing, DirectoryConfig.defaults(), IndexingProfile.DEFAULT);
+    }
+
+    /**
+     * @param pathToIndexFolder folder with one sub folder per shard. For example /tmp/tutorial_indexes
+     * @param routing how messages are spread over shards
+     * @param directoryConfig Directory implementation every shard uses
+     * @param profile IndexWriter settings of every shard
+     */
+    public ShardedIndexer(final String pathToIndexFolder, final ShardRouting routing,
+                          final DirectoryConfig directoryConfig, final IndexingProfile profile) {
+        this.pathToIndexFolder = pathToIndexFolder;
+        this.routing = routing;
+        this.directoryConfig = directoryConfig;
+        this.profile = profile;
+        for (int i = 0; i < routing.getShardCount(); i++) {
+            shard(ShardRouting.shardName(i));
+        }
+        // shards created by monthly routing before
+        final File[] existing = new File(pathToIndexFolder).listFiles(File::isDirectory);
+        if (existing != null) {
+            for (File folder : existing) {
+                shard(folder.getName());
+            }
+        }
+    }
+
+    /**
+     * Route messages to shards and index them in batches, then commit every shard that got documents.
+     * With create every known shard is emptied first, shards that get no documents stay empty
+     *
+     * @param create to decide create new or append to previous one
+     * @param messages messages to index, for example opened with Helper.openMessageStream
+     * @param batchSize how many documents to hand to the IndexWriter of a shard at once
+     * @return number of indexed messages
+     * @throws IOException
+     */
+    public long index(final Boolean create, final Iterator<Message> messages, final int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize should be positive: " + batchSize);
+        }
+        final Map<String, ShardBatch> batches = new LinkedHashMap<>();
+        if (create) {
+            for (Map.Entry<String, MessageIndexer> shard : getShardsByName().entrySet()) {
+                batches.put(shard.getKey(), new ShardBatch(shard.getValue(), true, batchSize));
+            }
+        }
+        long indexed = 0;
+        while (messages.hasNext()) {
+            final Message message = messages.next();
+            final String name = routing.shardFor(message);
+            ShardBatch batch = batches.get(name);
+            if (batch == null) {
+                batch = new ShardBatch(shard(name), create, batchSize);
+                batches.put(name, batch);
+            }
+            batch.add(message);
+            indexed++;
+        }
+        for (ShardBatch batch : batches.values()) {
+            batch.finish();
+        }
+        return indexed;
+    }
+
+    /**
+     * Indexing JSON file without reading it into memory, see index(Boolean, Iterator, int)
+     *
+     * @param create to decide create new or append to previous one
+     * @param file JSON file with array of messages, same format as resources/tutorial.json
+     * @return number of indexed messages
+     * @throws IOException
+     */
+    public long index(final Boolean create, final File file) throws IOException {
+        try (MessageStream messages = Helper.openMessageStream(file)) {
+            return index(create, messages, MessageIndexer.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * @return indexers of all shards by shard name, in order of names
+     */
+    public synchronized Map<String, MessageIndexer> getShardsByName() {
+        return new TreeMap<>(shards);
+    }
+
+    /**
+     * @return indexer of the shard or null if there is no such shard yet
+     */
+    public synchronized MessageIndexer getShard(final String name) {
+        return shards.get(name);
+    }
+
+    public String getPathToIndexFolder() {
+        return pathToIndexFolder;
+    }
+
+    public ShardRouting getRouting() {
+        return routing;
+    }
+
+    public DirectoryConfig getDirectoryConfig() {
+        return directoryConfig;
+    }
+
+    /**
+     * Close shared writers of all shards
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (MessageIndexer shard : shards.values()) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private synchronized MessageIndexer shard(final String name) {
+        return shards.computeIfAbsent(name, n -> new MessageIndexer(
+                new File(pathToIndexFolder, n).getPath(), directoryConfig, profile));
+    }
+
+    // documents of one shard waiting to be added, builders are reused as in MessageIndexer
+    private static final class ShardBatch {
+        private final SharedIndexWriter writer;
+        private final List<Document> documents;
+        private final MessageDocumentBuilder[] builders;
+
+        private ShardBatch(final MessageIndexer shard, final boolean create, final int batchSize) throws IOException {
+            this.writer = shard.openWriter(create, CommitPolicy.explicit());
+            if (create) {
+                // writer stays open after the previous call, so create has no effect on it
+                writer.deleteAll();
+            }
+            this.documents = new ArrayList<>(batchSize);
+            this.builders = new MessageDocumentBuilder[batchSize];
+        }
+
+        private void add(final Message message) throws IOException {
+            final int slot = documents.size();
+            if (builders[slot] == null) {
+                builders[slot] = new MessageDocumentBuilder();
+            }
+            documents.add(builders[slot].build(message));
+            if (documents.size() == builders.length) {
+                flush();
+            }
+        }
+
+        private void finish() throws IOException {
+            flush();
+            writer.commit();
+        }
+
+        private void flush() throws IOException {
+            writer.add(documents);
+            documents.clear();
+        }
+    }
+}
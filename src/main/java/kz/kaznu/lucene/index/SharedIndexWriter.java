@@ -0,0 +1,219 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.metrics.IndexMetrics;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Long-lived IndexWriter that is opened once and shared by many threads.
+ * Documents are visible to readIndex after commit, commits happen according to CommitPolicy.
+ * The writer owns its Directory and closes it on close.
+ * Get instance with MessageIndexer.openWriter
+ */
+public class SharedIndexWriter implements Closeable {
+    private final IndexWriter writer;
+    private final CommitPolicy commitPolicy;
+    private final IndexingProfile profile;
+    private final IndexMetrics metrics;
+    private final AtomicLong uncommitted = new AtomicLong();
+    // not synchronized: commit does I/O, a virtual thread blocked in it inside synchronized pins its carrier
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+    private volatile IOException scheduledCommitFailure;
+
+    SharedIndexWriter(final IndexWriter writer, final CommitPolicy commitPolicy, final IndexingProfile profile,
+                      final IndexMetrics metrics) {
+        this.writer = writer;
+        this.commitPolicy = commitPolicy;
+        this.profile = profile;
+        this.metrics = metrics;
+        if (commitPolicy.getMaxMillis() > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "index-commit-" + writer.getDirectory());
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledCommit,
+                    commitPolicy.getMaxMillis(), commitPolicy.getMaxMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Add one document. Safe to call from many threads
+     *
+     * @throws IOException
+     */
+    public void add(final Document document) throws IOException {
+        writer.addDocument(document);
+        metrics.indexed(1);
+        added(1);
+    }
+
+    /**
+     * Add several documents. Safe to call from many threads
+     *
+     * @throws IOException
+     */
+    public void add(final Iterable<Document> documents) throws IOException {
+        long count = 0;
+        for (Document document : documents) {
+            writer.addDocument(document);
+            count++;
+        }
+        metrics.indexed(count);
+        added(count);
+    }
+
+    /**
+     * Replace document with the same id, or add it if there is none. Safe to call from many threads
+     *
+     * @param id unique id of the document, value of its "id" field
+     * @throws IOException
+     */
+    public void update(final String id, final Document document) throws IOException {
+        writer.updateDocument(new Term("id", id), document);
+        metrics.indexed(1);
+        added(1);
+    }
+
+    /**
+     * Remove document with the id, it will disappear from the index on the next commit
+     *
+     * @throws IOException
+     */
+    public void delete(final String id) throws IOException {
+        writer.deleteDocuments(new Term("id", id));
+        added(1);
+    }
+
+    /**
+     * Remove all documents, they will disappear from the index on the next commit
+     *
+     * @throws IOException
+     */
+    public void deleteAll() throws IOException {
+        writer.deleteAll();
+        uncommitted.incrementAndGet();
+    }
+
+    /**
+     * Commit everything added so far, regardless of CommitPolicy
+     *
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        final IOException failure = scheduledCommitFailure;
+        if (failure != null) {
+            scheduledCommitFailure = null;
+            throw failure;
+        }
+        commitLock.lock();
+        try {
+            doCommit();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * @return number of documents added since last commit
+     */
+    public long getUncommittedCount() {
+        return uncommitted.get();
+    }
+
+    public CommitPolicy getCommitPolicy() {
+        return commitPolicy;
+    }
+
+    /**
+     * Underlying IndexWriter, for things not covered by this class
+     */
+    public IndexWriter getIndexWriter() {
+        return writer;
+    }
+
+    public boolean isOpen() {
+        return writer.isOpen();
+    }
+
+    /**
+     * Commit pending documents and release the index and its Directory.
+     * Index is merged before that if the IndexingProfile of the writer says so,
+     * the writer is closed even if the merge fails
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        commitLock.lock();
+        try {
+            if (writer.isOpen()) {
+                // closed in reverse order: writer (commits by default), then its directory
+                try (Directory directory = writer.getDirectory(); IndexWriter closing = writer) {
+                    profile.finish(closing);
+                }
+                uncommitted.set(0);
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void added(final long count) throws IOException {
+        final long pending = uncommitted.addAndGet(count);
+        final int maxDocs = commitPolicy.getMaxDocs();
+        if (maxDocs > 0 && pending >= maxDocs) {
+            commitLock.lock();
+            try {
+                // another thread could commit while we were waiting for the lock
+                if (uncommitted.get() >= maxDocs) {
+                    doCommit();
+                }
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    // should be called holding commitLock
+    private void doCommit() throws IOException {
+        // documents added while commit is running may miss it, so they stay counted
+        final long committed = uncommitted.get();
+        writer.commit();
+        uncommitted.addAndGet(-committed);
+    }
+
+    private void scheduledCommit() {
+        try {
+            commitLock.lock();
+            try {
+                if (uncommitted.get() > 0 && writer.isOpen()) {
+                    doCommit();
+                }
+            } finally {
+                commitLock.unlock();
+            }
+        } catch (IOException e) {
+            scheduledCommitFailure = e;
+        } catch (AlreadyClosedException e) {
+            // writer was closed concurrently, nothing to commit anymore
+        }
+    }
+}
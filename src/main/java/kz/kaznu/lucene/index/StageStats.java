@@ -0,0 +1,88 @@
+package kz.kaznu.lucene.index;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of one BulkIndexer stage.
+ * Busy time is time spent doing the work, wait time is time spent blocked on the queues.
+ * Stage with utilization close to 1 is the bottleneck, others wait for it
+ */
+public class StageStats {
+    private final String name;
+    private final int threads;
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private volatile long wallNanos;
+
+    StageStats(final String name, final int threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    void addBusy(final long nanos, final long count) {
+        busyNanos.addAndGet(nanos);
+        items.addAndGet(count);
+    }
+
+    void addWait(final long nanos) {
+        waitNanos.addAndGet(nanos);
+    }
+
+    void setWallNanos(final long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getItems() {
+        return items.get();
+    }
+
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return items per second of wall clock time of the whole run
+     */
+    public double getItemsPerSecond() {
+        return wallNanos == 0 ? 0 : items.get() * (double) TimeUnit.SECONDS.toNanos(1) / wallNanos;
+    }
+
+    /**
+     * @return items per second one thread of the stage could do if it never waited
+     */
+    public double getItemsPerBusySecond() {
+        final long busy = busyNanos.get();
+        return busy == 0 ? 0 : items.get() * (double) TimeUnit.SECONDS.toNanos(1) / busy;
+    }
+
+    /**
+     * @return share of the stage threads time spent working, from 0 to 1
+     */
+    public double getUtilization() {
+        return wallNanos == 0 ? 0 : busyNanos.get() / ((double) wallNanos * threads);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-6s threads=%-3d items=%-10d items/s=%-12.1f items/busy s=%-12.1f utilization=%.2f",
+                name, threads, items.get(), getItemsPerSecond(), getItemsPerBusySecond(), getUtilization());
+    }
+}
@@ -0,0 +1,163 @@
+package kz.kaznu.lucene.metrics;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.lucene.util.InfoStream;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Indexing throughput, flush and merge durations and number of segments of one index.
+ * Flushes and merges are timed by IndexWriters whose config went through instrument. Thread-safe
+ */
+public class IndexMetrics {
+    // DocumentsWriterPerThread logs these when it starts and ends writing a segment, on the flushing thread.
+    // Lucene has no public hook around every flush (IndexWriter.doAfterFlush misses flushes of a full RAM buffer),
+    // the text is internal and IndexMetricsTest fails when it changes
+    private static final String FLUSH_COMPONENT = "DWPT";
+    private static final String FLUSH_STARTED = "flush postings as segment ";
+    private static final String FLUSH_FINISHED = "flushed: segment=";
+
+    private final LongAdder docs = new LongAdder();
+    private final AtomicLong firstDocNanos = new AtomicLong();
+    private volatile long lastDocNanos;
+    private final LatencyHistogram flushes = new LatencyHistogram();
+    private final LatencyHistogram merges = new LatencyHistogram();
+    private final Callable<Integer> segmentCounter;
+
+    /**
+     * @param segmentCounter returns number of segments in the index, called by getSegmentCount
+     */
+    public IndexMetrics(final Callable<Integer> segmentCounter) {
+        this.segmentCounter = segmentCounter;
+    }
+
+    /**
+     * Time flushes and merges of the writer that will be opened with this config.
+     * Should be called after merge scheduler is chosen, its settings are kept.
+     * Merges are timed only with ConcurrentMergeScheduler, the default
+     *
+     * @return the same config
+     */
+    public IndexWriterConfig instrument(final IndexWriterConfig iwc) {
+        iwc.setInfoStream(new FlushTimer(iwc.getInfoStream()));
+        final MergeScheduler scheduler = iwc.getMergeScheduler();
+        if (scheduler instanceof ConcurrentMergeScheduler && !(scheduler instanceof TimedMergeScheduler)) {
+            iwc.setMergeScheduler(new TimedMergeScheduler((ConcurrentMergeScheduler) scheduler));
+        }
+        return iwc;
+    }
+
+    /**
+     * @param count number of documents just added to the index
+     */
+    public void indexed(final long count) {
+        final long now = System.nanoTime();
+        firstDocNanos.compareAndSet(0, now);
+        lastDocNanos = now;
+        docs.add(count);
+    }
+
+    public long getIndexedDocs() {
+        return docs.sum();
+    }
+
+    /**
+     * @return documents added per second between the first and the last call of indexed, 0 if not known yet
+     */
+    public double getDocsPerSecond() {
+        final long first = firstDocNanos.get();
+        final long elapsed = lastDocNanos - first;
+        return first == 0 || elapsed <= 0 ? 0 : docs.sum() * 1_000_000_000.0 / elapsed;
+    }
+
+    /**
+     * @return how long flushes took to write new segments
+     */
+    public LatencyHistogram getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * @return how long merges took, including waiting for I/O throttling
+     */
+    public LatencyHistogram getMerges() {
+        return merges;
+    }
+
+    /**
+     * @return number of segments in the index, -1 if it could not be read
+     */
+    public int getSegmentCount() {
+        try {
+            return segmentCounter.call();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private final class FlushTimer extends InfoStream {
+        private final InfoStream delegate;
+        private final ThreadLocal<Long> started = new ThreadLocal<>();
+
+        private FlushTimer(final InfoStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void message(final String component, final String message) {
+            if (FLUSH_COMPONENT.equals(component)) {
+                if (message.startsWith(FLUSH_STARTED)) {
+                    started.set(System.nanoTime());
+                } else if (message.startsWith(FLUSH_FINISHED)) {
+                    final Long start = started.get();
+                    if (start != null) {
+                        flushes.record(System.nanoTime() - start);
+                        started.remove();
+                    }
+                }
+            }
+            if (delegate.isEnabled(component)) {
+                delegate.message(component, message);
+            }
+        }
+
+        @Override
+        public boolean isEnabled(final String component) {
+            return FLUSH_COMPONENT.equals(component) || delegate.isEnabled(component);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private final class TimedMergeScheduler extends ConcurrentMergeScheduler {
+        private TimedMergeScheduler(final ConcurrentMergeScheduler settings) {
+            if (settings.getMaxThreadCount() != AUTO_DETECT_MERGES_AND_THREADS) {
+                setMaxMergesAndThreads(settings.getMaxMergeCount(), settings.getMaxThreadCount());
+            }
+            if (!settings.getAutoIOThrottle()) {
+                disableAutoIOThrottle();
+            }
+            setForceMergeMBPerSec(settings.getForceMergeMBPerSec());
+        }
+
+        @Override
+        protected void doMerge(final IndexWriter writer, final MergePolicy.OneMerge merge) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                super.doMerge(writer, merge);
+            } finally {
+                merges.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package kz.kaznu.lucene.metrics;
+
+/**
+ * Percentiles of a LatencyHistogram at one moment in milliseconds, shown by JMX as composite data
+ */
+public class LatencySnapshot {
+    private final long count;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double maxMillis;
+
+    public LatencySnapshot(final LatencyHistogram histogram) {
+        this.count = histogram.getCount();
+        this.meanMillis = histogram.getMeanNanos() / 1_000_000;
+        this.p50Millis = histogram.getMillisAtPercentile(50);
+        this.p99Millis = histogram.getMillisAtPercentile(99);
+        this.p999Millis = histogram.getMillisAtPercentile(99.9);
+        this.maxMillis = histogram.getMaxNanos() / 1_000_000.0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getP999Millis() {
+        return p999Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+}
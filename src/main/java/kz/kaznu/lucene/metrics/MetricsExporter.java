@@ -0,0 +1,114 @@
+package kz.kaznu.lucene.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Publishes SearchMetrics and IndexMetrics as MBean kz.kaznu.lucene:type=Metrics,name=&lt;name&gt;
+ * on the platform MBean server. Values are read when a JMX client asks for them, nothing is computed in between
+ */
+public class MetricsExporter implements MetricsMXBean, Closeable {
+    public static final String DOMAIN = "kz.kaznu.lucene";
+
+    private final SearchMetrics searchMetrics;
+    private final IndexMetrics indexMetrics;
+    private final ObjectName objectName;
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * @param name name that tells this index apart from others in the same JVM, for example index folder name
+     * @param searchMetrics search metrics to publish, null if searches are not measured
+     * @param indexMetrics indexing metrics to publish, null if indexing is not measured
+     */
+    public MetricsExporter(final String name, final SearchMetrics searchMetrics, final IndexMetrics indexMetrics) {
+        try {
+            this.objectName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Can not use " + name + " as MBean name", e);
+        }
+        this.searchMetrics = searchMetrics;
+        this.indexMetrics = indexMetrics;
+    }
+
+    /**
+     * Make metrics visible over JMX, replacing MBean with the same name if there is one
+     *
+     * @return name the MBean is registered with
+     */
+    public ObjectName register() {
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not register " + objectName, e);
+        }
+        return objectName;
+    }
+
+    /**
+     * Remove the MBean, does nothing if it is not registered
+     */
+    @Override
+    public void close() {
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not unregister " + objectName, e);
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getSearchLatencies() {
+        final Map<String, LatencySnapshot> snapshots = new LinkedHashMap<>();
+        if (searchMetrics != null) {
+            for (Map.Entry<String, LatencyHistogram> type : searchMetrics.getLatencies().entrySet()) {
+                snapshots.put(type.getKey(), new LatencySnapshot(type.getValue()));
+            }
+        }
+        return snapshots;
+    }
+
+    @Override
+    public long getSlowQueries() {
+        final SlowQueryLog log = searchMetrics == null ? null : searchMetrics.getSlowQueryLog();
+        return log == null ? 0 : log.getSlowQueries();
+    }
+
+    @Override
+    public long getIndexedDocs() {
+        return indexMetrics == null ? 0 : indexMetrics.getIndexedDocs();
+    }
+
+    @Override
+    public double getDocsPerSecond() {
+        return indexMetrics == null ? 0 : indexMetrics.getDocsPerSecond();
+    }
+
+    @Override
+    public LatencySnapshot getFlushes() {
+        return new LatencySnapshot(indexMetrics == null ? new LatencyHistogram() : indexMetrics.getFlushes());
+    }
+
+    @Override
+    public LatencySnapshot getMerges() {
+        return new LatencySnapshot(indexMetrics == null ? new LatencyHistogram() : indexMetrics.getMerges());
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return indexMetrics == null ? -1 : indexMetrics.getSegmentCount();
+    }
+}
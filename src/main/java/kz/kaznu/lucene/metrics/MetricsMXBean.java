@@ -0,0 +1,31 @@
+package kz.kaznu.lucene.metrics;
+
+import java.util.Map;
+
+/**
+ * Search and indexing metrics as seen in JConsole, VisualVM or any JMX client, see MetricsExporter
+ */
+public interface MetricsMXBean {
+    /**
+     * @return search latencies by query type, empty if searches are not measured
+     */
+    Map<String, LatencySnapshot> getSearchLatencies();
+
+    /**
+     * @return queries slower than the SlowQueryLog threshold, 0 if there is no slow query log
+     */
+    long getSlowQueries();
+
+    long getIndexedDocs();
+
+    double getDocsPerSecond();
+
+    LatencySnapshot getFlushes();
+
+    LatencySnapshot getMerges();
+
+    /**
+     * @return segments in the index, -1 if indexing is not measured or the index could not be read
+     */
+    int getSegmentCount();
+}
@@ -0,0 +1,75 @@
+package kz.kaznu.lucene.metrics;
+
+import org.apache.lucene.search.Query;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms of searches per query type. Type is the search operation
+ * (one of the constants below) and the class of the top-level query, for example "relevance/BooleanQuery".
+ * Queries can be passed to a SlowQueryLog as well. Thread-safe
+ */
+public class SearchMetrics {
+    public static final String RELEVANCE = "relevance";
+    public static final String RELEVANCE_AFTER = "relevanceAfter";
+    public static final String NEWEST = "newest";
+    public static final String NEWEST_AFTER = "newestAfter";
+    public static final String FACETS = "facets";
+    public static final String RELATED = "related";
+
+    // operation -> query class -> histogram, so recording does not build the type name
+    private final Map<String, Map<Class<?>, LatencyHistogram>> latencies = new ConcurrentHashMap<>();
+    private volatile SlowQueryLog slowQueryLog;
+
+    /**
+     * @param operation one of the constants of this class
+     * @param query executed query, null if it is not known
+     * @param nanos how long the search took, including loading of stored fields
+     * @param totalHits number of matches
+     */
+    public void record(final String operation, final Query query, final long nanos, final int totalHits) {
+        histogram(operation, query == null ? Query.class : query.getClass()).record(nanos);
+        final SlowQueryLog log = slowQueryLog;
+        if (log != null) {
+            log.record(operation, query, nanos, totalHits);
+        }
+    }
+
+    /**
+     * @return histograms by query type, sorted by type
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        final Map<String, LatencyHistogram> byType = new TreeMap<>();
+        for (Map.Entry<String, Map<Class<?>, LatencyHistogram>> operation : latencies.entrySet()) {
+            for (Map.Entry<Class<?>, LatencyHistogram> queryClass : operation.getValue().entrySet()) {
+                byType.put(operation.getKey() + "/" + queryClass.getKey().getSimpleName(), queryClass.getValue());
+            }
+        }
+        return byType;
+    }
+
+    /**
+     * @param slowQueryLog log to pass every query to, null to switch logging off
+     */
+    public void setSlowQueryLog(final SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    private LatencyHistogram histogram(final String operation, final Class<?> queryClass) {
+        Map<Class<?>, LatencyHistogram> byClass = latencies.get(operation);
+        if (byClass == null) {
+            byClass = latencies.computeIfAbsent(operation, o -> new ConcurrentHashMap<>());
+        }
+        LatencyHistogram histogram = byClass.get(queryClass);
+        if (histogram == null) {
+            histogram = byClass.computeIfAbsent(queryClass, c -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,72 @@
+package kz.kaznu.lucene.metrics;
+
+import org.apache.lucene.search.Query;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs queries slower than a threshold at WARNING and, in sampling mode, every sampleEvery-th query
+ * at INFO whatever its latency, to see what usual traffic looks like.
+ * Messages go to java.util.logging logger kz.kaznu.lucene.metrics.SlowQueryLog. Thread-safe
+ */
+public class SlowQueryLog {
+    private static final Logger LOG = Logger.getLogger(SlowQueryLog.class.getName());
+
+    private final long thresholdNanos;
+    private final int sampleEvery;
+    private final AtomicLong seen = new AtomicLong();
+    private final LongAdder slow = new LongAdder();
+
+    /**
+     * @param thresholdMillis queries that take this long or longer are logged
+     * @param sampleEvery log one of this many queries, 0 to log slow queries only
+     */
+    public SlowQueryLog(final long thresholdMillis, final int sampleEvery) {
+        if (thresholdMillis < 0 || sampleEvery < 0) {
+            throw new IllegalArgumentException("thresholdMillis and sampleEvery should not be negative: "
+                    + thresholdMillis + ", " + sampleEvery);
+        }
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * @param type query type, see SearchMetrics.record
+     * @param query executed query, null if it is not known
+     * @param nanos how long the query took
+     * @param totalHits number of matches
+     */
+    public void record(final String type, final Query query, final long nanos, final int totalHits) {
+        if (nanos >= thresholdNanos) {
+            slow.increment();
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.warning(message("Slow query", type, query, nanos, totalHits));
+            }
+        } else if (sampleEvery > 0 && seen.incrementAndGet() % sampleEvery == 0 && LOG.isLoggable(Level.INFO)) {
+            LOG.info(message("Sampled query", type, query, nanos, totalHits));
+        }
+    }
+
+    /**
+     * @return how many queries were slower than the threshold
+     */
+    public long getSlowQueries() {
+        return slow.sum();
+    }
+
+    public long getThresholdMillis() {
+        return thresholdNanos / 1_000_000;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    private static String message(final String what, final String type, final Query query,
+                                  final long nanos, final int totalHits) {
+        return what + " " + type + " took " + nanos / 1_000_000.0 + " ms, " + totalHits + " hits: " + query;
+    }
+}
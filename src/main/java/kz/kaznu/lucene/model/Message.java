@@ -1,16 +1,48 @@
 package kz.kaznu.lucene.model;
 
+import com.google.gson.annotations.SerializedName;
 import kz.kaznu.lucene.index.MessageToDocument;
 import org.apache.lucene.document.Document;
 
 public class Message {
+    private Long notificationId;
+    @SerializedName("URL")
+    private String url;
     private String body;
     private String title;
    private String[] region;
     private String creationDate;
 
     public Document convertToDocument() {
-        return MessageToDocument.createWith(title, body, region, creationDate);
+        return MessageToDocument.createWith(getId(), title, body, region, creationDate);
+    }
+
+    /**
+     * Unique key of the message in the index: notificationId if the source has it, otherwise URL
+     *
+     * @return id or null if the message has neither
+     */
+    public String getId() {
+        if (notificationId != null) {
+            return notificationId.toString();
+        }
+        return url;
+    }
+
+    public Long getNotificationId() {
+        return notificationId;
+    }
+
+    public void setNotificationId(Long notificationId) {
+        this.notificationId = notificationId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
     }
 
     public String getBody() {
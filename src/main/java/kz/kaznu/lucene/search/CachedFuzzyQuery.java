@@ -0,0 +1,82 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.FilteredTermsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BoostAttribute;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.ToStringUtils;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * FuzzyQuery over automata compiled once in LevenshteinAutomataCache.
+ * Matching terms are scored like in FuzzyQuery: the closer the term, the bigger its boost,
+ * and only maxExpansions best terms are searched
+ */
+final class CachedFuzzyQuery extends MultiTermQuery {
+    private final Term term;
+    private final int prefixLength;
+    private final int maxExpansions;
+    private final LevenshteinAutomataCache.FuzzyAutomata automata;
+
+    CachedFuzzyQuery(final Term term, final int prefixLength, final int maxExpansions,
+                     final LevenshteinAutomataCache.FuzzyAutomata automata) {
+        super(term.field());
+        this.term = term;
+        this.prefixLength = prefixLength;
+        this.maxExpansions = maxExpansions;
+        this.automata = automata;
+        setRewriteMethod(new MultiTermQuery.TopTermsBlendedFreqScoringRewrite(maxExpansions));
+    }
+
+    @Override
+    protected TermsEnum getTermsEnum(final Terms terms, final AttributeSource atts) throws IOException {
+        final TermsEnum matching = automata.getCompiled().getTermsEnum(terms);
+        final BoostAttribute boost = matching.attributes().addAttribute(BoostAttribute.class);
+        return new FilteredTermsEnum(matching, false) {
+            @Override
+            protected AcceptStatus accept(final BytesRef candidate) {
+                boost.setBoost(automata.similarity(candidate));
+                return AcceptStatus.YES;
+            }
+        };
+    }
+
+    public Term getTerm() {
+        return term;
+    }
+
+    @Override
+    public String toString(final String field) {
+        final StringBuilder buffer = new StringBuilder();
+        if (!term.field().equals(field)) {
+            buffer.append(term.field()).append(':');
+        }
+        buffer.append(term.text()).append('~').append(automata.getMaxEdits());
+        buffer.append(ToStringUtils.boost(getBoost()));
+        return buffer.toString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+        final CachedFuzzyQuery other = (CachedFuzzyQuery) o;
+        return term.equals(other.term) && automata.getMaxEdits() == other.automata.getMaxEdits()
+                && prefixLength == other.prefixLength && maxExpansions == other.maxExpansions;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Objects.hash(term, automata.getMaxEdits(), prefixLength, maxExpansions);
+    }
+}
@@ -0,0 +1,76 @@
+package kz.kaznu.lucene.search;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Starts of all date buckets between two dates, so a date is put into its bucket
+ * by arithmetic (fixed offset zones, hours and days) or binary search instead of calendar math.
+ * At most MAX_BUCKETS newest buckets are kept, older dates are out of the table. Immutable
+ */
+final class DateBuckets {
+    /**
+     * More than two years of hours. Caps memory of a segment whose dates are far apart, 8 bytes per bucket
+     * in the table and 4 bytes in counts of every faceted search
+     */
+    static final int MAX_BUCKETS = 20_000;
+
+    // starts[i] is the first second of bucket i, the last element is the end of the last bucket
+    private final long[] starts;
+    private final long fixedWidth;
+
+    /**
+     * Buckets that cover both dates, or the newest MAX_BUCKETS of them
+     */
+    DateBuckets(final DateInterval interval, final ZoneId zone, final long oldest, final long newest) {
+        final long first = interval.bucketStart(oldest, zone);
+        long[] bounds = new long[16];
+        // walk back from the newest bucket, so the cap leaves out the oldest ones
+        long start = interval.bucketStart(newest, zone);
+        bounds[0] = interval.nextBucketStart(start, zone);
+        int size = 1;
+        while (size <= MAX_BUCKETS) {
+            if (size == bounds.length) {
+                bounds = Arrays.copyOf(bounds, size * 2);
+            }
+            bounds[size++] = start;
+            if (start <= first) {
+                break;
+            }
+            start = interval.previousBucketStart(start, zone);
+        }
+        this.starts = new long[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = bounds[size - 1 - i];
+        }
+        if (interval == DateInterval.HOUR && zone.getRules().isFixedOffset()) {
+            fixedWidth = 3600;
+        } else if (interval == DateInterval.DAY && zone.getRules().isFixedOffset()) {
+            fixedWidth = 24 * 3600;
+        } else {
+            fixedWidth = 0;
+        }
+    }
+
+    int size() {
+        return starts.length - 1;
+    }
+
+    long start(final int bucket) {
+        return starts[bucket];
+    }
+
+    /**
+     * @return bucket of the date or -1 if it is out of the table
+     */
+    int indexOf(final long unixTime) {
+        if (unixTime < starts[0] || unixTime >= starts[starts.length - 1]) {
+            return -1;
+        }
+        if (fixedWidth > 0) {
+            return (int) ((unixTime - starts[0]) / fixedWidth);
+        }
+        final int found = Arrays.binarySearch(starts, unixTime);
+        return found >= 0 ? found : -found - 2;
+    }
+}
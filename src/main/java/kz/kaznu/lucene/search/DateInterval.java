@@ -0,0 +1,91 @@
+package kz.kaznu.lucene.search;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Width of date histogram buckets. Buckets follow the calendar of a time zone,
+ * so days and months may have different length in seconds
+ */
+public enum DateInterval {
+    HOUR {
+        @Override
+        ZonedDateTime truncate(final ZonedDateTime time) {
+            return time.truncatedTo(ChronoUnit.HOURS);
+        }
+
+        @Override
+        ZonedDateTime next(final ZonedDateTime start) {
+            return start.plusHours(1);
+        }
+
+        @Override
+        ZonedDateTime previous(final ZonedDateTime start) {
+            return start.minusHours(1);
+        }
+    },
+    DAY {
+        @Override
+        ZonedDateTime truncate(final ZonedDateTime time) {
+            return time.truncatedTo(ChronoUnit.DAYS);
+        }
+
+        @Override
+        ZonedDateTime next(final ZonedDateTime start) {
+            return start.plusDays(1);
+        }
+
+        @Override
+        ZonedDateTime previous(final ZonedDateTime start) {
+            return start.minusDays(1);
+        }
+    },
+    MONTH {
+        @Override
+        ZonedDateTime truncate(final ZonedDateTime time) {
+            return time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+        }
+
+        @Override
+        ZonedDateTime next(final ZonedDateTime start) {
+            return start.plusMonths(1);
+        }
+
+        @Override
+        ZonedDateTime previous(final ZonedDateTime start) {
+            return start.minusMonths(1);
+        }
+    };
+
+    abstract ZonedDateTime truncate(ZonedDateTime time);
+
+    abstract ZonedDateTime next(ZonedDateTime start);
+
+    abstract ZonedDateTime previous(ZonedDateTime start);
+
+    /**
+     * @param unixTime unix time in seconds
+     * @return unix time of the first second of the bucket
+     */
+    public long bucketStart(final long unixTime, final ZoneId zone) {
+        return truncate(Instant.ofEpochSecond(unixTime).atZone(zone)).toEpochSecond();
+    }
+
+    /**
+     * @param bucketStart value returned by bucketStart
+     * @return unix time of the first second of the previous bucket
+     */
+    public long previousBucketStart(final long bucketStart, final ZoneId zone) {
+        return previous(Instant.ofEpochSecond(bucketStart).atZone(zone)).toEpochSecond();
+    }
+
+    /**
+     * @param bucketStart value returned by bucketStart
+     * @return unix time of the first second of the next bucket
+     */
+    public long nextBucketStart(final long bucketStart, final ZoneId zone) {
+        return next(Instant.ofEpochSecond(bucketStart).atZone(zone)).toEpochSecond();
+    }
+}
@@ -0,0 +1,132 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts matched documents per region and per date bucket in the same pass as the search,
+ * use it with MultiCollector next to the hits collector.
+ *
+ * Region sets and date buckets of every document are taken from SegmentFacets,
+ * so a matched document costs two array reads and counts are turned into names
+ * and dates once per segment. Not thread-safe, one collector per search
+ */
+public class FacetCollector implements Collector {
+    private final DateInterval interval;
+    private final ZoneId zone;
+    private final List<SegmentCounts> segments = new ArrayList<>();
+
+    /**
+     * Date buckets in default time zone, as dates are parsed in MessageToDocument
+     */
+    public FacetCollector(final DateInterval interval) {
+        this(interval, ZoneId.systemDefault());
+    }
+
+    public FacetCollector(final DateInterval interval, final ZoneId zone) {
+        this.interval = interval;
+        this.zone = zone;
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(final LeafReaderContext context) throws IOException {
+        final SegmentFacets facets = SegmentFacets.of(context.reader());
+        final SegmentFacets.DocBuckets dates = facets.dates(context.reader(), interval, zone);
+        final SegmentCounts counts = new SegmentCounts(facets, dates);
+        segments.add(counts);
+
+        final int[] docBuckets = dates.docBuckets;
+        final int[] bucketCounts = counts.bucketCounts;
+        final short[] docRegionSets = facets.getDocRegionSets();
+        if (docRegionSets != null) {
+            final int[] setCounts = counts.setCounts;
+            return new FacetLeafCollector() {
+                @Override
+                public void collect(final int doc) {
+                    final int set = docRegionSets[doc];
+                    if (set >= 0) {
+                        setCounts[set]++;
+                    }
+                    bucketCounts[docBuckets[doc]]++;
+                }
+            };
+        }
+
+        final SortedSetDocValues regions = DocValues.getSortedSet(context.reader(), "region");
+        final int[] regionCounts = counts.regionCounts;
+        return new FacetLeafCollector() {
+            @Override
+            public void collect(final int doc) {
+                regions.setDocument(doc);
+                for (long ord = regions.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = regions.nextOrd()) {
+                    regionCounts[(int) ord]++;
+                }
+                bucketCounts[docBuckets[doc]]++;
+            }
+        };
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * @return counts of all documents collected so far
+     */
+    public Facets getFacets() {
+        final Map<String, Integer> regions = new HashMap<>();
+        final Map<Long, Integer> dates = new HashMap<>();
+        int otherDates = 0;
+        for (SegmentCounts segment : segments) {
+            final int[] regionCounts = segment.regionCounts.clone();
+            segment.facets.addSetCounts(segment.setCounts, regionCounts);
+            for (int ord = 0; ord < regionCounts.length; ord++) {
+                if (regionCounts[ord] > 0) {
+                    regions.merge(segment.facets.regionName(ord), regionCounts[ord], Integer::sum);
+                }
+            }
+            final int overflow = segment.dates.buckets.size();
+            otherDates += segment.bucketCounts[overflow];
+            for (int bucket = 0; bucket < overflow; bucket++) {
+                if (segment.bucketCounts[bucket] > 0) {
+                    dates.merge(segment.dates.buckets.start(bucket), segment.bucketCounts[bucket], Integer::sum);
+                }
+            }
+        }
+        return new Facets(regions, dates, otherDates, interval);
+    }
+
+    private abstract static class FacetLeafCollector implements LeafCollector {
+        @Override
+        public void setScorer(final Scorer scorer) {
+        }
+    }
+
+    private static final class SegmentCounts {
+        private final SegmentFacets facets;
+        private final SegmentFacets.DocBuckets dates;
+        private final int[] setCounts;
+        private final int[] regionCounts;
+        private final int[] bucketCounts;
+
+        private SegmentCounts(final SegmentFacets facets, final SegmentFacets.DocBuckets dates) {
+            this.facets = facets;
+            this.dates = dates;
+            this.setCounts = new int[facets.regionSetCount()];
+            this.regionCounts = new int[facets.regionCount()];
+            this.bucketCounts = new int[dates.buckets.size() + 1]; // the last one is the overflow bucket
+        }
+    }
+}
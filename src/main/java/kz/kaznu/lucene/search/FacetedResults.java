@@ -0,0 +1,27 @@
+package kz.kaznu.lucene.search;
+
+/**
+ * Hits of a search together with facet counts over all matched documents
+ */
+public class FacetedResults {
+    private final SearchResults results;
+    private final Facets facets;
+
+    public FacetedResults(final SearchResults results, final Facets facets) {
+        this.results = results;
+        this.facets = facets;
+    }
+
+    public SearchResults getResults() {
+        return results;
+    }
+
+    public Facets getFacets() {
+        return facets;
+    }
+
+    @Override
+    public String toString() {
+        return "FacetedResults{results=" + results + ", facets=" + facets + "}";
+    }
+}
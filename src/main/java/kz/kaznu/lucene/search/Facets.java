@@ -0,0 +1,82 @@
+package kz.kaznu.lucene.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Counts of matched documents per region and per date bucket
+ */
+public class Facets {
+    private final Map<String, Integer> regionCounts;
+    private final SortedMap<Long, Integer> dateCounts;
+    private final int otherDateCount;
+    private final DateInterval interval;
+
+    public Facets(final Map<String, Integer> regionCounts, final Map<Long, Integer> dateCounts,
+                  final DateInterval interval) {
+        this(regionCounts, dateCounts, 0, interval);
+    }
+
+    /**
+     * @param otherDateCount number of documents in no date bucket
+     */
+    public Facets(final Map<String, Integer> regionCounts, final Map<Long, Integer> dateCounts,
+                  final int otherDateCount, final DateInterval interval) {
+        final List<Map.Entry<String, Integer>> regions = new ArrayList<>(regionCounts.entrySet());
+        regions.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        final Map<String, Integer> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> region : regions) {
+            sorted.put(region.getKey(), region.getValue());
+        }
+        this.regionCounts = Collections.unmodifiableMap(sorted);
+        this.dateCounts = Collections.unmodifiableSortedMap(new TreeMap<>(dateCounts));
+        this.otherDateCount = otherDateCount;
+        this.interval = interval;
+    }
+
+    /**
+     * @return region name to number of documents, most frequent regions first
+     */
+    public Map<String, Integer> getRegionCounts() {
+        return regionCounts;
+    }
+
+    /**
+     * @param region region name, for example "ALMATY_REGION"
+     * @return number of matched documents in the region
+     */
+    public int getRegionCount(final String region) {
+        final Integer count = regionCounts.get(region);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return unix time of bucket start to number of documents, oldest first. Empty buckets are left out
+     */
+    public SortedMap<Long, Integer> getDateCounts() {
+        return dateCounts;
+    }
+
+    /**
+     * @return number of documents whose date is in no bucket: unparsed or missing dates
+     * and dates too old for the buckets of their segment
+     */
+    public int getOtherDateCount() {
+        return otherDateCount;
+    }
+
+    public DateInterval getInterval() {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return "Facets{regions=" + regionCounts + ", " + interval + "=" + dateCounts
+                + ", otherDates=" + otherDateCount + "}";
+    }
+}
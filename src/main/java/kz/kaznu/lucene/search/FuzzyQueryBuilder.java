@@ -0,0 +1,142 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Typo tolerant queries: text is analyzed first, so every word is compared with the indexed stems
+ * instead of the whole word form, and each stem is searched with a fuzzy query that
+ * <ul>
+ *     <li>keeps prefixLength first letters, so only a small part of the terms dictionary is visited</li>
+ *     <li>allows less edits in short stems, like 1 edit in 3 letters would match almost anything</li>
+ *     <li>expands to at most maxExpansions closest terms</li>
+ *     <li>takes compiled automata from LevenshteinAutomataCache</li>
+ * </ul>
+ * Stems are combined with SHOULD, like QueryParser does. Immutable and thread-safe
+ */
+public class FuzzyQueryBuilder {
+    public static final int DEFAULT_MAX_EDITS = LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE;
+    public static final int DEFAULT_PREFIX_LENGTH = 1;
+    public static final int DEFAULT_MAX_EXPANSIONS = 50;
+
+    /**
+     * Stems shorter than this are matched exactly, stems shorter than TWO_EDITS_LENGTH with one edit
+     */
+    static final int ONE_EDIT_LENGTH = 3;
+    static final int TWO_EDITS_LENGTH = 6;
+
+    private final Analyzer analyzer;
+    private final int maxEdits;
+    private final int prefixLength;
+    private final int maxExpansions;
+    private final LevenshteinAutomataCache cache;
+
+    /**
+     * Builder with default settings and the shared automata cache
+     * @param analyzer analyzer the fields were indexed with, for example RussianAnalyzer
+     */
+    public FuzzyQueryBuilder(final Analyzer analyzer) {
+        this(analyzer, DEFAULT_MAX_EDITS, DEFAULT_PREFIX_LENGTH, DEFAULT_MAX_EXPANSIONS, LevenshteinAutomataCache.SHARED);
+    }
+
+    /**
+     * @param analyzer analyzer the fields were indexed with, for example RussianAnalyzer
+     * @param maxEdits most edits in long stems, 1 or 2
+     * @param prefixLength how many first letters of a stem have to match exactly, 0 to visit every term
+     * @param maxExpansions how many similar terms of each stem to search
+     * @param cache where to keep compiled automata
+     */
+    public FuzzyQueryBuilder(final Analyzer analyzer, final int maxEdits, final int prefixLength,
+                             final int maxExpansions, final LevenshteinAutomataCache cache) {
+        if (maxEdits < 0 || maxEdits > LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE) {
+            throw new IllegalArgumentException("maxEdits should be between 0 and "
+                    + LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE + ": " + maxEdits);
+        }
+        if (prefixLength < 0 || maxExpansions < 1) {
+            throw new IllegalArgumentException("prefixLength should not be negative and maxExpansions should be positive: "
+                    + prefixLength + ", " + maxExpansions);
+        }
+        this.analyzer = analyzer;
+        this.maxEdits = maxEdits;
+        this.prefixLength = prefixLength;
+        this.maxExpansions = maxExpansions;
+        this.cache = cache;
+    }
+
+    /**
+     * @param field field to search, "body" or "title"
+     * @param text words to search, may have typos
+     * @return query matching documents with any of the words, matches nothing if text has no words
+     */
+    public Query build(final String field, final String text) {
+        final Set<String> stems = analyze(field, text);
+        if (stems.size() == 1) {
+            return stemQuery(field, stems.iterator().next());
+        }
+        final BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String stem : stems) {
+            query.add(stemQuery(field, stem), BooleanClause.Occur.SHOULD);
+        }
+        return query.build();
+    }
+
+    private Query stemQuery(final String field, final String stem) {
+        final Term term = new Term(field, stem);
+        final int edits = editsFor(stem);
+        if (edits == 0) {
+            return new TermQuery(term);
+        }
+        return new CachedFuzzyQuery(term, prefixLength, maxExpansions, cache.get(stem, edits, prefixLength));
+    }
+
+    /**
+     * @return how many edits are allowed in the stem
+     */
+    int editsFor(final String stem) {
+        final int length = stem.codePointCount(0, stem.length());
+        if (length < ONE_EDIT_LENGTH) {
+            return 0;
+        }
+        return Math.min(maxEdits, length < TWO_EDITS_LENGTH ? 1 : 2);
+    }
+
+    private Set<String> analyze(final String field, final String text) {
+        final Set<String> stems = new LinkedHashSet<>();
+        try (TokenStream tokens = analyzer.tokenStream(field, text)) {
+            final CharTermAttribute termAttribute = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                stems.add(termAttribute.toString());
+            }
+            tokens.end();
+        } catch (IOException e) {
+            // text is read from a String
+            throw new UncheckedIOException(e);
+        }
+        return stems;
+    }
+
+    public int getMaxEdits() {
+        return maxEdits;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    public int getMaxExpansions() {
+        return maxExpansions;
+    }
+}
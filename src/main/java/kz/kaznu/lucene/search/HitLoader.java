@@ -0,0 +1,83 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.ScoreDoc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads stored fields of the hits.
+ * Every document is read once and only requested fields are decoded. Documents are read in
+ * docId order, so stored fields are accessed sequentially, and returned in the order of hits.
+ * Stored fields readers come from StoredFieldsPool instead of per thread ones, which suits virtual threads
+ */
+public final class HitLoader {
+
+    private HitLoader() {
+    }
+
+    /**
+     * @param reader reader the hits were found with
+     * @param hits hits in order of relevance
+     * @param fields stored fields to load, none means only docId and score
+     * @return hits with fields in the same order as provided
+     * @throws IOException
+     */
+    public static List<SearchHit> load(final IndexReader reader, final ScoreDoc[] hits,
+                                       final String... fields) throws IOException {
+        final Set<String> fieldsToLoad = new HashSet<>(Arrays.asList(fields));
+        final SearchHit[] loaded = new SearchHit[hits.length];
+
+        final Integer[] byDocId = new Integer[hits.length];
+        for (int i = 0; i < hits.length; i++) {
+            byDocId[i] = i;
+        }
+        Arrays.sort(byDocId, Comparator.comparingInt(i -> hits[i].doc));
+
+        final List<LeafReaderContext> leaves = reader.leaves();
+        LeafReaderContext leaf = null;
+        StoredFieldsPool.Lease storedFields = null;
+        try {
+            for (int i : byDocId) {
+                final ScoreDoc hit = hits[i];
+                final Map<String, String> values = new HashMap<>();
+                if (!fieldsToLoad.isEmpty()) {
+                    // hits are in docId order, so each segment is leased once
+                    if (leaf == null || hit.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                        if (storedFields != null) {
+                            storedFields.release();
+                        }
+                        leaf = leaves.get(ReaderUtil.subIndex(hit.doc, leaves));
+                        storedFields = StoredFieldsPool.acquire(leaf.reader());
+                    }
+                    final DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(fieldsToLoad);
+                    storedFields.visitDocument(hit.doc - leaf.docBase, visitor);
+                    final Document document = visitor.getDocument();
+                    // values of a multi-valued field such as region are joined with spaces
+                    for (IndexableField field : document.getFields()) {
+                        values.merge(field.name(), field.stringValue(), (first, next) -> first + ' ' + next);
+                    }
+                }
+                loaded[i] = new SearchHit(hit.doc, hit.score, values);
+            }
+        } finally {
+            if (storedFields != null) {
+                storedFields.release();
+            }
+        }
+        return new ArrayList<>(Arrays.asList(loaded));
+    }
+}
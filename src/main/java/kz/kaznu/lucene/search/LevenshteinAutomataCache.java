@@ -0,0 +1,185 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of compiled Levenshtein automata.
+ * FuzzyQuery builds and determinizes automata for every search, which for two edits
+ * costs about as much as the search itself. Users type the same words over and over,
+ * so automata of hot terms are kept here and reused by every field and searcher.
+ * Thread-safe, automata are compiled outside of the lock
+ */
+public class LevenshteinAutomataCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * Cache used by FuzzyQueryBuilder by default
+     */
+    public static final LevenshteinAutomataCache SHARED = new LevenshteinAutomataCache();
+
+    private final int maxEntries;
+    private final Map<Key, FuzzyAutomata> entries;
+
+    private long hits;
+    private long misses;
+
+    public LevenshteinAutomataCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries how many terms to keep automata of, least recently used are evicted first
+     */
+    public LevenshteinAutomataCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries should be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Key, FuzzyAutomata>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, FuzzyAutomata> eldest) {
+                return size() > LevenshteinAutomataCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param text term to match, as it is in the index
+     * @param maxEdits most edits (insertion, deletion, substitution or transposition), 1 or 2
+     * @param prefixLength how many first characters have to match exactly
+     */
+    public FuzzyAutomata get(final String text, final int maxEdits, final int prefixLength) {
+        if (maxEdits < 1 || maxEdits > LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE) {
+            throw new IllegalArgumentException("maxEdits should be between 1 and "
+                    + LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE + ": " + maxEdits);
+        }
+        final Key key = new Key(text, maxEdits, prefixLength);
+        synchronized (this) {
+            final FuzzyAutomata cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        final FuzzyAutomata automata = new FuzzyAutomata(text, maxEdits, prefixLength);
+        synchronized (this) {
+            final FuzzyAutomata raced = entries.putIfAbsent(key, automata);
+            return raced != null ? raced : automata;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LevenshteinAutomataCache{size=" + entries.size() + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+
+    /**
+     * Automaton accepting terms within maxEdits of the text, to intersect with a terms dictionary,
+     * and one matcher for every smaller distance to find out how close an accepted term is
+     */
+    public static final class FuzzyAutomata {
+        private final int maxEdits;
+        private final int textLength;
+        private final CompiledAutomaton compiled;
+        private final ByteRunAutomaton[] closer;
+
+        FuzzyAutomata(final String text, final int maxEdits, final int prefixLength) {
+            this.maxEdits = maxEdits;
+            this.textLength = text.codePointCount(0, text.length());
+            final int prefixEnd = text.offsetByCodePoints(0, Math.min(Math.max(prefixLength, 0), textLength));
+            final String prefix = text.substring(0, prefixEnd);
+            final LevenshteinAutomata builder = new LevenshteinAutomata(text.substring(prefixEnd), true);
+
+            this.closer = new ByteRunAutomaton[maxEdits];
+            for (int edits = 0; edits < maxEdits; edits++) {
+                closer[edits] = new ByteRunAutomaton(builder.toAutomaton(edits, prefix));
+            }
+            final Automaton all = builder.toAutomaton(maxEdits, prefix);
+            this.compiled = new CompiledAutomaton(all, true, false);
+        }
+
+        public CompiledAutomaton getCompiled() {
+            return compiled;
+        }
+
+        public int getMaxEdits() {
+            return maxEdits;
+        }
+
+        /**
+         * @param term term accepted by getCompiled()
+         * @return number of edits between the term and the text
+         */
+        public int edits(final BytesRef term) {
+            for (int edits = 0; edits < closer.length; edits++) {
+                if (closer[edits].run(term.bytes, term.offset, term.length)) {
+                    return edits;
+                }
+            }
+            return maxEdits;
+        }
+
+        /**
+         * @return score multiplier of an accepted term, 1 for the text itself, same formula as FuzzyQuery
+         */
+        public float similarity(final BytesRef term) {
+            final int shorter = Math.min(textLength, UnicodeUtil.codePointCount(term));
+            return shorter == 0 ? 0f : Math.max(0f, 1f - (float) edits(term) / shorter);
+        }
+    }
+
+    private static final class Key {
+        private final String text;
+        private final int maxEdits;
+        private final int prefixLength;
+
+        Key(final String text, final int maxEdits, final int prefixLength) {
+            this.text = text;
+            this.maxEdits = maxEdits;
+            this.prefixLength = prefixLength;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return maxEdits == other.maxEdits && prefixLength == other.prefixLength && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, maxEdits, prefixLength);
+        }
+    }
+}
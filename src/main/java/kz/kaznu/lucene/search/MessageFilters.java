@@ -0,0 +1,156 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Region and date filters. They should be added to BooleanQuery as FILTER clauses:
+ * they only restrict matching documents and do not change the score of the text part.
+ *
+ * Searchers created by MessageSearcherFactory keep matching documents of these filters
+ * in FILTER_CACHE per segment after the first use, so repeated filters cost almost nothing.
+ * Region filters are RegionFilter instances shared per set of regions
+ */
+public final class MessageFilters {
+    public static final int FILTER_CACHE_MAX_QUERIES = 1000;
+    public static final long FILTER_CACHE_MAX_RAM_BYTES = 64 * 1024 * 1024;
+    public static final int REGION_FILTERS_MAX = 1000;
+
+    /**
+     * "Now" is rounded up to this many seconds, so open ended date filters repeat and can be cached
+     */
+    public static final long NOW_ROUNDING_SECONDS = 60;
+
+    /**
+     * Per-segment bitsets of filters, shared by all searchers
+     */
+    public static final LRUQueryCache FILTER_CACHE = new LRUQueryCache(FILTER_CACHE_MAX_QUERIES, FILTER_CACHE_MAX_RAM_BYTES);
+
+    /**
+     * Caches region and date filters on first use on segments of any size,
+     * other queries are cached by Lucene default policy
+     */
+    public static final QueryCachingPolicy CACHING_POLICY = new QueryCachingPolicy() {
+        private final QueryCachingPolicy defaultPolicy = new UsageTrackingQueryCachingPolicy();
+
+        @Override
+        public void onUse(final Query query) {
+            defaultPolicy.onUse(query);
+        }
+
+        @Override
+        public boolean shouldCache(final Query query, final LeafReaderContext context) throws IOException {
+            return isFilter(query) || defaultPolicy.shouldCache(query, context);
+        }
+    };
+
+    // least recently used set of regions first
+    private static final Map<List<String>, RegionFilter> REGION_FILTERS = Collections.synchronizedMap(
+            new LinkedHashMap<List<String>, RegionFilter>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<List<String>, RegionFilter> eldest) {
+                    return size() > REGION_FILTERS_MAX;
+                }
+            });
+
+    private MessageFilters() {
+    }
+
+    /**
+     * Documents in any of the regions, matched by RegionFilter. Regions are exact terms, so names should be
+     * spelled as in the messages. The same filter is returned for the same regions in any order,
+     * so region names are resolved to ordinals once per segment for all queries
+     *
+     * @param regions region names as in tutorial.json, for example "ALMATY_REGION"
+     */
+    public static Query regions(final String... regions) {
+        final List<String> key = new ArrayList<>(new TreeSet<>(Arrays.asList(regions)));
+        return REGION_FILTERS.computeIfAbsent(key, k -> new RegionFilter(regions));
+    }
+
+    /**
+     * Same documents as regions, matched through postings of the region terms.
+     * Slower for big regions, kept to compare with RegionFilter
+     *
+     * @param regions region names as in tutorial.json, for example "ALMATY_REGION"
+     */
+    public static Query regionTerms(final String... regions) {
+        final BooleanQuery.Builder anyRegion = new BooleanQuery.Builder();
+        for (String region : regions) {
+            anyRegion.add(new TermQuery(new Term("region", region)), BooleanClause.Occur.SHOULD);
+        }
+        return anyRegion.build();
+    }
+
+    /**
+     * Documents created between two dates, both inclusive
+     *
+     * @param from unix time in seconds
+     * @param to unix time in seconds
+     */
+    public static Query dateRange(final long from, final long to) {
+        return NumericRangeQuery.newLongRange("creationDate", from, to, true, true);
+    }
+
+    /**
+     * Documents created from date till now
+     *
+     * @param from unix time in seconds
+     */
+    public static Query since(final long from) {
+        return dateRange(from, now());
+    }
+
+    /**
+     * @return current unix time in seconds rounded up to NOW_ROUNDING_SECONDS
+     */
+    public static long now() {
+        final long now = System.currentTimeMillis() / 1000L;
+        return (now / NOW_ROUNDING_SECONDS + 1) * NOW_ROUNDING_SECONDS;
+    }
+
+    /**
+     * @return true if query is a region or date filter
+     */
+    static boolean isFilter(final Query query) {
+        if (query instanceof NumericRangeQuery) {
+            return "creationDate".equals(((NumericRangeQuery<?>) query).getField());
+        }
+        if (query instanceof TermQuery) {
+            return "region".equals(((TermQuery) query).getTerm().field());
+        }
+        if (query instanceof RegionFilter) {
+            return true;
+        }
+        if (query instanceof BooleanQuery) {
+            final BooleanQuery booleanQuery = (BooleanQuery) query;
+            if (booleanQuery.clauses().isEmpty()) {
+                return false;
+            }
+            for (BooleanClause clause : booleanQuery.clauses()) {
+                if (!isFilter(clause.getQuery())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
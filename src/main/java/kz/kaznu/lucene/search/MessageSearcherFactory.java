@@ -0,0 +1,75 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates searchers configured for message search:
+ * region and date filters are cached in MessageFilters.FILTER_CACHE,
+ * segments are searched in parallel if the factory has an executor,
+ * with a warmer every new searcher replays its queries before it is returned,
+ * so SearcherManager publishes only warm searchers
+ */
+public class MessageSearcherFactory extends SearcherFactory {
+    private final ExecutorService executor;
+    private final int maxDocsPerSlice;
+    private final int maxSegmentsPerSlice;
+    private final SearcherWarmer warmer;
+
+    public MessageSearcherFactory() {
+        this(null);
+    }
+
+    /**
+     * @param executor executor shared by all searchers of this factory, see SlicedIndexSearcher.newExecutor
+     */
+    public MessageSearcherFactory(final ExecutorService executor) {
+        this(executor, SlicedIndexSearcher.DEFAULT_MAX_DOCS_PER_SLICE, SlicedIndexSearcher.DEFAULT_MAX_SEGMENTS_PER_SLICE);
+    }
+
+    /**
+     * @param executor executor shared by all searchers of this factory, see SlicedIndexSearcher.newExecutor
+     * @param maxDocsPerSlice see SlicedIndexSearcher
+     * @param maxSegmentsPerSlice see SlicedIndexSearcher
+     */
+    public MessageSearcherFactory(final ExecutorService executor, final int maxDocsPerSlice,
+                                  final int maxSegmentsPerSlice) {
+        this(executor, maxDocsPerSlice, maxSegmentsPerSlice, null);
+    }
+
+    /**
+     * @param executor executor shared by all searchers of this factory, see SlicedIndexSearcher.newExecutor
+     * @param maxDocsPerSlice see SlicedIndexSearcher
+     * @param maxSegmentsPerSlice see SlicedIndexSearcher
+     * @param warmer queries to run on every new searcher before it is returned, null to return it cold
+     */
+    public MessageSearcherFactory(final ExecutorService executor, final int maxDocsPerSlice,
+                                  final int maxSegmentsPerSlice, final SearcherWarmer warmer) {
+        this.executor = executor;
+        this.maxDocsPerSlice = maxDocsPerSlice;
+        this.maxSegmentsPerSlice = maxSegmentsPerSlice;
+        this.warmer = warmer;
+    }
+
+    @Override
+    public IndexSearcher newSearcher(final IndexReader reader, final IndexReader previousReader) throws IOException {
+        final IndexSearcher searcher = new SlicedIndexSearcher(reader, executor, maxDocsPerSlice, maxSegmentsPerSlice);
+        configure(searcher);
+        if (warmer != null) {
+            warmer.warm(searcher);
+        }
+        return searcher;
+    }
+
+    /**
+     * Apply settings of this factory to searcher created elsewhere
+     */
+    public static void configure(final IndexSearcher searcher) {
+        searcher.setQueryCache(MessageFilters.FILTER_CACHE);
+        searcher.setQueryCachingPolicy(MessageFilters.CACHING_POLICY);
+    }
+}
@@ -0,0 +1,124 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near-real-time searchers opened from the indexing writer.
+ * Documents added to SharedIndexWriter become searchable after at most maxStalenessMillis,
+ * without commit and without reopening the whole index: only new segments are opened on refresh.
+ *
+ * Every acquire should be paired with release, usually in finally block.
+ * Reader of acquired searcher stays open until it is released, even if newer one was published
+ */
+public class MessageSearcherManager implements Closeable {
+    public static final long DEFAULT_MAX_STALENESS_MILLIS = 50;
+
+    private final SearcherManager manager;
+    private final ScheduledExecutorService refresher;
+    private final long maxStalenessMillis;
+
+    /**
+     * Searchers with DEFAULT_MAX_STALENESS_MILLIS staleness
+     *
+     * @param writer opened writer, see MessageIndexer.openWriter
+     * @throws IOException
+     */
+    public MessageSearcherManager(final SharedIndexWriter writer) throws IOException {
+        this(writer, DEFAULT_MAX_STALENESS_MILLIS);
+    }
+
+    /**
+     * Searchers created by MessageSearcherFactory
+     *
+     * @param writer opened writer, see MessageIndexer.openWriter
+     * @param maxStalenessMillis how long new documents may stay invisible to searches
+     * @throws IOException
+     */
+    public MessageSearcherManager(final SharedIndexWriter writer, final long maxStalenessMillis) throws IOException {
+        this(writer, maxStalenessMillis, new MessageSearcherFactory());
+    }
+
+    /**
+     * @param writer opened writer, see MessageIndexer.openWriter
+     * @param maxStalenessMillis how long new documents may stay invisible to searches
+     * @param searcherFactory creates IndexSearcher for every refreshed reader
+     * @throws IOException
+     */
+    public MessageSearcherManager(final SharedIndexWriter writer, final long maxStalenessMillis,
+                                  final SearcherFactory searcherFactory) throws IOException {
+        if (maxStalenessMillis <= 0) {
+            throw new IllegalArgumentException("maxStalenessMillis should be positive: " + maxStalenessMillis);
+        }
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.manager = new SearcherManager(writer.getIndexWriter(), true, searcherFactory);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "searcher-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, maxStalenessMillis, maxStalenessMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get current searcher. It should be given back with release
+     *
+     * @throws IOException
+     */
+    public IndexSearcher acquire() throws IOException {
+        return manager.acquire();
+    }
+
+    /**
+     * Give back searcher obtained with acquire
+     *
+     * @throws IOException
+     */
+    public void release(final IndexSearcher searcher) throws IOException {
+        manager.release(searcher);
+    }
+
+    /**
+     * Refresh right now instead of waiting for background thread,
+     * after return everything added before the call is searchable
+     *
+     * @throws IOException
+     */
+    public void maybeRefreshBlocking() throws IOException {
+        manager.maybeRefreshBlocking();
+    }
+
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    /**
+     * Stop background refresh. Searchers that were acquired before stay usable until released
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        refresher.shutdownNow();
+        manager.close();
+    }
+
+    private void refresh() {
+        try {
+            manager.maybeRefresh();
+        } catch (IOException e) {
+            // keep serving previous searcher, next refresh will try again
+        } catch (AlreadyClosedException e) {
+            refresher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.index.MessageIndexer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.EarlyTerminatingSortingCollector;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.util.NumericUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Newest documents matching a query, without scoring and without visiting every match:
+ * <ul>
+ *     <li>segments merged by SortingMergePolicy are already newest first,
+ *     so they are left after enough matches (EarlyTerminatingSortingCollector)</li>
+ *     <li>other segments are restricted to a window of the latest dates. The window starts
+ *     as small as the index size suggests and grows until it has enough matches</li>
+ * </ul>
+ * Total hits of the result is a lower bound of the real number of matches
+ */
+public final class NewestFirst {
+    /**
+     * First window is expected to hold this many times more matches than requested
+     */
+    static final int WINDOW_RESERVE = 2;
+    static final int WINDOW_GROWTH = 4;
+
+    private static final long[] NO_DATES = new long[0];
+    private static final Map<Object, long[]> SEGMENT_DATE_BOUNDS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private NewestFirst() {
+    }
+
+    /**
+     * @param searcher searcher to use
+     * @param query query to execute
+     * @param offset how many newest results to skip
+     * @param limit how many results to return
+     * @return hits ordered by creationDate, newest first
+     * @throws IOException
+     */
+    public static TopDocs search(final IndexSearcher searcher, final Query query,
+                                 final int offset, final int limit) throws IOException {
+        return search(searcher, query, null, offset, limit);
+    }
+
+    /**
+     * Next page after a hit returned before
+     *
+     * @param searcher searcher to use
+     * @param query query to execute
+     * @param after last hit of the previous page, with creationDate in fields
+     * @param limit how many results to return
+     * @return hits ordered by creationDate, newest first
+     * @throws IOException
+     */
+    public static TopDocs searchAfter(final IndexSearcher searcher, final Query query,
+                                      final FieldDoc after, final int limit) throws IOException {
+        return search(searcher, query, after, 0, limit);
+    }
+
+    private static TopDocs search(final IndexSearcher searcher, final Query query, final FieldDoc after,
+                                  final int offset, final int limit) throws IOException {
+        final int numHits = offset + limit;
+        final IndexReader reader = searcher.getIndexReader();
+        final long[] bounds = dateBounds(reader);
+        if (bounds != null) {
+            // nothing after the cursor is newer than its date
+            final long newest = after == null ? bounds[1] : Math.min(bounds[1], (Long) after.fields[0]);
+            final long range = newest - bounds[0];
+            // as if documents were spread evenly over time
+            long window = Math.max(1L, (long) ((double) range * WINDOW_RESERVE * numHits / reader.maxDoc()));
+            while (window < range) {
+                final Query latest = new BooleanQuery.Builder()
+                        .add(query, BooleanClause.Occur.MUST)
+                        .add(MessageFilters.dateRange(newest - window, newest), BooleanClause.Occur.FILTER)
+                        .build();
+                final TopDocs top = collect(searcher, latest, after, offset, limit);
+                // every document out of the window is older than any document in it
+                if (top.scoreDocs.length >= limit) {
+                    return top;
+                }
+                window = window > range / WINDOW_GROWTH ? range : window * WINDOW_GROWTH;
+            }
+        }
+        return collect(searcher, query, after, offset, limit);
+    }
+
+    /**
+     * @return oldest and newest creationDate in the reader or null if it has no dates
+     */
+    static long[] dateBounds(final IndexReader reader) throws IOException {
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (LeafReaderContext context : reader.leaves()) {
+            final long[] segment = segmentDateBounds(context.reader());
+            if (segment != null) {
+                oldest = Math.min(oldest, segment[0]);
+                newest = Math.max(newest, segment[1]);
+            }
+        }
+        return oldest > newest ? null : new long[]{oldest, newest};
+    }
+
+    /**
+     * @return oldest and newest creationDate in the segment or null if it has no dates
+     */
+    static long[] segmentDateBounds(final LeafReader reader) throws IOException {
+        // segments never change, so bounds are looked up in terms only once per segment
+        final Object key = reader.getCoreCacheKey();
+        final long[] cached = SEGMENT_DATE_BOUNDS.get(key);
+        if (cached != null) {
+            return cached == NO_DATES ? null : cached;
+        }
+        final Terms dates = reader.terms("creationDate");
+        final Long oldest = dates == null ? null : NumericUtils.getMinLong(dates);
+        final long[] bounds = oldest == null ? NO_DATES : new long[]{oldest, NumericUtils.getMaxLong(dates)};
+        SEGMENT_DATE_BOUNDS.put(key, bounds);
+        return bounds == NO_DATES ? null : bounds;
+    }
+
+    private static TopDocs collect(final IndexSearcher searcher, final Query query, final FieldDoc after,
+                                   final int offset, final int limit) throws IOException {
+        final int numHits = offset + limit;
+        final TopFieldCollector collector = TopFieldCollector.create(MessageIndexer.NEWEST_FIRST, numHits, after,
+                true, false, false);
+        if (after == null) {
+            searcher.search(query, new EarlyTerminatingSortingCollector(collector, MessageIndexer.NEWEST_FIRST, numHits,
+                    MessageIndexer.NEWEST_FIRST));
+        } else {
+            // hits before the cursor are counted too, so sorted segments can not be left early
+            searcher.search(query, collector);
+        }
+        return collector.topDocs(offset, limit);
+    }
+}
@@ -0,0 +1,375 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Bounded cache of search results with LRU or LFU eviction.
+ * Key is the normalized query (see normalize, Lucene queries compare by structure, so equal queries built twice
+ * match), offset, limit, sort and requested fields.
+ *
+ * Cached results belong to the reader they were found with, entries of different readers are kept apart.
+ * While MessageSearcherManager refreshes, searches on the old and the new reader run side by side, so results
+ * of up to maxGenerations readers are kept. When results of one more reader are put, entries of the least
+ * recently used reader are dropped, lookups alone never drop anything. Thread-safe
+ */
+public class QueryResultCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final int DEFAULT_MAX_GENERATIONS = 2;
+
+    /**
+     * Which entry goes first when the cache is full
+     */
+    public enum Eviction {
+        /**
+         * Least recently used, for traffic that drifts: new trending queries push out the old ones
+         */
+        LRU,
+        /**
+         * Least frequently used, ties go by least recently used. Keeps steady popular queries, such as region
+         * and date filters, when many one-off queries pass through
+         */
+        LFU
+    }
+
+    private final int maxEntries;
+    private final Eviction eviction;
+    private final int maxGenerations;
+    private final Map<CacheKey, Entry> entries = new HashMap<>();
+    // first entry is evicted first
+    private final TreeSet<Entry> evictionOrder;
+    // reader key to its entries, least recently used reader first
+    private final Map<Object, Set<Entry>> generations = new LinkedHashMap<>(4, 0.75f, true);
+    private long tick;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public QueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * LRU cache keeping results of DEFAULT_MAX_GENERATIONS readers
+     *
+     * @param maxEntries how many results to keep, least recently used are evicted first
+     */
+    public QueryResultCache(final int maxEntries) {
+        this(maxEntries, Eviction.LRU, DEFAULT_MAX_GENERATIONS);
+    }
+
+    /**
+     * @param maxEntries how many results to keep, for all readers together
+     * @param eviction which results are evicted first when the cache is full
+     * @param maxGenerations results of how many readers to keep
+     */
+    public QueryResultCache(final int maxEntries, final Eviction eviction, final int maxGenerations) {
+        if (maxEntries < 1 || maxGenerations < 1) {
+            throw new IllegalArgumentException("maxEntries and maxGenerations should be positive: "
+                    + maxEntries + ", " + maxGenerations);
+        }
+        this.maxEntries = maxEntries;
+        this.eviction = eviction;
+        this.maxGenerations = maxGenerations;
+        final Comparator<Entry> byUse = Comparator.comparingLong(entry -> entry.lastUsed);
+        this.evictionOrder = new TreeSet<>(eviction == Eviction.LFU
+                ? Comparator.<Entry>comparingLong(entry -> entry.uses).thenComparing(byUse) : byUse);
+    }
+
+    /**
+     * @param reader reader the search is going to run on
+     * @return cached results or null
+     */
+    public synchronized SearchResults get(final Key key, final IndexReader reader) {
+        final Object readerKey = reader.getCombinedCoreAndDeletesKey();
+        final Entry entry = entries.get(new CacheKey(readerKey, key));
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        generations.get(readerKey); // the reader is used recently
+        evictionOrder.remove(entry);
+        entry.uses++;
+        entry.lastUsed = ++tick;
+        evictionOrder.add(entry);
+        return entry.results;
+    }
+
+    /**
+     * @param reader reader the results were found with
+     */
+    public synchronized void put(final Key key, final IndexReader reader, final SearchResults results) {
+        final CacheKey cacheKey = new CacheKey(readerKey(reader), key);
+        final Entry previous = entries.get(cacheKey);
+        if (previous != null) {
+            evictionOrder.remove(previous);
+            previous.results = results;
+            previous.lastUsed = ++tick;
+            evictionOrder.add(previous);
+            return;
+        }
+        if (entries.size() == maxEntries) {
+            final Entry evicted = evictionOrder.pollFirst();
+            entries.remove(evicted.key);
+            evicted.generation.remove(evicted);
+            evictions++;
+        }
+        final Entry entry = new Entry(cacheKey, generations.get(cacheKey.readerKey), results, ++tick);
+        entries.put(cacheKey, entry);
+        evictionOrder.add(entry);
+        entry.generation.add(entry);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        evictionOrder.clear();
+        generations.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    public int getMaxGenerations() {
+        return maxGenerations;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return entries removed because cache was full
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return how many times results of a reader were dropped because more than maxGenerations readers were used
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized double getHitRate() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryResultCache{" + eviction + ", size=" + entries.size() + ", readers=" + generations.size()
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", invalidations=" + invalidations + "}";
+    }
+
+    // changes with every reopen that has new documents or deletes, registers the reader for its first results
+    private Object readerKey(final IndexReader reader) {
+        final Object key = reader.getCombinedCoreAndDeletesKey();
+        if (generations.get(key) == null) {
+            if (generations.size() == maxGenerations) {
+                final Iterator<Set<Entry>> eldest = generations.values().iterator();
+                final Set<Entry> dropped = eldest.next();
+                eldest.remove();
+                if (!dropped.isEmpty()) {
+                    invalidations++;
+                }
+                for (Entry entry : dropped) {
+                    entries.remove(entry.key);
+                    evictionOrder.remove(entry);
+                }
+            }
+            generations.put(key, new HashSet<>());
+        }
+        return key;
+    }
+
+    /**
+     * Create key of the search
+     *
+     * @param query query to execute
+     * @param limit how many results to return
+     * @param sort sort of the results, null for relevance
+     * @param fields stored fields to load
+     */
+    public static Key key(final Query query, final int limit, final Sort sort, final String... fields) {
+        return key(query, 0, limit, sort, fields);
+    }
+
+    /**
+     * Create key of one page of the search
+     *
+     * @param query query to execute
+     * @param offset how many first results to skip
+     * @param limit how many results to return
+     * @param sort sort of the results, null for relevance
+     * @param fields stored fields to load
+     */
+    public static Key key(final Query query, final int offset, final int limit, final Sort sort, final String... fields) {
+        return new Key(normalize(query), offset, limit, sort, fields);
+    }
+
+    /**
+     * Same query in one form, so that equivalent queries built in another order share an entry.
+     * SHOULD, FILTER and MUST_NOT clauses of boolean queries are sorted, MUST clauses keep their order.
+     * A boolean query of one MUST or SHOULD clause becomes that clause, as BooleanQuery.rewrite does.
+     * Sorting SHOULD clauses only changes the order scores are summed in, so results of an equivalent query
+     * may differ from fresh ones in rounding of scores, never in matches
+     */
+    static Query normalize(final Query query) {
+        if (query instanceof ConstantScoreQuery) {
+            final Query normalized = new ConstantScoreQuery(normalize(((ConstantScoreQuery) query).getQuery()));
+            normalized.setBoost(query.getBoost());
+            return normalized;
+        }
+        if (!(query instanceof BooleanQuery)) {
+            return query;
+        }
+        final BooleanQuery booleanQuery = (BooleanQuery) query;
+        final List<BooleanClause> must = new ArrayList<>();
+        final List<BooleanClause> unordered = new ArrayList<>();
+        for (BooleanClause clause : booleanQuery.clauses()) {
+            final BooleanClause normalized = new BooleanClause(normalize(clause.getQuery()), clause.getOccur());
+            (clause.getOccur() == BooleanClause.Occur.MUST ? must : unordered).add(normalized);
+        }
+        if (must.size() + unordered.size() == 1 && booleanQuery.getMinimumNumberShouldMatch() == 0) {
+            final BooleanClause only = must.isEmpty() ? unordered.get(0) : must.get(0);
+            if (only.getOccur() == BooleanClause.Occur.MUST || only.getOccur() == BooleanClause.Occur.SHOULD) {
+                if (booleanQuery.getBoost() == 1f) {
+                    return only.getQuery();
+                }
+                final Query boosted = only.getQuery().clone();
+                boosted.setBoost(boosted.getBoost() * booleanQuery.getBoost());
+                return boosted;
+            }
+        }
+        unordered.sort(Comparator.comparing((BooleanClause clause) -> clause.getOccur())
+                .thenComparing(clause -> clause.getQuery().toString())
+                .thenComparingInt(clause -> clause.getQuery().hashCode()));
+        final BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .setDisableCoord(booleanQuery.isCoordDisabled())
+                .setMinimumNumberShouldMatch(booleanQuery.getMinimumNumberShouldMatch());
+        for (BooleanClause clause : must) {
+            builder.add(clause);
+        }
+        for (BooleanClause clause : unordered) {
+            builder.add(clause);
+        }
+        final BooleanQuery normalized = builder.build();
+        normalized.setBoost(booleanQuery.getBoost());
+        return normalized;
+    }
+
+    private static final class CacheKey {
+        final Object readerKey;
+        final Key key;
+
+        CacheKey(final Object readerKey, final Key key) {
+            this.readerKey = readerKey;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return readerKey == other.readerKey && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(readerKey) + key.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        final CacheKey key;
+        final Set<Entry> generation; // entries of the same reader
+        SearchResults results;
+        long uses = 1;
+        long lastUsed;
+
+        Entry(final CacheKey key, final Set<Entry> generation, final SearchResults results, final long lastUsed) {
+            this.key = key;
+            this.generation = generation;
+            this.results = results;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    public static final class Key {
+        private final Query query;
+        private final int offset;
+        private final int limit;
+        private final Sort sort;
+        private final String[] fields;
+        private final int hash;
+
+        private Key(final Query query, final int offset, final int limit, final Sort sort, final String[] fields) {
+            this.query = query;
+            this.offset = offset;
+            this.limit = limit;
+            this.sort = sort;
+            this.fields = fields.clone();
+            this.hash = Objects.hash(query, offset, limit, sort, Arrays.hashCode(this.fields));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return offset == other.offset && limit == other.limit && query.equals(other.query) && Objects.equals(sort, other.sort)
+                    && Arrays.equals(fields, other.fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return query + " offset=" + offset + " limit=" + limit + " sort=" + sort + " fields=" + Arrays.toString(fields);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongBitSet;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+/**
+ * Documents in any of the regions, matched by ordinals of the region DocValues instead of postings.
+ * Add it to BooleanQuery as a FILTER clause, like MessageFilters.regions.
+ *
+ * Region names are resolved to ordinals once per segment and kept while the segment is open. When the segment
+ * keeps region sets of its documents (see SegmentFacets) the ordinals become a bitset of matching set ids,
+ * so checking a document is two array reads. Otherwise the document's ordinals are looked up in a bitset
+ * of the wanted ones. Either way only documents that the rest of the query matched are checked
+ */
+public final class RegionFilter extends Query {
+    private static final Segment NONE = new Segment(null, null, null);
+
+    private final BytesRef[] regions; // sorted, no duplicates
+    private final Map<Object, Segment> segments = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * @param regions region names as in tutorial.json, for example "ALMATY_REGION"
+     */
+    public RegionFilter(final String... regions) {
+        final TreeSet<BytesRef> unique = new TreeSet<>();
+        for (String region : regions) {
+            unique.add(new BytesRef(region));
+        }
+        this.regions = unique.toArray(new BytesRef[unique.size()]);
+    }
+
+    @Override
+    public Weight createWeight(final IndexSearcher searcher, final boolean needsScores) throws IOException {
+        return new ConstantScoreWeight(this) {
+            @Override
+            public Scorer scorer(final LeafReaderContext context) throws IOException {
+                final LeafReader reader = context.reader();
+                final Segment segment = resolve(reader);
+                if (segment == NONE) {
+                    return null;
+                }
+                final DocIdSetIterator all = DocIdSetIterator.all(reader.maxDoc());
+                final TwoPhaseIterator inRegions;
+                if (segment.docSets != null) {
+                    final short[] docSets = segment.docSets;
+                    final long[] sets = segment.sets;
+                    inRegions = new TwoPhaseIterator(all) {
+                        @Override
+                        public boolean matches() {
+                            final int set = docSets[approximation.docID()];
+                            return set >= 0 && (sets[set >>> 6] & (1L << set)) != 0;
+                        }
+
+                        @Override
+                        public float matchCost() {
+                            return 2;
+                        }
+                    };
+                } else {
+                    final SortedSetDocValues values = DocValues.getSortedSet(reader, "region");
+                    final LongBitSet ords = segment.ords;
+                    inRegions = new TwoPhaseIterator(all) {
+                        @Override
+                        public boolean matches() {
+                            values.setDocument(approximation.docID());
+                            for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+                                if (ords.get(ord)) {
+                                    return true;
+                                }
+                            }
+                            return false;
+                        }
+
+                        @Override
+                        public float matchCost() {
+                            return 10;
+                        }
+                    };
+                }
+                return new ConstantScoreScorer(this, score(), inRegions);
+            }
+        };
+    }
+
+    // ordinals of the regions in the segment, resolved once per segment
+    private Segment resolve(final LeafReader reader) throws IOException {
+        final Object key = reader.getCoreCacheKey();
+        Segment segment = segments.get(key);
+        if (segment == null) {
+            segment = Segment.build(reader, regions);
+            segments.put(key, segment);
+        }
+        return segment;
+    }
+
+    @Override
+    public String toString(final String field) {
+        final StringJoiner names = new StringJoiner(" ", "region:{", "}");
+        for (BytesRef region : regions) {
+            names.add(region.utf8ToString());
+        }
+        return names.toString();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return super.equals(obj) && Arrays.equals(regions, ((RegionFilter) obj).regions);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Arrays.hashCode(regions);
+    }
+
+    private static final class Segment {
+        final short[] docSets; // document to region set id, see SegmentFacets
+        final long[] sets; // bits of matching region set ids
+        final LongBitSet ords; // wanted ordinals when the segment keeps no region sets
+
+        private Segment(final short[] docSets, final long[] sets, final LongBitSet ords) {
+            this.docSets = docSets;
+            this.sets = sets;
+            this.ords = ords;
+        }
+
+        private static Segment build(final LeafReader reader, final BytesRef[] regions) throws IOException {
+            final SortedSetDocValues values = DocValues.getSortedSet(reader, "region");
+            final LongBitSet ords = new LongBitSet(values.getValueCount());
+            boolean found = false;
+            for (BytesRef region : regions) {
+                final long ord = values.lookupTerm(region);
+                if (ord >= 0) {
+                    ords.set(ord);
+                    found = true;
+                }
+            }
+            if (!found) {
+                return NONE;
+            }
+            final SegmentFacets facets = SegmentFacets.of(reader);
+            if (facets.getDocRegionSets() == null) {
+                return new Segment(null, null, ords);
+            }
+            // region sets are kept only for segments with at most 64 regions, so all ordinals are in one word
+            return new Segment(facets.getDocRegionSets(), facets.setsWithAny(ords.getBits()[0]), null);
+        }
+    }
+}
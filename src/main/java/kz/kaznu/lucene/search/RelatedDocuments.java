@@ -0,0 +1,244 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.queries.mlt.MoreLikeThis;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Documents similar to a document of the index ("related news"), found with MoreLikeThis.
+ * Terms of the source document come from its term vectors, so its text is not analyzed again,
+ * and the query of its most interesting terms is kept in a bounded LRU cache.
+ *
+ * Cache key is the segment and document number in it, so entries survive near-real-time refresh
+ * as long as the segment is not merged away. Entries of a segment are dropped when it is closed.
+ * Term weights of a cached query are those of the reader it was built with. Thread-safe
+ */
+public class RelatedDocuments {
+    public static final String[] DEFAULT_FIELDS = {"title", "body"};
+    /**
+     * News are short, a word is interesting even if it appears once
+     */
+    public static final int DEFAULT_MIN_TERM_FREQ = 1;
+    public static final int DEFAULT_MIN_DOC_FREQ = 2;
+    /**
+     * Words in more than this percent of documents are not interesting and are the slowest to search
+     */
+    public static final int DEFAULT_MAX_DOC_FREQ_PCT = 2;
+    /**
+     * Words of less documents are never too common, otherwise small indexes would have no interesting words
+     */
+    static final int MAX_DOC_FREQ_FLOOR = 100;
+    public static final int DEFAULT_MAX_QUERY_TERMS = 20;
+    /**
+     * Related documents share at least this percent of the interesting words. Documents with one
+     * common word are never good enough to show, but they are most of the matches, so leaving them out
+     * lets BooleanQuery skip over postings instead of scoring each of them
+     */
+    public static final int DEFAULT_MIN_SHOULD_MATCH_PCT = 30;
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final String[] fields;
+    private final int minTermFreq;
+    private final int minDocFreq;
+    private final int maxDocFreqPct;
+    private final int maxQueryTerms;
+    private final int minShouldMatchPct;
+    private final int cacheSize;
+    private final Map<Key, Query> queries;
+    private final Set<Object> segments = new HashSet<>(); // core keys with a listener that purges their entries
+
+    private long hits;
+    private long misses;
+
+    public RelatedDocuments() {
+        this(DEFAULT_FIELDS, DEFAULT_MIN_TERM_FREQ, DEFAULT_MIN_DOC_FREQ, DEFAULT_MAX_DOC_FREQ_PCT,
+                DEFAULT_MAX_QUERY_TERMS, DEFAULT_MIN_SHOULD_MATCH_PCT, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param fields fields to compare, they should have term vectors
+     * @param minTermFreq words that appear less often in the source document are ignored
+     * @param minDocFreq words that appear in less documents are ignored
+     * @param maxDocFreqPct words that appear in more percent of documents are ignored
+     * @param maxQueryTerms how many most interesting words to search
+     * @param minShouldMatchPct how many percent of the interesting words a related document should have
+     * @param cacheSize how many queries of source documents to keep
+     */
+    public RelatedDocuments(final String[] fields, final int minTermFreq, final int minDocFreq,
+                            final int maxDocFreqPct, final int maxQueryTerms, final int minShouldMatchPct,
+                            final int cacheSize) {
+        if (fields.length == 0 || maxQueryTerms < 1 || cacheSize < 1) {
+            throw new IllegalArgumentException("fields, maxQueryTerms and cacheSize should not be empty: "
+                    + Arrays.toString(fields) + ", " + maxQueryTerms + ", " + cacheSize);
+        }
+        if (minShouldMatchPct < 0 || minShouldMatchPct > 100) {
+            throw new IllegalArgumentException("minShouldMatchPct should be between 0 and 100: " + minShouldMatchPct);
+        }
+        this.fields = fields.clone();
+        this.minTermFreq = minTermFreq;
+        this.minDocFreq = minDocFreq;
+        this.maxDocFreqPct = maxDocFreqPct;
+        this.maxQueryTerms = maxQueryTerms;
+        this.minShouldMatchPct = minShouldMatchPct;
+        this.cacheSize = cacheSize;
+        this.queries = new LinkedHashMap<Key, Query>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Query> eldest) {
+                return size() > RelatedDocuments.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @param searcher searcher to use
+     * @param docId document to find related ones for, id in the reader of the searcher
+     * @param limit how many results to return
+     * @return most similar documents, without the source document
+     * @throws IOException
+     */
+    public TopDocs search(final IndexSearcher searcher, final int docId, final int limit) throws IOException {
+        final TopDocs top = searcher.search(likeQuery(searcher.getIndexReader(), docId), limit + 1);
+        final ScoreDoc[] related = new ScoreDoc[Math.min(limit, top.scoreDocs.length)];
+        int count = 0;
+        boolean foundSource = false;
+        for (ScoreDoc scoreDoc : top.scoreDocs) {
+            if (scoreDoc.doc == docId) {
+                foundSource = true;
+            } else if (count < related.length) {
+                related[count++] = scoreDoc;
+            }
+        }
+        final float maxScore = count == 0 ? Float.NaN : related[0].score;
+        return new TopDocs(foundSource ? top.totalHits - 1 : top.totalHits,
+                count == related.length ? related : Arrays.copyOf(related, count), maxScore);
+    }
+
+    /**
+     * Query of the most interesting terms of the document, taken from the cache if it was built before
+     * @param reader reader the document belongs to
+     * @param docId document id in the reader
+     * @throws IOException
+     */
+    public Query likeQuery(final IndexReader reader, final int docId) throws IOException {
+        final LeafReaderContext leaf = reader.leaves().get(ReaderUtil.subIndex(docId, reader.leaves()));
+        final Object segment = leaf.reader().getCoreCacheKey();
+        final Key key = new Key(segment, docId - leaf.docBase);
+        synchronized (this) {
+            final Query cached = queries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        final Query query = withMinShouldMatch((BooleanQuery) newMoreLikeThis(reader).like(docId));
+        synchronized (this) {
+            queries.put(key, query);
+            if (segments.add(segment)) {
+                leaf.reader().addCoreClosedListener(this::purge);
+            }
+        }
+        return query;
+    }
+
+    // queries of a closed segment are never asked for again
+    private synchronized void purge(final Object segment) {
+        segments.remove(segment);
+        queries.keySet().removeIf(key -> key.segment == segment);
+    }
+
+    private BooleanQuery withMinShouldMatch(final BooleanQuery interesting) {
+        final List<BooleanClause> clauses = interesting.clauses();
+        final BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (BooleanClause clause : clauses) {
+            query.add(clause);
+        }
+        // at least one word, a document with none of them is not related
+        query.setMinimumNumberShouldMatch(Math.max(1, clauses.size() * minShouldMatchPct / 100));
+        return query.build();
+    }
+
+    /**
+     * @return the most interesting terms of the document, for debugging
+     */
+    public String[] interestingTerms(final IndexReader reader, final int docId) throws IOException {
+        return newMoreLikeThis(reader).retrieveInterestingTerms(docId);
+    }
+
+    private MoreLikeThis newMoreLikeThis(final IndexReader reader) {
+        final MoreLikeThis mlt = new MoreLikeThis(reader);
+        mlt.setFieldNames(fields);
+        // only used for fields without term vectors
+        mlt.setAnalyzer(MessageAnalysis.queryAnalyzer());
+        mlt.setMinTermFreq(minTermFreq);
+        mlt.setMinDocFreq(minDocFreq);
+        mlt.setMaxDocFreq(Math.max(MAX_DOC_FREQ_FLOOR, (int) ((long) maxDocFreqPct * reader.numDocs() / 100)));
+        mlt.setMaxQueryTerms(maxQueryTerms);
+        mlt.setBoost(true);
+        return mlt;
+    }
+
+    public synchronized int size() {
+        return queries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        queries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RelatedDocuments{size=" + queries.size() + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+
+    private static final class Key {
+        private final Object segment;
+        private final int doc;
+
+        Key(final Object segment, final int doc) {
+            this.segment = segment;
+            this.doc = doc;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return doc == other.doc && segment == other.segment;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(segment) + doc;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Position after the last hit of a page, pass it to get the next page.
+ * Keeps the sort value of the hit (score or creationDate) and its document id to break ties,
+ * so every page costs the same however deep it is.
+ *
+ * Opaque for callers: send toToken() to the client and read it back with fromToken.
+ * Document ids are the ones of the searcher that returned the page, after a refresh
+ * pages may repeat or skip documents that were merged
+ */
+public final class SearchCursor implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final byte FORMAT = 1;
+
+    /**
+     * Order of results the cursor belongs to
+     */
+    public enum Order {
+        RELEVANCE, NEWEST_FIRST
+    }
+
+    private final Order order;
+    private final int doc;
+    private final float score;
+    private final long creationDate;
+
+    private SearchCursor(final Order order, final int doc, final float score, final long creationDate) {
+        this.order = order;
+        this.doc = doc;
+        this.score = score;
+        this.creationDate = creationDate;
+    }
+
+    /**
+     * @param last last hit of the page, FieldDoc with creationDate for NEWEST_FIRST
+     */
+    public static SearchCursor after(final Order order, final ScoreDoc last) {
+        if (order == Order.NEWEST_FIRST) {
+            return new SearchCursor(order, last.doc, Float.NaN, (Long) ((FieldDoc) last).fields[0]);
+        }
+        return new SearchCursor(order, last.doc, last.score, 0L);
+    }
+
+    /**
+     * @return hit to pass to IndexSearcher.searchAfter or TopFieldCollector
+     */
+    public ScoreDoc toScoreDoc() {
+        if (order == Order.NEWEST_FIRST) {
+            return new FieldDoc(doc, Float.NaN, new Object[]{creationDate});
+        }
+        return new ScoreDoc(doc, score);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * @return URL safe string with the cursor
+     */
+    public String toToken() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(24);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeByte(order.ordinal());
+            out.writeInt(doc);
+            if (order == Order.NEWEST_FIRST) {
+                out.writeLong(creationDate);
+            } else {
+                out.writeFloat(score);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @param token string returned by toToken
+     * @throws IllegalArgumentException if token is not a cursor
+     */
+    public static SearchCursor fromToken(final String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != FORMAT) {
+                throw new IllegalArgumentException("Unknown cursor format: " + token);
+            }
+            final Order order = Order.values()[in.readByte()];
+            final int doc = in.readInt();
+            if (order == Order.NEWEST_FIRST) {
+                return new SearchCursor(order, doc, Float.NaN, in.readLong());
+            }
+            return new SearchCursor(order, doc, in.readFloat(), 0L);
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Broken cursor: " + token, e);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchCursor)) {
+            return false;
+        }
+        final SearchCursor other = (SearchCursor) o;
+        return order == other.order && doc == other.doc && creationDate == other.creationDate
+                && Float.compare(score, other.score) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * order.hashCode() + doc) + Float.hashCode(score)) + Long.hashCode(creationDate);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCursor{" + toToken() + "}";
+    }
+}
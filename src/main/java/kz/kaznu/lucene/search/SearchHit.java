@@ -0,0 +1,47 @@
+package kz.kaznu.lucene.search;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One found document: its id, score and stored fields that were requested
+ */
+public class SearchHit {
+    private final int docId;
+    private final float score;
+    private final Map<String, String> fields;
+
+    public SearchHit(final int docId, final float score, final Map<String, String> fields) {
+        this.docId = docId;
+        this.score = score;
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * @return Lucene document id, valid only for the reader the search was done on
+     */
+    public int getDocId() {
+        return docId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * @param field name of the stored field, for example "title"
+     * @return value of the field or null if it was not requested or document does not have it
+     */
+    public String get(final String field) {
+        return fields.get(field);
+    }
+
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit{docId=" + docId + ", score=" + score + ", fields=" + fields + "}";
+    }
+}
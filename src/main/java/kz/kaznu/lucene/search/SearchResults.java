@@ -0,0 +1,72 @@
+package kz.kaznu.lucene.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hits of one search in order of relevance and total number of matched documents
+ */
+public class SearchResults {
+    private final int totalHits;
+    private final List<SearchHit> hits;
+    private final SearchCursor nextCursor;
+    private final boolean timedOut;
+
+    public SearchResults(final int totalHits, final List<SearchHit> hits) {
+        this(totalHits, hits, null);
+    }
+
+    /**
+     * @param nextCursor position after the last hit, null if there are no more pages
+     */
+    public SearchResults(final int totalHits, final List<SearchHit> hits, final SearchCursor nextCursor) {
+        this(totalHits, hits, nextCursor, false);
+    }
+
+    /**
+     * @param nextCursor position after the last hit, null if there are no more pages
+     * @param timedOut true if search was stopped before all documents were visited
+     */
+    public SearchResults(final int totalHits, final List<SearchHit> hits, final SearchCursor nextCursor,
+                         final boolean timedOut) {
+        this.totalHits = totalHits;
+        this.hits = Collections.unmodifiableList(hits);
+        this.nextCursor = nextCursor;
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * @return how many documents matched the query, can be more than number of returned hits
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * @return cursor to request the next page with, null if this is the last page
+     */
+    public SearchCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return true if search ran out of time, hits are the best found so far and total hits is a lower bound
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public boolean isEmpty() {
+        return hits.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResults{totalHits=" + totalHits + ", hits=" + hits + ", nextCursor=" + nextCursor
+                + (timedOut ? ", timedOut" : "") + "}";
+    }
+}
@@ -0,0 +1,128 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays a set of queries on a new searcher before it is published, see MessageSearcherFactory.
+ * First queries on a freshly opened reader load terms index, postings and stored fields from disk
+ * and run through not yet compiled code, so they are many times slower than the same queries later.
+ * The replay set should look like real traffic, for example queries logged on the previous run
+ */
+public class SearcherWarmer {
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int DEFAULT_ROUNDS = 1;
+    /**
+     * Fields searched by queries of a query log, the same as BasicSearchExamples.multiFieldQuery
+     */
+    static final String[] QUERY_FIELDS = {"body", "title"};
+    private static final String[] LOADED_FIELDS = {"title", "body", "region", "creationDate"};
+
+    private final List<Query> queries;
+    private final int limit;
+    private final int rounds;
+    private final int skippedQueries;
+
+    private volatile long lastWarmupMillis;
+
+    public SearcherWarmer(final List<Query> queries) {
+        this(queries, DEFAULT_LIMIT, DEFAULT_ROUNDS);
+    }
+
+    /**
+     * @param queries queries to replay, in order
+     * @param limit how many hits of every query to find and load stored fields of
+     * @param rounds how many times to replay the whole set
+     */
+    public SearcherWarmer(final List<Query> queries, final int limit, final int rounds) {
+        this(queries, limit, rounds, 0);
+    }
+
+    private SearcherWarmer(final List<Query> queries, final int limit, final int rounds, final int skippedQueries) {
+        if (limit < 1 || rounds < 1) {
+            throw new IllegalArgumentException("limit and rounds should be positive: " + limit + ", " + rounds);
+        }
+        this.queries = Collections.unmodifiableList(new ArrayList<>(queries));
+        this.limit = limit;
+        this.rounds = rounds;
+        this.skippedQueries = skippedQueries;
+    }
+
+    /**
+     * Queries from a query log, one query in QueryParser syntax per line, searching body and title.
+     * Empty lines and lines that could not be parsed are skipped and counted in getSkippedQueries
+     *
+     * @param queryLog UTF-8 text file
+     * @param limit see SearcherWarmer(List, int, int)
+     * @param rounds see SearcherWarmer(List, int, int)
+     * @throws IOException
+     */
+    public static SearcherWarmer fromQueryLog(final Path queryLog, final int limit, final int rounds) throws IOException {
+        final List<Query> queries = new ArrayList<>();
+        int skipped = 0;
+        for (String line : Files.readAllLines(queryLog, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                queries.add(MessageAnalysis.parse(QUERY_FIELDS, line));
+            } catch (ParseException e) {
+                skipped++;
+            }
+        }
+        return new SearcherWarmer(queries, limit, rounds, skipped);
+    }
+
+    /**
+     * Run all queries on the searcher and load stored fields of their hits
+     *
+     * @return how long it took in milliseconds
+     * @throws IOException
+     */
+    public long warm(final IndexSearcher searcher) throws IOException {
+        final long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (Query query : queries) {
+                final TopDocs top = searcher.search(query, limit);
+                HitLoader.load(searcher.getIndexReader(), top.scoreDocs, LOADED_FIELDS);
+            }
+        }
+        lastWarmupMillis = (System.nanoTime() - start) / 1_000_000;
+        return lastWarmupMillis;
+    }
+
+    public List<Query> getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return how many lines of the query log could not be parsed
+     */
+    public int getSkippedQueries() {
+        return skippedQueries;
+    }
+
+    /**
+     * @return duration of the latest warm call in milliseconds, 0 before the first one
+     */
+    public long getLastWarmupMillis() {
+        return lastWarmupMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SearcherWarmer{queries=" + queries.size() + ", limit=" + limit + ", rounds=" + rounds
+                + ", skippedQueries=" + skippedQueries + ", lastWarmupMillis=" + lastWarmupMillis + "}";
+    }
+}
@@ -0,0 +1,197 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Facet values of one segment decoded from DocValues into arrays, so that counting a matched
+ * document is two array reads. Built on the first faceted search over the segment and kept
+ * while the segment is open: regions take 2 bytes per document, every date interval 4 bytes more.
+ *
+ * Regions are stored as id of the document's set of regions. Segments with more than 64 regions
+ * or too many different sets keep no array and are counted from DocValues
+ */
+final class SegmentFacets {
+    private static final Map<Object, SegmentFacets> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final short NONE = -1;
+
+    private final String[] regionNames; // by ordinal
+    private final long[] regionSets; // set id to bits of region ordinals
+    private final short[] docRegionSets; // document to set id, null if regions did not fit
+    private final Map<String, DocBuckets> dates = new HashMap<>(); // guarded by this
+
+    private SegmentFacets(final String[] regionNames, final long[] regionSets, final short[] docRegionSets) {
+        this.regionNames = regionNames;
+        this.regionSets = regionSets;
+        this.docRegionSets = docRegionSets;
+    }
+
+    /**
+     * @return facet values of the segment, built once per segment
+     */
+    static SegmentFacets of(final LeafReader reader) throws IOException {
+        final Object key = reader.getCoreCacheKey();
+        SegmentFacets facets = CACHE.get(key);
+        if (facets == null) {
+            facets = build(reader);
+            CACHE.put(key, facets);
+        }
+        return facets;
+    }
+
+    private static SegmentFacets build(final LeafReader reader) throws IOException {
+        final SortedSetDocValues regions = DocValues.getSortedSet(reader, "region");
+        final String[] names = new String[(int) regions.getValueCount()];
+        for (int ord = 0; ord < names.length; ord++) {
+            names[ord] = regions.lookupOrd(ord).utf8ToString();
+        }
+        if (names.length > Long.SIZE) {
+            return new SegmentFacets(names, null, null);
+        }
+
+        final Map<Long, Short> setIds = new HashMap<>();
+        long[] sets = new long[8];
+        final short[] docSets = new short[reader.maxDoc()];
+        for (int doc = 0; doc < docSets.length; doc++) {
+            regions.setDocument(doc);
+            long set = 0;
+            for (long ord = regions.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = regions.nextOrd()) {
+                set |= 1L << ord;
+            }
+            if (set == 0) {
+                docSets[doc] = NONE;
+                continue;
+            }
+            Short id = setIds.get(set);
+            if (id == null) {
+                if (setIds.size() == Short.MAX_VALUE) {
+                    return new SegmentFacets(names, null, null);
+                }
+                id = (short) setIds.size();
+                setIds.put(set, id);
+                if (id == sets.length) {
+                    sets = Arrays.copyOf(sets, sets.length * 2);
+                }
+                sets[id] = set;
+            }
+            docSets[doc] = id;
+        }
+        return new SegmentFacets(names, Arrays.copyOf(sets, setIds.size()), docSets);
+    }
+
+    String regionName(final int ord) {
+        return regionNames[ord];
+    }
+
+    int regionCount() {
+        return regionNames.length;
+    }
+
+    /**
+     * @return document to region set id, -1 for documents without regions. Null if regions did not fit
+     */
+    short[] getDocRegionSets() {
+        return docRegionSets;
+    }
+
+    int regionSetCount() {
+        return regionSets == null ? 0 : regionSets.length;
+    }
+
+    /**
+     * @param regions bits of region ordinals
+     * @return bits of the ids of region sets that have any of the regions
+     */
+    long[] setsWithAny(final long regions) {
+        final long[] sets = new long[(regionSets.length + Long.SIZE - 1) / Long.SIZE];
+        for (int set = 0; set < regionSets.length; set++) {
+            if ((regionSets[set] & regions) != 0) {
+                sets[set >>> 6] |= 1L << set;
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * Add counts of region sets to counts of regions
+     */
+    void addSetCounts(final int[] setCounts, final int[] regionCounts) {
+        for (int set = 0; set < setCounts.length; set++) {
+            if (setCounts[set] == 0) {
+                continue;
+            }
+            for (long bits = regionSets[set]; bits != 0; bits &= bits - 1) {
+                regionCounts[Long.numberOfTrailingZeros(bits)] += setCounts[set];
+            }
+        }
+    }
+
+    /**
+     * @return date bucket of every document of the segment
+     */
+    DocBuckets dates(final LeafReader reader, final DateInterval interval, final ZoneId zone) throws IOException {
+        final String key = interval + " " + zone.getId();
+        synchronized (this) {
+            final DocBuckets cached = dates.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final DocBuckets built = DocBuckets.build(reader, interval, zone);
+        synchronized (this) {
+            dates.put(key, built);
+        }
+        return built;
+    }
+
+    static final class DocBuckets {
+        final DateBuckets buckets;
+        final int[] docBuckets; // buckets.size() for documents in no bucket
+
+        private DocBuckets(final DateBuckets buckets, final int[] docBuckets) {
+            this.buckets = buckets;
+            this.docBuckets = docBuckets;
+        }
+
+        /**
+         * Buckets span dates of the segment's documents except unparsed ones, which would stretch
+         * them back to 1970. Unparsed dates, missing dates and dates older than DateBuckets.MAX_BUCKETS
+         * go to the overflow bucket
+         */
+        private static DocBuckets build(final LeafReader reader, final DateInterval interval,
+                                        final ZoneId zone) throws IOException {
+            final NumericDocValues values = DocValues.getNumeric(reader, "creationDate");
+            final Bits hasDate = DocValues.getDocsWithField(reader, "creationDate");
+            long oldest = Long.MAX_VALUE;
+            long newest = Long.MIN_VALUE;
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (hasDate.get(doc) && values.get(doc) != MessageToDocument.UNPARSED_DATE) {
+                    oldest = Math.min(oldest, values.get(doc));
+                    newest = Math.max(newest, values.get(doc));
+                }
+            }
+            final DateBuckets buckets = oldest > newest ? new DateBuckets(interval, zone, 0, 0)
+                    : new DateBuckets(interval, zone, oldest, newest);
+            final int overflow = buckets.size();
+            final int[] docBuckets = new int[reader.maxDoc()];
+            for (int doc = 0; doc < docBuckets.length; doc++) {
+                final int bucket = hasDate.get(doc) && values.get(doc) != MessageToDocument.UNPARSED_DATE
+                        ? buckets.indexOf(values.get(doc)) : -1;
+                docBuckets[doc] = bucket >= 0 ? bucket : overflow;
+            }
+            return new DocBuckets(buckets, docBuckets);
+        }
+    }
+}
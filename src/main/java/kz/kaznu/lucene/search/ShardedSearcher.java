@@ -0,0 +1,290 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.ShardedIndexer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scatter-gather search over shards of ShardedIndexer: the query runs on every shard in parallel,
+ * top hits of the shards are merged with TopDocs.merge. Shards whose creationDate range can not match
+ * a date filter of the query (NumericRangeQuery on creationDate, alone or as MUST/FILTER clause) are skipped,
+ * as well as empty shards.
+ *
+ * Relevance scores are computed with term statistics of each shard, with routing by id hash the shards
+ * are alike and scores stay comparable. Document ids of hits are numbered as in a MultiReader over the shards
+ * in order of names. Readers are fixed, open a new searcher to see new documents
+ */
+public class ShardedSearcher implements Closeable {
+    private static final long[] ALL_DATES = {Long.MIN_VALUE, Long.MAX_VALUE};
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService executor;
+    private final LongAdder searchedShards = new LongAdder();
+    private final LongAdder skippedShards = new LongAdder();
+
+    /**
+     * @param readers readers of the shards by shard name, they are closed with this searcher
+     * @param executor executor to search shards in parallel on, null to search them one by one in the calling thread
+     * @throws IOException
+     */
+    public ShardedSearcher(final Map<String, IndexReader> readers, final ExecutorService executor) throws IOException {
+        int docBase = 0;
+        for (Map.Entry<String, IndexReader> reader : readers.entrySet()) {
+            shards.add(new Shard(reader.getKey(), reader.getValue(), docBase));
+            docBase += reader.getValue().maxDoc();
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Open readers of all shards that have an index
+     *
+     * @param indexer sharded index to search
+     * @param executor executor to search shards in parallel on, null to search them one by one in the calling thread
+     * @return searcher that closes the readers when it is closed
+     * @throws IOException
+     */
+    public static ShardedSearcher open(final ShardedIndexer indexer, final ExecutorService executor) throws IOException {
+        final Map<String, IndexReader> readers = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, MessageIndexer> shard : indexer.getShardsByName().entrySet()) {
+                final boolean exists;
+                try (Directory dir = indexer.getDirectoryConfig().open(
+                        Paths.get(shard.getValue().getPathToIndexFolder()))) {
+                    exists = DirectoryReader.indexExists(dir);
+                }
+                if (exists) {
+                    readers.put(shard.getKey(), shard.getValue().readIndex());
+                }
+            }
+            return new ShardedSearcher(readers, executor);
+        } catch (IOException | RuntimeException e) {
+            for (IndexReader reader : readers.values()) {
+                reader.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Hits in order of relevance
+     *
+     * @param query query to execute
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see BasicSearchExamples.DEFAULT_FIELDS
+     * @throws IOException
+     */
+    public SearchResults search(final Query query, final int limit, final String... fields) throws IOException {
+        checkLimit(limit);
+        final TopDocs[] perShard = scatter(query, shard -> shard.searcher.search(query, limit),
+                new TopDocs(0, new ScoreDoc[0], Float.NaN), new TopDocs[shards.size()]);
+        return gather(TopDocs.merge(limit, perShard), fields);
+    }
+
+    /**
+     * Newest hits first, every shard is searched as in NewestFirst
+     *
+     * @param query query to execute
+     * @param limit how many results to return
+     * @param fields stored fields to load for every hit, see BasicSearchExamples.DEFAULT_FIELDS
+     * @throws IOException
+     */
+    public SearchResults searchNewest(final Query query, final int limit, final String... fields) throws IOException {
+        checkLimit(limit);
+        final TopFieldDocs[] perShard = scatter(query,
+                shard -> (TopFieldDocs) NewestFirst.search(shard.searcher, query, 0, limit),
+                new TopFieldDocs(0, new ScoreDoc[0], MessageIndexer.NEWEST_FIRST.getSort(), Float.NaN),
+                new TopFieldDocs[shards.size()]);
+        return gather(TopDocs.merge(MessageIndexer.NEWEST_FIRST, limit, perShard), fields);
+    }
+
+    /**
+     * @return names of the shards in the order their document ids are numbered
+     */
+    public List<String> getShardNames() {
+        final List<String> names = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            names.add(shard.name);
+        }
+        return names;
+    }
+
+    /**
+     * @return how many times a shard was searched
+     */
+    public long getSearchedShards() {
+        return searchedShards.sum();
+    }
+
+    /**
+     * @return how many times a shard was skipped because its dates could not match the query
+     */
+    public long getSkippedShards() {
+        return skippedShards.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.reader.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return smallest and largest creationDate the query can match, both inclusive
+     */
+    static long[] dateBounds(final Query query) {
+        if (query instanceof NumericRangeQuery && "creationDate".equals(((NumericRangeQuery<?>) query).getField())) {
+            final NumericRangeQuery<?> range = (NumericRangeQuery<?>) query;
+            final long from = range.getMin() == null ? Long.MIN_VALUE
+                    : range.getMin().longValue() + (range.includesMin() ? 0 : 1);
+            final long to = range.getMax() == null ? Long.MAX_VALUE
+                    : range.getMax().longValue() - (range.includesMax() ? 0 : 1);
+            return new long[]{from, to};
+        }
+        if (query instanceof BooleanQuery) {
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+                if (clause.isRequired()) {
+                    final long[] bounds = dateBounds(clause.getQuery());
+                    from = Math.max(from, bounds[0]);
+                    to = Math.min(to, bounds[1]);
+                }
+            }
+            return new long[]{from, to};
+        }
+        return ALL_DATES;
+    }
+
+    // empty is used for skipped shards, so hits keep shardIndex of the shard they come from
+    private <T extends TopDocs> T[] scatter(final Query query, final ShardSearch<T> search, final T empty,
+                                            final T[] perShard) throws IOException {
+        final long[] bounds = dateBounds(query);
+        final List<Future<T>> futures = new ArrayList<>(Collections.nCopies(shards.size(), null));
+        for (int i = 0; i < shards.size(); i++) {
+            final Shard shard = shards.get(i);
+            if (!shard.mayMatch(bounds)) {
+                skippedShards.increment();
+                perShard[i] = empty;
+                continue;
+            }
+            searchedShards.increment();
+            if (executor == null) {
+                perShard[i] = search.search(shard);
+            } else {
+                futures.set(i, executor.submit((Callable<T>) () -> search.search(shard)));
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            final Future<T> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            try {
+                perShard[i] = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while searching shards", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Search of shard " + shards.get(i).name + " failed", e.getCause());
+            }
+        }
+        return perShard;
+    }
+
+    // loads stored fields of merged hits from their shards
+    private SearchResults gather(final TopDocs merged, final String[] fields) throws IOException {
+        final SearchHit[] hits = new SearchHit[merged.scoreDocs.length];
+        for (int s = 0; s < shards.size(); s++) {
+            final List<Integer> positions = new ArrayList<>();
+            for (int i = 0; i < merged.scoreDocs.length; i++) {
+                if (merged.scoreDocs[i].shardIndex == s) {
+                    positions.add(i);
+                }
+            }
+            if (positions.isEmpty()) {
+                continue;
+            }
+            final ScoreDoc[] shardHits = new ScoreDoc[positions.size()];
+            for (int i = 0; i < shardHits.length; i++) {
+                shardHits[i] = merged.scoreDocs[positions.get(i)];
+            }
+            final Shard shard = shards.get(s);
+            final List<SearchHit> loaded = HitLoader.load(shard.reader, shardHits, fields);
+            for (int i = 0; i < shardHits.length; i++) {
+                final SearchHit hit = loaded.get(i);
+                hits[positions.get(i)] = new SearchHit(shard.docBase + hit.getDocId(), hit.getScore(), hit.getFields());
+            }
+        }
+        return new SearchResults(merged.totalHits, Arrays.asList(hits));
+    }
+
+    private static void checkLimit(final int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit should be positive: " + limit);
+        }
+    }
+
+    private interface ShardSearch<T extends TopDocs> {
+        T search(Shard shard) throws IOException;
+    }
+
+    private static final class Shard {
+        private final String name;
+        private final IndexReader reader;
+        private final IndexSearcher searcher;
+        private final int docBase;
+        // oldest and newest creationDate, null if the shard is empty
+        private final long[] dates;
+
+        private Shard(final String name, final IndexReader reader, final int docBase) throws IOException {
+            this.name = name;
+            this.reader = reader;
+            this.searcher = new IndexSearcher(reader);
+            MessageSearcherFactory.configure(searcher);
+            this.docBase = docBase;
+            this.dates = NewestFirst.dateBounds(reader);
+        }
+
+        private boolean mayMatch(final long[] bounds) {
+            return dates != null && dates[0] <= bounds[1] && dates[1] >= bounds[0];
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searcher that runs one query over several groups of segments (slices) in parallel on a shared executor.
+ * IndexSearcher makes a slice of every segment, so many tiny segments cost more in task switching
+ * than they gain. Here neighbouring segments are packed together until a slice has maxDocsPerSlice documents
+ * or maxSegmentsPerSlice segments. Slices keep segments in docBase order, so hits of equal score are merged
+ * in doc id order, as in the calling thread, and searchAfter pages the same way with and without executor.
+ *
+ * Parallelism helps heavy queries (fuzzy, more like this) of few concurrent users.
+ * Under full load every core is already busy with other queries and slices only add overhead,
+ * so the executor should be bounded and shared by all searchers, see newExecutor
+ */
+public class SlicedIndexSearcher extends IndexSearcher {
+    public static final int DEFAULT_MAX_DOCS_PER_SLICE = 250_000;
+    public static final int DEFAULT_MAX_SEGMENTS_PER_SLICE = 5;
+    public static final int DEFAULT_QUEUED_SLICES_PER_THREAD = 8;
+
+    private final ExecutorService executor;
+    private final int maxDocsPerSlice;
+    private final int maxSegmentsPerSlice;
+    private final List<List<LeafReaderContext>> slices; // null without executor
+
+    /**
+     * @param reader reader to search
+     * @param executor executor to run slices on, null to search in the calling thread
+     */
+    public SlicedIndexSearcher(final IndexReader reader, final ExecutorService executor) {
+        this(reader, executor, DEFAULT_MAX_DOCS_PER_SLICE, DEFAULT_MAX_SEGMENTS_PER_SLICE);
+    }
+
+    /**
+     * @param reader reader to search
+     * @param executor executor to run slices on, null to search in the calling thread
+     * @param maxDocsPerSlice segments are added to a slice until it has this many documents
+     * @param maxSegmentsPerSlice most segments in one slice
+     */
+    public SlicedIndexSearcher(final IndexReader reader, final ExecutorService executor,
+                               final int maxDocsPerSlice, final int maxSegmentsPerSlice) {
+        // IndexSearcher gets no executor: it would slice segments in its constructor, before the sizes are set
+        super(reader);
+        if (maxDocsPerSlice < 1 || maxSegmentsPerSlice < 1) {
+            throw new IllegalArgumentException("Slice size should be positive: "
+                    + maxDocsPerSlice + " docs, " + maxSegmentsPerSlice + " segments");
+        }
+        this.executor = executor;
+        this.maxDocsPerSlice = maxDocsPerSlice;
+        this.maxSegmentsPerSlice = maxSegmentsPerSlice;
+        this.slices = executor == null ? null : slices(leafContexts, maxDocsPerSlice, maxSegmentsPerSlice);
+    }
+
+    /**
+     * Every search of IndexSearcher ends here, the only place it would use its executor
+     */
+    @Override
+    public <C extends Collector, T> T search(final Query query, final CollectorManager<C, T> collectorManager)
+            throws IOException {
+        if (slices == null) {
+            return super.search(query, collectorManager);
+        }
+        final List<C> collectors = new ArrayList<>(slices.size());
+        boolean needsScores = false;
+        for (int i = 0; i < slices.size(); i++) {
+            final C collector = collectorManager.newCollector();
+            collectors.add(collector);
+            needsScores |= collector.needsScores();
+        }
+        final Weight weight = createNormalizedWeight(query, needsScores);
+        final List<Future<C>> futures = new ArrayList<>(slices.size());
+        for (int i = 0; i < slices.size(); i++) {
+            final List<LeafReaderContext> leaves = slices.get(i);
+            final C collector = collectors.get(i);
+            futures.add(executor.submit(() -> {
+                search(leaves, weight, collector);
+                return collector;
+            }));
+        }
+        for (Future<C> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                throw new ThreadInterruptedException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return collectorManager.reduce(collectors);
+    }
+
+    /**
+     * Groups neighbouring segments in docBase order, slice i has lower doc ids than slice i + 1
+     */
+    static List<List<LeafReaderContext>> slices(final List<LeafReaderContext> leaves, final int maxDocsPerSlice,
+                                                final int maxSegmentsPerSlice) {
+        final List<LeafReaderContext> sorted = new ArrayList<>(leaves);
+        sorted.sort(Comparator.comparingInt(leaf -> leaf.docBase));
+
+        final List<List<LeafReaderContext>> slices = new ArrayList<>();
+        List<LeafReaderContext> group = new ArrayList<>();
+        long docs = 0;
+        for (LeafReaderContext leaf : sorted) {
+            group.add(leaf);
+            docs += leaf.reader().maxDoc();
+            if (docs >= maxDocsPerSlice || group.size() >= maxSegmentsPerSlice) {
+                slices.add(group);
+                group = new ArrayList<>();
+                docs = 0;
+            }
+        }
+        if (!group.isEmpty()) {
+            slices.add(group);
+        }
+        return slices;
+    }
+
+    public int getMaxDocsPerSlice() {
+        return maxDocsPerSlice;
+    }
+
+    public int getMaxSegmentsPerSlice() {
+        return maxSegmentsPerSlice;
+    }
+
+    /**
+     * @return number of tasks one query is split into, 1 without executor
+     */
+    public int getSliceCount() {
+        return slices == null ? 1 : slices.size();
+    }
+
+    /**
+     * Pool to share between searchers, see newExecutor(int, int).
+     * Up to DEFAULT_QUEUED_SLICES_PER_THREAD slices per thread wait in the queue
+     * @param threads number of search threads, usually number of cores
+     */
+    public static ExecutorService newExecutor(final int threads) {
+        return newExecutor(threads, threads * DEFAULT_QUEUED_SLICES_PER_THREAD);
+    }
+
+    /**
+     * Pool to share between searchers. The calling thread of a query is blocked until all its slices are done.
+     * When the queue is full the calling thread searches the slice itself, so a burst of queries
+     * slows down their callers instead of piling up tasks
+     * @param threads number of search threads, usually number of cores
+     * @param queueSize most slices waiting for a search thread
+     */
+    public static ExecutorService newExecutor(final int threads, final int queueSize) {
+        final AtomicInteger number = new AtomicInteger();
+        final ThreadFactory factory = runnable -> {
+            final Thread thread = new Thread(runnable, "search-slice-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), factory, (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Search executor is shut down");
+                    }
+                    task.run();
+                });
+    }
+}
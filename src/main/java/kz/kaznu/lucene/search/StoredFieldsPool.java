@@ -0,0 +1,77 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.StoredFieldVisitor;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stored fields readers of segments, shared by all threads that load hits.
+ * SegmentReader keeps a clone of the stored fields reader, with its decompression buffer, per thread.
+ * With a virtual thread per request every request would clone it again for every segment it reads,
+ * and register the clone in a map guarded by synchronized. Here a reader is taken from the pool of
+ * the segment for one load and given back, so there are only as many clones as loads running at once
+ */
+final class StoredFieldsPool {
+    // by LeafReader.getCoreCacheKey, so pools of merged away segments are dropped with them
+    private static final Map<Object, Queue<StoredFieldsReader>> POOLS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private StoredFieldsPool() {
+    }
+
+    /**
+     * @param leaf segment to read documents of, it should stay open until the lease is released
+     * @return stored fields reader for one thread, release it when done
+     */
+    static Lease acquire(final LeafReader leaf) {
+        if (!(leaf instanceof CodecReader)) {
+            return new Lease(leaf, null, null);
+        }
+        final Queue<StoredFieldsReader> pool = POOLS.computeIfAbsent(leaf.getCoreCacheKey(),
+                key -> new ConcurrentLinkedQueue<>());
+        final StoredFieldsReader pooled = pool.poll();
+        return new Lease(leaf, pool, pooled != null ? pooled : ((CodecReader) leaf).getFieldsReader().clone());
+    }
+
+    static final class Lease {
+        private final LeafReader leaf;
+        private final Queue<StoredFieldsReader> pool;
+        private final StoredFieldsReader reader;
+        private boolean failed;
+
+        private Lease(final LeafReader leaf, final Queue<StoredFieldsReader> pool, final StoredFieldsReader reader) {
+            this.leaf = leaf;
+            this.pool = pool;
+            this.reader = reader;
+        }
+
+        /**
+         * @param docId document id in the segment
+         */
+        void visitDocument(final int docId, final StoredFieldVisitor visitor) throws IOException {
+            if (reader == null) {
+                leaf.document(docId, visitor);
+                return;
+            }
+            failed = true;
+            reader.visitDocument(docId, visitor);
+            failed = false;
+        }
+
+        /**
+         * Give the reader back to the pool, unless reading failed half way
+         */
+        void release() {
+            if (reader != null && !failed) {
+                pool.offer(reader);
+            }
+        }
+    }
+}
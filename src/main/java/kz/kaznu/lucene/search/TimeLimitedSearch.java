@@ -0,0 +1,140 @@
+package kz.kaznu.lucene.search;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TimeLimitingCollector;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.util.Counter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Relevance search that gives up after a timeout and returns the best hits found so far.
+ * Every slice of a SlicedIndexSearcher is collected by its own TimeLimitingCollector,
+ * all started at the same time. A slice that runs out of time stops collecting,
+ * the others go on until they run out of time too or are done.
+ *
+ * Time is read from TimeLimitingCollector.getGlobalCounter(), a timer thread ticking
+ * every 20 ms, so timeouts below that are not precise
+ */
+public final class TimeLimitedSearch {
+
+    private TimeLimitedSearch() {
+    }
+
+    /**
+     * Hits of a time limited search
+     */
+    public static final class TimedTopDocs extends TopDocs {
+        private final boolean timedOut;
+
+        TimedTopDocs(final TopDocs topDocs, final boolean timedOut) {
+            super(topDocs.totalHits, topDocs.scoreDocs, topDocs.getMaxScore());
+            this.timedOut = timedOut;
+        }
+
+        /**
+         * @return true if some documents were not visited, hits and total hits are then incomplete
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+
+    /**
+     * Same as IndexSearcher.searchAfter, but limited in time
+     * @param searcher searcher to use, slices are searched in parallel if it has an executor
+     * @param after last hit of the previous page, null for the first page
+     * @param query query to execute
+     * @param limit how many results to return
+     * @param timeoutMillis how long to collect hits
+     * @throws IOException
+     */
+    public static TimedTopDocs searchAfter(final IndexSearcher searcher, final ScoreDoc after, final Query query,
+                                           final int limit, final long timeoutMillis) throws IOException {
+        return searchAfter(searcher, after, query, limit, timeoutMillis, TimeLimitingCollector.getGlobalCounter());
+    }
+
+    /**
+     * @param clock current time in milliseconds
+     */
+    static TimedTopDocs searchAfter(final IndexSearcher searcher, final ScoreDoc after, final Query query,
+                                    final int limit, final long timeoutMillis, final Counter clock) throws IOException {
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("Timeout should be positive: " + timeoutMillis);
+        }
+        final int numHits = Math.max(1, Math.min(limit, searcher.getIndexReader().maxDoc()));
+        final long start = clock.get();
+        final AtomicBoolean timedOut = new AtomicBoolean();
+
+        final TopDocs topDocs = searcher.search(query, new CollectorManager<TimeoutCollector, TopDocs>() {
+            @Override
+            public TimeoutCollector newCollector() {
+                final TopScoreDocCollector hits = TopScoreDocCollector.create(numHits, after);
+                final TimeLimitingCollector limited = new TimeLimitingCollector(hits, clock, timeoutMillis);
+                // waiting for a free search thread counts too
+                limited.setBaseline(start);
+                return new TimeoutCollector(limited, hits, timedOut);
+            }
+
+            @Override
+            public TopDocs reduce(final Collection<TimeoutCollector> collectors) throws IOException {
+                final TopDocs[] slices = new TopDocs[collectors.size()];
+                int i = 0;
+                for (TimeoutCollector collector : collectors) {
+                    slices[i++] = collector.hits.topDocs();
+                }
+                return TopDocs.merge(numHits, slices);
+            }
+        });
+        return new TimedTopDocs(topDocs, timedOut.get());
+    }
+
+    /**
+     * Turns TimeExceededException into CollectionTerminatedException,
+     * so IndexSearcher goes on with the next segment and keeps collected hits
+     */
+    private static final class TimeoutCollector extends FilterCollector {
+        private final TopScoreDocCollector hits;
+        private final AtomicBoolean timedOut;
+
+        TimeoutCollector(final TimeLimitingCollector limited, final TopScoreDocCollector hits,
+                         final AtomicBoolean timedOut) {
+            super(limited);
+            this.hits = hits;
+            this.timedOut = timedOut;
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(final LeafReaderContext context) throws IOException {
+            final LeafCollector leafCollector;
+            try {
+                leafCollector = super.getLeafCollector(context);
+            } catch (TimeLimitingCollector.TimeExceededException e) {
+                timedOut.set(true);
+                throw new CollectionTerminatedException();
+            }
+            return new FilterLeafCollector(leafCollector) {
+                @Override
+                public void collect(final int doc) throws IOException {
+                    try {
+                        super.collect(doc);
+                    } catch (TimeLimitingCollector.TimeExceededException e) {
+                        timedOut.set(true);
+                        throw new CollectionTerminatedException();
+                    }
+                }
+            };
+        }
+    }
+}
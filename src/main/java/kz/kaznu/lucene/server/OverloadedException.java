@@ -0,0 +1,11 @@
+package kz.kaznu.lucene.server;
+
+/**
+ * Search was not run because the server is overloaded, answered with 503
+ */
+final class OverloadedException extends Exception {
+    OverloadedException(final String message) {
+        // thrown often under overload, stack trace is of no use
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,66 @@
+package kz.kaznu.lucene.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed pool of ServerConfig.getWorkerThreads daemon threads with a bounded queue.
+ * A burst larger than the queue is rejected even if every search would be short
+ */
+final class PlatformSearchExecutor extends SearchExecutor {
+    private final ThreadPoolExecutor workers;
+
+    PlatformSearchExecutor(final ServerConfig config) {
+        super(config);
+        final AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                // SynchronousQueue hands over only to an idle worker, so no queue means that
+                config.getQueueCapacity() == 0 ? new SynchronousQueue<>()
+                        : new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                r -> {
+                    final Thread thread = new Thread(r, "search-worker-" + workerNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(final Callable<T> search) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long admitted = System.nanoTime();
+        try {
+            workers.execute(() -> {
+                if (System.nanoTime() - admitted > maxQueueNanos()) {
+                    shed(result);
+                } else {
+                    run(search, result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return reject();
+        }
+        return result;
+    }
+
+    @Override
+    public int getWaiting() {
+        return workers.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
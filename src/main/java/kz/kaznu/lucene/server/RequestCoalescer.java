@@ -0,0 +1,75 @@
+package kz.kaznu.lucene.server;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs identical concurrent requests once: while a request with equal key is in flight,
+ * new callers get its future instead of starting another one. Results are not kept after completion,
+ * that is what QueryResultCache is for. Thread-safe
+ *
+ * @param <K> request, should implement equals and hashCode
+ * @param <V> result
+ */
+public class RequestCoalescer<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param key request
+     * @param start starts the request, called only if no equal request is in flight
+     * @return future of the request in flight or of the started one
+     */
+    public CompletableFuture<V> submit(final K key, final Supplier<CompletableFuture<V>> start) {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        final CompletableFuture<V> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+        started.increment();
+        final CompletableFuture<V> request;
+        try {
+            request = start.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, result);
+            result.completeExceptionally(e);
+            return result;
+        }
+        request.whenComplete((value, failure) -> {
+            // removed before completion, so callbacks that submit the same key start a new request
+            inFlight.remove(key, result);
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return how many requests were started
+     */
+    public long getStarted() {
+        return started.sum();
+    }
+
+    /**
+     * @return how many requests joined an equal request in flight
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return number of requests in flight now
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,106 @@
+package kz.kaznu.lucene.server;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs searches of SearchServer with admission control: at most ServerConfig.getWorkerThreads searches run
+ * at once and at most ServerConfig.getQueueCapacity wait, more are rejected at once. Searches that waited
+ * longer than ServerConfig.getMaxQueueMillis are shed without running.
+ * Rejected and shed searches complete with OverloadedException.
+ *
+ * Searches run on a pool of platform threads, or on virtual threads with ServerConfig.withVirtualThreads
+ */
+public abstract class SearchExecutor implements Closeable {
+    // compiled from src/main/java21 only by the java21 profile
+    private static final String VIRTUAL_EXECUTOR = "kz.kaznu.lucene.server.VirtualSearchExecutor";
+
+    final ServerConfig config;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    SearchExecutor(final ServerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @param config pool sizes, overload limits and execution mode
+     * @throws UnsupportedOperationException if virtual threads are asked for and the build or JVM has none
+     */
+    public static SearchExecutor create(final ServerConfig config) {
+        if (!config.isVirtualThreads()) {
+            return new PlatformSearchExecutor(config);
+        }
+        try {
+            return (SearchExecutor) Class.forName(VIRTUAL_EXECUTOR)
+                    .getDeclaredConstructor(ServerConfig.class).newInstance(config);
+        } catch (ClassNotFoundException | UnsupportedClassVersionError e) {
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 and the build with the java21 profile", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create " + VIRTUAL_EXECUTOR, e);
+        }
+    }
+
+    /**
+     * @param search search to run
+     * @return result of the search, OverloadedException if it was rejected or shed
+     */
+    public abstract <T> CompletableFuture<T> submit(Callable<T> search);
+
+    /**
+     * @return searches admitted and waiting to run
+     */
+    public abstract int getWaiting();
+
+    /**
+     * @return searches rejected because too many were waiting already
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return searches dropped because they waited longer than ServerConfig.getMaxQueueMillis
+     */
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Stop accepting searches, wait up to a second for the ones admitted
+     */
+    @Override
+    public abstract void close();
+
+    final long maxQueueNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(config.getMaxQueueMillis());
+    }
+
+    final <T> CompletableFuture<T> reject() {
+        rejected.increment();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(new OverloadedException("Too many requests in queue"));
+        return result;
+    }
+
+    final void shed(final CompletableFuture<?> result) {
+        shed.increment();
+        result.completeExceptionally(new OverloadedException("Waited in queue longer than "
+                + config.getMaxQueueMillis() + " ms"));
+    }
+
+    static <T> void run(final Callable<T> search, final CompletableFuture<T> result) {
+        try {
+            result.complete(search.call());
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package kz.kaznu.lucene.server;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.SearchCursor;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One search of SearchServer, parsed from the query string of /search:
+ * <pre>
+ *   type=text|body|term|region|fuzzy|range|related  (text by default)
+ *   q=words to search, regions separated by commas for region
+ *   field=field of term and fuzzy searches, body by default
+ *   from=, to=  unix time in seconds for range
+ *   docId=  document to find related ones for
+ *   sort=relevance|newest, limit=10, after=cursor token of the previous page
+ *   fields=title,body  stored fields to return, BasicSearchExamples.DEFAULT_FIELDS by default
+ * </pre>
+ * Equal requests give equal results, SearchServer runs them only once when they come at the same time
+ */
+public final class SearchRequest {
+    public enum Type {
+        TEXT, BODY, TERM, REGION, FUZZY, RANGE, RELATED
+    }
+
+    private final Type type;
+    private final String text;
+    private final String field;
+    private final long from;
+    private final long to;
+    private final int docId;
+    private final boolean newest;
+    private final int limit;
+    private final SearchCursor after;
+    private final String[] fields;
+
+    private SearchRequest(final Type type, final String text, final String field, final long from, final long to,
+                          final int docId, final boolean newest, final int limit, final SearchCursor after,
+                          final String[] fields) {
+        this.type = type;
+        this.text = text;
+        this.field = field;
+        this.from = from;
+        this.to = to;
+        this.docId = docId;
+        this.newest = newest;
+        this.limit = limit;
+        this.after = after;
+        this.fields = fields;
+    }
+
+    /**
+     * @param rawQuery query string of the URI, not decoded, may be null
+     * @param maxLimit largest allowed limit
+     * @throws IllegalArgumentException if parameters are missing or malformed
+     */
+    public static SearchRequest parse(final String rawQuery, final int maxLimit) {
+        final Map<String, String> params = decode(rawQuery);
+        final Type type = Type.valueOf(params.getOrDefault("type", "text").toUpperCase(Locale.ROOT));
+        final int limit = intParam(params, "limit", BasicSearchExamples.DEFAULT_LIMIT);
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit should be between 1 and " + maxLimit + ": " + limit);
+        }
+        final String sort = params.getOrDefault("sort", "relevance");
+        if (!"relevance".equals(sort) && !"newest".equals(sort)) {
+            throw new IllegalArgumentException("sort should be relevance or newest: " + sort);
+        }
+        final String text = params.get("q");
+        if (text == null && type != Type.RANGE && type != Type.RELATED) {
+            throw new IllegalArgumentException("q is required for " + type + " search");
+        }
+        final SearchCursor after = params.containsKey("after") ? SearchCursor.fromToken(params.get("after")) : null;
+        final String[] fields = params.containsKey("fields") ? params.get("fields").split(",")
+                : BasicSearchExamples.DEFAULT_FIELDS;
+        return new SearchRequest(type, text, params.getOrDefault("field", "body"),
+                longParam(params, "from", 0L), longParam(params, "to", Long.MAX_VALUE),
+                intParam(params, "docId", -1), "newest".equals(sort), limit, after, fields);
+    }
+
+    /**
+     * @throws IOException
+     * @throws ParseException if text could not be parsed into a query
+     */
+    public SearchResults execute(final BasicSearchExamples search) throws IOException, ParseException {
+        if (type == Type.RELATED) {
+            if (docId < 0) {
+                throw new IllegalArgumentException("docId is required for related search");
+            }
+            return search.searchRelated(docId, limit, fields);
+        }
+        final Query query = toQuery(search);
+        if (newest) {
+            return after == null ? search.searchNewest(query, limit, fields)
+                    : search.searchNewestAfter(query, after, limit, fields);
+        }
+        return after == null ? search.search(query, limit, fields) : search.searchAfter(query, after, limit, fields);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private Query toQuery(final BasicSearchExamples search) throws ParseException {
+        switch (type) {
+            case BODY:
+                return search.bodyQuery(text);
+            case TERM:
+                return search.termQuery(text, field);
+            case REGION:
+                return search.regionQuery(text.split(","));
+            case FUZZY:
+                return search.typoTolerantQuery(text, field);
+            case RANGE:
+                // rangeDateQuery takes the later date first
+                return search.rangeDateQuery(to, from);
+            default:
+                return search.multiFieldQuery(text);
+        }
+    }
+
+    private static Map<String, String> decode(final String rawQuery) {
+        final Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : rawQuery.split("&")) {
+                final int eq = pair.indexOf('=');
+                final String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+                final String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                params.put(name, value);
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return params;
+    }
+
+    private static int intParam(final Map<String, String> params, final String name, final int defaultValue) {
+        final String value = params.get(name);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " should be a number: " + value);
+        }
+    }
+
+    private static long longParam(final Map<String, String> params, final String name, final long defaultValue) {
+        final String value = params.get(name);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " should be a number: " + value);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchRequest)) {
+            return false;
+        }
+        final SearchRequest that = (SearchRequest) o;
+        return type == that.type && from == that.from && to == that.to && docId == that.docId
+                && newest == that.newest && limit == that.limit && Objects.equals(text, that.text)
+                && Objects.equals(field, that.field) && Objects.equals(after, that.after)
+                && Arrays.equals(fields, that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, text, field, from, to, docId, newest, limit, after) * 31 + Arrays.hashCode(fields);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchRequest{type=" + type + ", q=" + text + ", field=" + field + ", from=" + from + ", to=" + to
+                + ", docId=" + docId + ", newest=" + newest + ", limit=" + limit + ", after=" + after
+                + ", fields=" + Arrays.toString(fields) + "}";
+    }
+}
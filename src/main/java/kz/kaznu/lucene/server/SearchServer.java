@@ -0,0 +1,225 @@
+package kz.kaznu.lucene.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.search.SearchHit;
+import kz.kaznu.lucene.search.SearchResults;
+import org.apache.lucene.queryparser.classic.ParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local HTTP server answering searches with JSON, on the JDK built-in HttpServer:
+ * <pre>
+ *   GET /search?q=погода&amp;limit=5      see SearchRequest for parameters
+ *   GET /stats                            request counters
+ * </pre>
+ * Requests are parsed on the HTTP dispatcher thread and searched by SearchExecutor, on a fixed pool of
+ * workers or on virtual threads, which write the response, so the dispatcher never waits for a search.
+ * Identical requests that come while one is in flight wait for its result instead of searching again,
+ * see RequestCoalescer.
+ *
+ * Overload is answered with 503 instead of growing latency for everybody: requests that find the
+ * queue full are rejected at once, requests that waited in the queue longer than
+ * ServerConfig.getMaxQueueMillis are dropped without searching
+ */
+public class SearchServer implements Closeable {
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int INTERNAL_ERROR = 500;
+    private static final int UNAVAILABLE = 503;
+
+    static {
+        // HttpServer writes headers and body separately, with Nagle's algorithm the body waits
+        // for the delayed ACK of the headers, which adds 40 ms to every response.
+        // Read once when the first HttpServer is created, so it has to be set before that
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final BasicSearchExamples search;
+    private final ServerConfig config;
+    private final HttpServer server;
+    private final SearchExecutor executor;
+    private final RequestCoalescer<SearchRequest, SearchResults> coalescer = new RequestCoalescer<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Bind the port and start serving
+     *
+     * @param search searches to serve, for example over MessageSearcherManager to see new documents
+     * @param config pool sizes, overload limits and execution mode
+     * @throws IOException if the port could not be bound
+     */
+    public SearchServer(final BasicSearchExamples search, final ServerConfig config) throws IOException {
+        this.search = search;
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress(config.getPort()), 0);
+        try {
+            this.executor = SearchExecutor.create(config);
+        } catch (RuntimeException e) {
+            server.stop(0); // release the port
+            throw e;
+        }
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/stats", this::handleStats);
+        // handlers do not block, the dispatcher thread runs them
+        server.setExecutor(null);
+        server.start();
+    }
+
+    /**
+     * @return port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return number of /search requests received
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return requests answered with 503 because the worker queue was full
+     */
+    public long getRejected() {
+        return executor.getRejected();
+    }
+
+    /**
+     * @return requests answered with 503 because they waited in the queue too long
+     */
+    public long getShed() {
+        return executor.getShed();
+    }
+
+    /**
+     * @return requests that joined an identical request in flight
+     */
+    public long getCoalesced() {
+        return coalescer.getCoalesced();
+    }
+
+    /**
+     * Stop accepting requests, wait up to a second for the ones being answered
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private void handleSearch(final HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, METHOD_NOT_ALLOWED, error("Only GET is supported"));
+            return;
+        }
+        requests.increment();
+        final SearchRequest request;
+        try {
+            request = SearchRequest.parse(exchange.getRequestURI().getRawQuery(), config.getMaxLimit());
+        } catch (IllegalArgumentException e) {
+            respond(exchange, BAD_REQUEST, error(e.getMessage()));
+            return;
+        }
+        coalescer.submit(request, () -> executor.submit(() -> request.execute(search))).whenComplete((results, failure) -> {
+            try {
+                if (failure == null) {
+                    respond(exchange, OK, toJson(results));
+                } else {
+                    respondFailure(exchange, failure instanceof CompletionException ? failure.getCause() : failure);
+                }
+            } catch (IOException e) {
+                // client went away, nothing to answer to
+                exchange.close();
+            }
+        });
+    }
+
+    private void respondFailure(final HttpExchange exchange, final Throwable failure) throws IOException {
+        if (failure instanceof OverloadedException) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, UNAVAILABLE, error(failure.getMessage()));
+        } else if (failure instanceof ParseException || failure instanceof IllegalArgumentException) {
+            respond(exchange, BAD_REQUEST, error(failure.getMessage()));
+        } else {
+            failed.increment();
+            respond(exchange, INTERNAL_ERROR, error(String.valueOf(failure)));
+        }
+    }
+
+    private void handleStats(final HttpExchange exchange) throws IOException {
+        final JsonObject stats = new JsonObject();
+        stats.addProperty("requests", requests.sum());
+        stats.addProperty("searched", coalescer.getStarted() - executor.getRejected() - executor.getShed());
+        stats.addProperty("coalesced", coalescer.getCoalesced());
+        stats.addProperty("rejected", executor.getRejected());
+        stats.addProperty("shed", executor.getShed());
+        stats.addProperty("failed", failed.sum());
+        stats.addProperty("queued", executor.getWaiting());
+        respond(exchange, OK, stats);
+    }
+
+    private static JsonObject toJson(final SearchResults results) {
+        final JsonObject json = new JsonObject();
+        json.addProperty("totalHits", results.getTotalHits());
+        if (results.isTimedOut()) {
+            json.addProperty("timedOut", true);
+        }
+        final JsonArray hits = new JsonArray();
+        for (SearchHit hit : results.getHits()) {
+            final JsonObject jsonHit = new JsonObject();
+            jsonHit.addProperty("docId", hit.getDocId());
+            // sorted searches have no score, NaN is not valid JSON
+            if (!Float.isNaN(hit.getScore())) {
+                jsonHit.addProperty("score", hit.getScore());
+            }
+            final JsonObject fields = new JsonObject();
+            for (Map.Entry<String, String> field : hit.getFields().entrySet()) {
+                fields.addProperty(field.getKey(), field.getValue());
+            }
+            jsonHit.add("fields", fields);
+            hits.add(jsonHit);
+        }
+        json.add("hits", hits);
+        if (results.getNextCursor() != null) {
+            json.addProperty("next", results.getNextCursor().toToken());
+        }
+        return json;
+    }
+
+    private static JsonObject error(final String message) {
+        final JsonObject json = new JsonObject();
+        json.addProperty("error", message);
+        return json;
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final JsonObject json) throws IOException {
+        final byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package kz.kaznu.lucene.server;
+
+/**
+ * Limits of SearchServer. Start with defaults() and change what is needed, instances are immutable
+ */
+public final class ServerConfig {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final long DEFAULT_MAX_QUEUE_MILLIS = 200;
+    public static final int DEFAULT_MAX_LIMIT = 100;
+
+    private final int port;
+    private final int workerThreads;
+    private final int queueCapacity;
+    private final long maxQueueMillis;
+    private final int maxLimit;
+    private final boolean virtualThreads;
+
+    private ServerConfig(final int port, final int workerThreads, final int queueCapacity,
+                         final long maxQueueMillis, final int maxLimit, final boolean virtualThreads) {
+        if (port < 0 || workerThreads < 1 || queueCapacity < 0 || maxQueueMillis < 0 || maxLimit < 1) {
+            throw new IllegalArgumentException("Invalid server limits: port=" + port + ", workerThreads=" + workerThreads
+                    + ", queueCapacity=" + queueCapacity + ", maxQueueMillis=" + maxQueueMillis + ", maxLimit=" + maxLimit);
+        }
+        this.port = port;
+        this.workerThreads = workerThreads;
+        this.queueCapacity = queueCapacity;
+        this.maxQueueMillis = maxQueueMillis;
+        this.maxLimit = maxLimit;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Any free port, one worker per processor, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_QUEUE_MILLIS and DEFAULT_MAX_LIMIT
+     */
+    public static ServerConfig defaults() {
+        return new ServerConfig(0, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY,
+                DEFAULT_MAX_QUEUE_MILLIS, DEFAULT_MAX_LIMIT, false);
+    }
+
+    /**
+     * @param port port to listen on, 0 for any free port, see SearchServer.getPort
+     */
+    public ServerConfig withPort(final int port) {
+        return new ServerConfig(port, workerThreads, queueCapacity, maxQueueMillis, maxLimit, virtualThreads);
+    }
+
+    /**
+     * @param workerThreads how many searches run at once, threads of the pool or permits with virtual threads
+     * @param queueCapacity how many admitted searches may wait for a worker, more are rejected with 503 at once
+     */
+    public ServerConfig withWorkers(final int workerThreads, final int queueCapacity) {
+        return new ServerConfig(port, workerThreads, queueCapacity, maxQueueMillis, maxLimit, virtualThreads);
+    }
+
+    /**
+     * @param maxQueueMillis searches that waited for a worker longer than this are answered with 503 without searching,
+     *                       the client has most likely given up already
+     */
+    public ServerConfig withMaxQueueMillis(final long maxQueueMillis) {
+        return new ServerConfig(port, workerThreads, queueCapacity, maxQueueMillis, maxLimit, virtualThreads);
+    }
+
+    /**
+     * @param maxLimit largest number of hits one request may ask for
+     */
+    public ServerConfig withMaxLimit(final int maxLimit) {
+        return new ServerConfig(port, workerThreads, queueCapacity, maxQueueMillis, maxLimit, virtualThreads);
+    }
+
+    /**
+     * @param virtualThreads true to run every search on its own virtual thread, capped by workerThreads permits
+     *                       instead of a pool of that size. Needs JDK 21 and the build with the java21 profile
+     */
+    public ServerConfig withVirtualThreads(final boolean virtualThreads) {
+        return new ServerConfig(port, workerThreads, queueCapacity, maxQueueMillis, maxLimit, virtualThreads);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getMaxQueueMillis() {
+        return maxQueueMillis;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConfig{port=" + port + ", workerThreads=" + workerThreads + ", queueCapacity=" + queueCapacity
+                + ", maxQueueMillis=" + maxQueueMillis + ", maxLimit=" + maxLimit + ", virtualThreads=" + virtualThreads + "}";
+    }
+}
@@ -2,38 +2,63 @@ package kz.kaznu.lucene.utils;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
 import kz.kaznu.lucene.model.Message;
 import org.apache.lucene.document.Document;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Helper {
     private static final Gson gson = new GsonBuilder().create();
-    private static final Type listType = new TypeToken<List<Message>>() {}.getType();
 
     /**
      * Read documents from the provided file.
      * Usual tutorial file is located in resources/tutorial.json
      *
+     * Whole file ends up in memory, for big files use openMessageStream instead
+     *
      * @param file File that referred to JSON file
      * @return list of documents
      * @throws FileNotFoundException
      */
     public static List<Document> readDocumentsFromFile(final File file) throws FileNotFoundException {
-        final FileReader fileReader = new FileReader(file);
-        final JsonReader reader = new JsonReader(fileReader);
-        final List<Message> messages = gson.fromJson(reader, listType);
-        final List<Document> documents = messages.stream()
-                .map(Message::convertToDocument)
-                .collect(Collectors.toList());
+        final List<Document> documents = new ArrayList<>();
+        try (MessageStream messages = openMessageStream(file)) {
+            while (messages.hasNext()) {
+                documents.add(messages.next().convertToDocument());
+            }
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         return documents;
     }
+
+    /**
+     * Open the provided file for reading messages one at a time.
+     * Caller is responsible to close returned stream
+     *
+     * @param file File that referred to JSON file with array of messages
+     * @return stream of messages
+     * @throws IOException
+     */
+    public static MessageStream openMessageStream(final File file) throws IOException {
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            return new MessageStream(gson, reader);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
 }
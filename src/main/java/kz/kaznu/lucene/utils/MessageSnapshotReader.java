@@ -0,0 +1,263 @@
+package kz.kaznu.lucene.utils;
+
+import org.apache.lucene.util.BytesRef;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a snapshot written by MessageSnapshotWriter through a memory mapping, record after record.
+ * Nothing is parsed: next() only notes where fields of the record are, title and body are decoded
+ * when asked for, regions and their bytes come from the dictionary as they are.
+ * Files larger than the mapping window are mapped window by window.
+ *
+ * The reader is its own iterator element: next() moves to the next record and returns the reader,
+ * its values are valid until the following next(). Feed it to MessageIndexer.index(Boolean, MessageSnapshotReader).
+ * Not thread-safe
+ */
+public class MessageSnapshotReader implements Iterator<MessageSnapshotReader>, Closeable {
+    static final long DEFAULT_WINDOW_BYTES = 256L << 20;
+
+    private final FileChannel channel;
+    private final long windowBytes;
+    private final long recordsEnd;
+    private final long count;
+    private final String[] regions;
+    private final BytesRef[] regionBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    // file position of the next record
+    private long position = MessageSnapshotWriter.HEADER_BYTES;
+
+    // current record, offsets are in the window
+    private String id;
+    private long contentHash;
+    private long creationDate;
+    private int titleOffset;
+    private int bodyOffset;
+    private int[] regionOrdinals = new int[4];
+    private int regionCount;
+    private byte[] scratch = new byte[4096];
+
+    /**
+     * @param file snapshot written by MessageSnapshotWriter
+     * @throws IOException if the file could not be read or is not a complete snapshot
+     */
+    public MessageSnapshotReader(final File file) throws IOException {
+        this(file, DEFAULT_WINDOW_BYTES);
+    }
+
+    MessageSnapshotReader(final File file, final long windowBytes) throws IOException {
+        this.windowBytes = windowBytes;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size < MessageSnapshotWriter.HEADER_BYTES + MessageSnapshotWriter.FOOTER_BYTES) {
+                throw new IOException("Not a message snapshot, too short: " + file);
+            }
+            final ByteBuffer header = read(0, MessageSnapshotWriter.HEADER_BYTES);
+            final ByteBuffer footer = read(size - MessageSnapshotWriter.FOOTER_BYTES, MessageSnapshotWriter.FOOTER_BYTES);
+            if (header.getInt() != MessageSnapshotWriter.MAGIC || footer.getInt(16) != MessageSnapshotWriter.MAGIC) {
+                throw new IOException("Not a message snapshot or not closed after writing: " + file);
+            }
+            final int version = header.getInt();
+            if (version != MessageSnapshotWriter.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            this.recordsEnd = footer.getLong();
+            this.count = footer.getLong();
+
+            // dictionary is small, it is copied to the heap once
+            final ByteBuffer dictionary = read(recordsEnd, (int) (size - MessageSnapshotWriter.FOOTER_BYTES - recordsEnd));
+            this.regions = new String[dictionary.getInt()];
+            this.regionBytes = new BytesRef[regions.length];
+            for (int i = 0; i < regions.length; i++) {
+                final int length = dictionary.getInt();
+                if (length >= 0) {
+                    final byte[] bytes = new byte[length];
+                    dictionary.get(bytes);
+                    regionBytes[i] = new BytesRef(bytes);
+                    regions[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of records in the snapshot
+     */
+    public long size() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < recordsEnd;
+    }
+
+    /**
+     * Move to the next record
+     *
+     * @return this reader
+     * @throws UncheckedIOException if the file could not be mapped
+     */
+    @Override
+    public MessageSnapshotReader next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final int length = window(position, 4).getInt((int) (position - windowStart));
+        final ByteBuffer record = window(position, 4 + length);
+        record.position((int) (position - windowStart) + 4);
+        position += 4 + length;
+
+        final boolean hasId = (record.get() & MessageSnapshotWriter.HAS_ID) != 0;
+        id = hasId ? readString(record) : null;
+        contentHash = hasId ? record.getLong() : 0L;
+        creationDate = record.getLong();
+        titleOffset = record.position();
+        skipString(record);
+        bodyOffset = record.position();
+        skipString(record);
+        regionCount = record.getInt();
+        if (regionOrdinals.length < regionCount) {
+            regionOrdinals = new int[regionCount];
+        }
+        for (int i = 0; i < regionCount; i++) {
+            regionOrdinals[i] = record.getInt();
+        }
+        return this;
+    }
+
+    /**
+     * @return id of the message, see Message.getId, or null
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return MessageToDocument.contentHash of the message, 0 if it has no id
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return creationDate in unix seconds, as MessageToDocument.parseDate gave it
+     */
+    public long getCreationDate() {
+        return creationDate;
+    }
+
+    public String getTitle() {
+        return stringAt(titleOffset);
+    }
+
+    public String getBody() {
+        return stringAt(bodyOffset);
+    }
+
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * @param index position of the region in the message
+     */
+    public String getRegion(final int index) {
+        return regions[ordinal(index)];
+    }
+
+    /**
+     * @param index position of the region in the message
+     * @return UTF-8 bytes of the region, shared by all records, do not change them
+     */
+    public BytesRef getRegionBytes(final int index) {
+        return regionBytes[ordinal(index)];
+    }
+
+    /**
+     * Close the file, the mapping is released when it is garbage collected
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private int ordinal(final int index) {
+        if (index < 0 || index >= regionCount) {
+            throw new IndexOutOfBoundsException("Record has " + regionCount + " regions: " + index);
+        }
+        return regionOrdinals[index];
+    }
+
+    // window that holds bytes [from, from + length) of the file
+    private ByteBuffer window(final long from, final int length) {
+        if (window == null || from < windowStart || from + length > windowStart + window.limit()) {
+            final long size = Math.min(Math.max(windowBytes, length), recordsEnd - from);
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, from, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            windowStart = from;
+        }
+        return window;
+    }
+
+    private String stringAt(final int offset) {
+        final int length = window.getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, 2 * scratch.length)];
+        }
+        // absolute bulk get is Java 13+, so go through a duplicate
+        final ByteBuffer bytes = window.duplicate();
+        bytes.position(offset + 4);
+        bytes.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private String readString(final ByteBuffer record) {
+        final String value = stringAt(record.position());
+        skipString(record);
+        return value;
+    }
+
+    private static void skipString(final ByteBuffer record) {
+        final int length = record.getInt();
+        if (length > 0) {
+            record.position(record.position() + length);
+        }
+    }
+
+    private ByteBuffer read(final long from, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot at " + (from + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
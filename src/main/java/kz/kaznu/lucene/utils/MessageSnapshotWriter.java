@@ -0,0 +1,169 @@
+package kz.kaznu.lucene.utils;
+
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.model.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes messages into a binary snapshot, read it with MessageSnapshotReader. Converting a JSON dump once
+ * saves parsing it with Gson every time the index is rebuilt. Layout, numbers are big-endian:
+ * <pre>
+ *   header      int MAGIC, int VERSION
+ *   record *    int length of the rest of the record,
+ *               byte flags (HAS_ID), [string id, long content hash], long creationDate in unix seconds,
+ *               string title, string body, int region count, int region ordinal * count
+ *   dictionary  int count, string region * count, ordinal is the position
+ *   footer      long offset of dictionary, long record count, int MAGIC
+ *   string      int length in bytes, -1 for null, UTF-8 bytes
+ * </pre>
+ * Dates are parsed and content hashes computed here as MessageDocumentBuilder does, in the default time zone.
+ * Only finish writes the footer, so a snapshot closed after a failure is rejected by the reader
+ */
+public class MessageSnapshotWriter implements Closeable {
+    static final int MAGIC = 0x4D534E50; // "MSNP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int FOOTER_BYTES = 20;
+    static final int HAS_ID = 1;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(4096);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> regions = new ArrayList<>();
+    private long position;
+    private long count;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * @param file snapshot to create, existing one is overwritten
+     * @throws IOException
+     */
+    public MessageSnapshotWriter(final File file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        position = HEADER_BYTES;
+    }
+
+    /**
+     * Convert JSON file to a snapshot without reading it into memory
+     *
+     * @param json JSON file with array of messages, same format as resources/tutorial.json
+     * @param snapshot snapshot to create, deleted if the conversion fails
+     * @return number of converted messages
+     * @throws IOException
+     */
+    public static long convert(final File json, final File snapshot) throws IOException {
+        try (MessageStream messages = Helper.openMessageStream(json);
+             MessageSnapshotWriter writer = new MessageSnapshotWriter(snapshot)) {
+            while (messages.hasNext()) {
+                writer.add(messages.next());
+            }
+            writer.finish();
+            return writer.getCount();
+        } catch (IOException | RuntimeException e) {
+            snapshot.delete();
+            throw e;
+        }
+    }
+
+    public void add(final Message message) throws IOException {
+        final String id = message.getId();
+        final String[] messageRegions = message.getRegion() == null ? new String[0] : message.getRegion();
+        recordBytes.reset();
+        record.writeByte(id != null ? HAS_ID : 0);
+        if (id != null) {
+            writeString(record, id);
+            record.writeLong(MessageToDocument.contentHash(message.getTitle(), message.getBody(), messageRegions,
+                    message.getCreationDate()));
+        }
+        record.writeLong(MessageToDocument.parseDate(message.getCreationDate()));
+        writeString(record, message.getTitle());
+        writeString(record, message.getBody());
+        record.writeInt(messageRegions.length);
+        for (String region : messageRegions) {
+            record.writeInt(ordinal(region));
+        }
+        out.writeInt(recordBytes.size());
+        recordBytes.writeTo(out);
+        position += 4 + recordBytes.size();
+        count++;
+    }
+
+    /**
+     * @return number of messages added so far
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Write region dictionary and footer after the last message and close the file,
+     * the snapshot is not readable before that
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (finished || closed) {
+            throw new IllegalStateException("Snapshot is already " + (finished ? "finished" : "closed"));
+        }
+        finished = true;
+        final long dictionary = position;
+        out.writeInt(regions.size());
+        for (String region : regions) {
+            writeString(out, region);
+        }
+        out.writeLong(dictionary);
+        out.writeLong(count);
+        out.writeInt(MAGIC);
+        close();
+    }
+
+    /**
+     * Close the file. Without finish before it the snapshot has no footer and can not be read
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+    }
+
+    private int ordinal(final String region) {
+        Integer ordinal = ordinals.get(region);
+        if (ordinal == null) {
+            ordinal = regions.size();
+            ordinals.put(region, ordinal);
+            regions.add(region);
+        }
+        return ordinal;
+    }
+
+    private static void writeString(final DataOutputStream to, final String value) throws IOException {
+        if (value == null) {
+            to.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        to.writeInt(bytes.length);
+        to.write(bytes);
+    }
+}
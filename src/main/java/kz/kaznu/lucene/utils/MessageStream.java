@@ -0,0 +1,52 @@
+package kz.kaznu.lucene.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import kz.kaznu.lucene.model.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls messages one by one from a JSON array like resources/tutorial.json.
+ * Only the current message is kept in memory, so the size of the file does not matter.
+ * Use Helper.openMessageStream to create one.
+ */
+public class MessageStream implements Iterator<Message>, Closeable {
+    private final Gson gson;
+    private final JsonReader reader;
+
+    MessageStream(final Gson gson, final Reader source) throws IOException {
+        this.gson = gson;
+        this.reader = new JsonReader(source);
+        this.reader.setLenient(true); // tutorial files have comments in them
+        this.reader.beginArray();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return reader.peek() != JsonToken.END_ARRAY;
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    @Override
+    public Message next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return gson.fromJson(reader, Message.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
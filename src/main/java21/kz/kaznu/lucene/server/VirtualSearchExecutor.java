@@ -0,0 +1,82 @@
+package kz.kaznu.lucene.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every search runs on its own virtual thread. How many run at once is capped by a semaphore with
+ * ServerConfig.getWorkerThreads permits instead of a pool of that size, a second semaphore admits
+ * getWorkerThreads + getQueueCapacity searches in total. A waiting search is a parked virtual thread,
+ * so bursts of thousands cost little memory, and a search blocked on I/O gives its carrier thread away.
+ *
+ * Code run by searches should not block inside synchronized, that pins the carrier: locks around I/O are
+ * ReentrantLock, and HitLoader reads stored fields with pooled readers. SimpleFSDirectory, which reads
+ * inside synchronized, is not used, see DirectoryConfig
+ */
+final class VirtualSearchExecutor extends SearchExecutor {
+    private final ExecutorService threads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("search-virtual-", 0).factory());
+    private final Semaphore admitted;
+    private final Semaphore running;
+
+    VirtualSearchExecutor(final ServerConfig config) {
+        super(config);
+        this.admitted = new Semaphore(config.getWorkerThreads() + config.getQueueCapacity());
+        this.running = new Semaphore(config.getWorkerThreads(), true);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(final Callable<T> search) {
+        if (!admitted.tryAcquire()) {
+            return reject();
+        }
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long start = System.nanoTime();
+        try {
+            threads.execute(() -> {
+                try {
+                    if (!running.tryAcquire(maxQueueNanos() - (System.nanoTime() - start), TimeUnit.NANOSECONDS)) {
+                        shed(result);
+                        return;
+                    }
+                    try {
+                        run(search, result);
+                    } finally {
+                        running.release();
+                    }
+                } catch (InterruptedException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+            admitted.release();
+            return reject();
+        }
+        return result;
+    }
+
+    @Override
+    public int getWaiting() {
+        final int inSystem = config.getWorkerThreads() + config.getQueueCapacity() - admitted.availablePermits();
+        final int searching = config.getWorkerThreads() - running.availablePermits();
+        return Math.max(0, inSystem - searching);
+    }
+
+    @Override
+    public void close() {
+        threads.shutdown();
+        try {
+            threads.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package kz.kaznu.lucene;
 
 import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.CommitPolicy;
 import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import kz.kaznu.lucene.search.SearchHit;
+import kz.kaznu.lucene.search.SearchResults;
 import kz.kaznu.lucene.utils.Helper;
 import org.apache.commons.io.FileUtils;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SortingMergePolicy;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
@@ -35,6 +43,68 @@ public class BasicSearchExamplesTest {
         searchWith.searchInBody("корреспондент");
     }
 
+    @Test
+    public void searchReturnsRequestedFields() throws Exception {
+        indexer.index(true, documents); // create index
+
+        final BasicSearchExamples searchWith = new BasicSearchExamples(indexer.readIndex());
+        final SearchResults results = searchWith.search(searchWith.bodyQuery("корреспондент"), 100, "title");
+
+        Assert.assertFalse(results.isEmpty());
+        Assert.assertEquals(results.getTotalHits(), results.getHits().size());
+        float previousScore = Float.MAX_VALUE;
+        for (SearchHit hit : results.getHits()) {
+            Assert.assertNotNull(hit.get("title"));
+            Assert.assertNull("Only requested fields should be loaded", hit.get("body"));
+            Assert.assertTrue("Hits should stay in order of relevance", hit.getScore() <= previousScore);
+            previousScore = hit.getScore();
+        }
+    }
+
+    @Test
+    public void searchNewestPagesByDate() throws Exception {
+        indexer.index(true, documents); // create index
+
+        final BasicSearchExamples searchWith = new BasicSearchExamples(indexer.readIndex());
+        final SearchResults first = searchWith.searchNewest(new MatchAllDocsQuery(), 0, 5, "creationDate");
+        final SearchResults second = searchWith.searchNewest(new MatchAllDocsQuery(), 5, 5, "creationDate");
+
+        final List<SearchHit> hits = new ArrayList<>(first.getHits());
+        hits.addAll(second.getHits());
+        Assert.assertEquals(10, hits.size());
+        long previousDate = Long.MAX_VALUE;
+        for (SearchHit hit : hits) {
+            final long date = Long.parseLong(hit.get("creationDate"));
+            Assert.assertTrue("Hits should be newest first", date <= previousDate);
+            previousDate = date;
+        }
+    }
+
+    @Test
+    public void searchNewestStopsEarlyOnSortedSegments() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        for (Document document : documents) {
+            writer.add(document);
+            writer.commit(); // one segment per document
+        }
+        writer.getIndexWriter().forceMerge(1);
+        writer.commit();
+
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertTrue(SortingMergePolicy.isSorted(reader.leaves().get(0).reader(), MessageIndexer.NEWEST_FIRST));
+
+            final BasicSearchExamples searchWith = new BasicSearchExamples(reader);
+            final SearchResults newest = searchWith.searchNewest(new MatchAllDocsQuery(), 3, "creationDate");
+            Assert.assertEquals(3, newest.getHits().size());
+            Assert.assertTrue("Merged segment should not be collected further", newest.getTotalHits() < documents.size());
+
+            final SearchResults all = searchWith.searchNewest(new MatchAllDocsQuery(), documents.size(), "creationDate");
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(all.getHits().get(i).get("creationDate"), newest.getHits().get(i).get("creationDate"));
+            }
+        }
+    }
+
     @Test
     public void searchByManyQueriesWithBeforeDate() throws Exception {
         indexer.index(true, documents); // create index
@@ -171,7 +241,8 @@ public class BasicSearchExamplesTest {
     }
 
     @After
-    public void removeIndexes() {
+    public void removeIndexes() throws Exception {
+        indexer.close();
         FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
     }
 
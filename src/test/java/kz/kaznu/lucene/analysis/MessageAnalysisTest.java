@@ -0,0 +1,90 @@
+package kz.kaznu.lucene.analysis;
+
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MessageAnalysisTest {
+    private static final String[] QUERIES = {"дорога", "ремонт AND дорог*", "\"пресс-служба акимата\"",
+            "корреспонденты OR Алматы", "title:погода -снег"};
+
+    @Test
+    public void parsesLikeNewParser() throws Exception {
+        for (String text : QUERIES) {
+            Assert.assertEquals(new QueryParser("body", new RussianAnalyzer()).parse(text),
+                    MessageAnalysis.parse("body", text));
+            Assert.assertEquals(new MultiFieldQueryParser(new String[]{"body", "title"}, new RussianAnalyzer()).parse(text),
+                    MessageAnalysis.parse(new String[]{"body", "title"}, text));
+        }
+    }
+
+    @Test
+    public void parsesConcurrently() throws Exception {
+        final List<Query> expected = new ArrayList<>();
+        for (String text : QUERIES) {
+            expected.add(new MultiFieldQueryParser(new String[]{"body", "title"}, new RussianAnalyzer()).parse(text));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int task = 0; task < 64; task++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        final int query = i % QUERIES.length;
+                        if (!expected.get(query).equals(MessageAnalysis.parse(new String[]{"body", "title"}, QUERIES[query]))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void threadsShareIdleParsers() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            // a thread per parse, as with virtual threads
+            final Thread thread = new Thread(() -> {
+                try {
+                    MessageAnalysis.parse("summary", "ASTANA");
+                    MessageAnalysis.parse("summary", "AND");
+                } catch (ParseException e) {
+                    // the parser is returned to the pool anyway
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        Assert.assertEquals(1, MessageAnalysis.idleParsers("summary"));
+    }
+
+    @Test
+    public void keepsPoolsOfRecentFields() throws Exception {
+        MessageAnalysis.parse("author", "Тима");
+        for (int i = 0; i < MessageAnalysis.MAX_FIELD_SETS; i++) {
+            // fields taken from requests
+            MessageAnalysis.parse("field" + i, "ASTANA");
+            MessageAnalysis.parse("author", "Тима");
+        }
+        Assert.assertTrue(MessageAnalysis.pooledFieldSets() <= MessageAnalysis.MAX_FIELD_SETS);
+        Assert.assertEquals(0, MessageAnalysis.idleParsers("field0"));
+        Assert.assertEquals(1, MessageAnalysis.idleParsers("author"));
+    }
+}
@@ -0,0 +1,39 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.constants.Constants;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+public class BulkIndexerTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+    private final File file = new File(getClass().getClassLoader().getResource("tutorial.json").getFile());
+
+    @Test
+    public void indexesThroughAllStages() throws Exception {
+        final BulkIndexer bulkIndexer = new BulkIndexer(3, 2, 2); // tiny queues to exercise backpressure
+        final BulkIndexer.Result result = bulkIndexer.index(file, indexer.openWriter(true, CommitPolicy.explicit()));
+        System.out.println(result);
+
+        Assert.assertEquals(19, result.getIndexed());
+        Assert.assertEquals(3, result.getStages().size());
+        for (StageStats stage : result.getStages()) {
+            Assert.assertEquals(stage.getName(), 19, stage.getItems());
+        }
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(19, reader.numDocs());
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
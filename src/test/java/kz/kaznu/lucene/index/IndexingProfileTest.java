@@ -0,0 +1,75 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.constants.Constants;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+public class IndexingProfileTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt(),
+            IndexingProfile.BULK);
+
+    @Test
+    public void bulkMergesToOneSegmentOnClose() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        for (int i = 0; i < 5; i++) {
+            writer.add(document(i));
+            writer.commit(); // one segment per commit
+        }
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(5, reader.leaves().size());
+        }
+        indexer.close();
+
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(1, reader.leaves().size());
+            Assert.assertEquals(5, reader.numDocs());
+        }
+    }
+
+    @Test
+    public void bulkMergesOnlyOnFinish() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            indexer.index(i == 0, document(i)); // one segment per call
+        }
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(3, reader.leaves().size());
+        }
+        indexer.finish();
+
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(1, reader.leaves().size());
+            Assert.assertEquals(3, reader.numDocs());
+        }
+    }
+
+    @Test
+    public void realtimeThrottlesMerges() {
+        final IndexWriterConfig iwc = IndexingProfile.REALTIME.configure(new IndexWriterConfig(new KeywordAnalyzer()));
+        final ConcurrentMergeScheduler scheduler = (ConcurrentMergeScheduler) iwc.getMergeScheduler();
+        Assert.assertEquals(IndexingProfile.REALTIME_MERGE_THREADS, scheduler.getMaxThreadCount());
+        Assert.assertTrue(scheduler.getAutoIOThrottle());
+        Assert.assertEquals(8, iwc.getRAMBufferSizeMB(), 0);
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+
+    private static Document document(final int i) {
+        return MessageToDocument.createWith("Заголовок " + i, "Тело документа " + i,
+                new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM");
+    }
+}
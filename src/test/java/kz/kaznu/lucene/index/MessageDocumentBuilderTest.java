@@ -0,0 +1,57 @@
+package kz.kaznu.lucene.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+public class MessageDocumentBuilderTest {
+    private static final String[] regions = {"Астана", "ALMATY_REGION"};
+
+    @Test
+    public void buildsSameDocumentAsCreateWith() throws Exception {
+        final Document expected = MessageToDocument.createWith("Заголовок", "Тело", regions, "Feb 7, 2016 7:55:20 PM");
+        final Document actual = new MessageDocumentBuilder().build("Заголовок", "Тело", regions, "Feb 7, 2016 7:55:20 PM");
+
+        for (String field : new String[]{"title", "body", "region", "creationDate"}) {
+            Assert.assertEquals(field, expected.get(field), actual.get(field));
+        }
+        // one exact term per region
+        Assert.assertArrayEquals(regions, actual.getValues("region"));
+        Assert.assertArrayEquals(expected.getValues("region"), actual.getValues("region"));
+        Assert.assertArrayEquals(expected.getBinaryValues("region"), actual.getBinaryValues("region"));
+    }
+
+    @Test
+    public void reusesDocument() throws Exception {
+        final MessageDocumentBuilder builder = new MessageDocumentBuilder();
+        final Document first = builder.build("Первый", "Тело", regions, "Feb 7, 2016 7:55:20 PM");
+        final Document second = builder.build("Второй", "Тело", new String[]{"GLOBAL"}, "Feb 8, 2016 7:55:20 PM");
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals("Второй", second.get("title"));
+        Assert.assertEquals("GLOBAL", second.get("region"));
+        Assert.assertArrayEquals(new BytesRef[]{new BytesRef("GLOBAL")}, second.getBinaryValues("region"));
+        Assert.assertEquals(MessageToDocument.parseDate("Feb 8, 2016 7:55:20 PM"),
+                second.getField("creationDate").numericValue().longValue());
+    }
+
+    @Test
+    public void parsesDatesLikeSimpleDateFormat() throws Exception {
+        final SimpleDateFormat legacy = new SimpleDateFormat("MMM dd, yyyy hh:mm:ss a", Locale.ENGLISH);
+        for (String date : new String[]{"Feb 7, 2016 7:55:20 PM", "Feb 06, 2016 07:55:22 PM", "Jan 1, 2016 12:00:00 AM"}) {
+            Assert.assertEquals(date, legacy.parse(date).getTime() / 1000, MessageToDocument.parseDate(date));
+        }
+    }
+
+    @Test
+    public void countsParseFailures() throws Exception {
+        final long before = MessageToDocument.getDateParseFailures();
+        Assert.assertEquals(0L, MessageToDocument.parseDate("not a date"));
+        Assert.assertEquals(0L, MessageToDocument.parseDate(null));
+        Assert.assertEquals(before + 2, MessageToDocument.getDateParseFailures());
+    }
+}
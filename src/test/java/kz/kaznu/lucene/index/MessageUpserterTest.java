@@ -0,0 +1,90 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.model.Message;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MessageUpserterTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void skipsUnchangedAndReplacesChanged() throws Exception {
+        try (MessageUpserter upserter = indexer.openUpserter(CommitPolicy.explicit())) {
+            Assert.assertTrue(upserter.upsert(message(1L, null, "Погода в Астане")));
+            Assert.assertFalse("Same content should not be written", upserter.upsert(message(1L, null, "Погода в Астане")));
+            Assert.assertTrue(upserter.upsert(message(1L, null, "Снег в Астане")));
+            Assert.assertTrue(upserter.upsert(message(null, "http://tengrinews.kz/2", "Ремонт дорог")));
+            Assert.assertTrue(upserter.exists("http://tengrinews.kz/2"));
+            Assert.assertTrue(upserter.delete("http://tengrinews.kz/2"));
+            Assert.assertFalse(upserter.exists("http://tengrinews.kz/2"));
+
+            Assert.assertEquals(2, upserter.getAdded());
+            Assert.assertEquals(1, upserter.getUpdated());
+            Assert.assertEquals(1, upserter.getUnchanged());
+            Assert.assertEquals(1, upserter.getDeleted());
+        }
+        indexer.close();
+
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(1, reader.numDocs());
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            Assert.assertEquals("Снег в Астане",
+                    reader.document(searcher.search(new TermQuery(new Term("id", "1")), 1).scoreDocs[0].doc).get("title"));
+        }
+    }
+
+    @Test
+    public void upsertsBatchesAgainstCommittedIndex() throws Exception {
+        try (MessageUpserter upserter = indexer.openUpserter(CommitPolicy.explicit())) {
+            Assert.assertEquals(3, upserter.upsert(Arrays.asList(message(3L, null, "Три"), message(1L, null, "Один"),
+                    message(2L, null, "Два")).iterator(), 2));
+        }
+        indexer.close();
+
+        // new upserter knows nothing, ids come from the index; cache of one entry forces reopen
+        final MessageUpserter upserter = new MessageUpserter(indexer.openWriter(false, CommitPolicy.explicit()), 1);
+        try {
+            Assert.assertEquals(2, upserter.upsert(Arrays.asList(message(2L, null, "Два"), message(4L, null, "Четыре"),
+                    message(1L, null, "Один!"), message(4L, null, "Четыре")).iterator(), 4));
+            Assert.assertEquals(1, upserter.getAdded());
+            Assert.assertEquals(1, upserter.getUpdated());
+            Assert.assertEquals(2, upserter.getUnchanged());
+        } finally {
+            upserter.close();
+        }
+        indexer.close();
+
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(4, reader.numDocs());
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+
+    private static Message message(final Long notificationId, final String url, final String title) {
+        final Message message = new Message();
+        message.setNotificationId(notificationId);
+        message.setUrl(url);
+        message.setTitle(title);
+        message.setBody("Тело новости");
+        message.setRegion(new String[]{"ASTANA"});
+        message.setCreationDate("Feb 7, 2016 7:55:20 PM");
+        return message;
+    }
+}
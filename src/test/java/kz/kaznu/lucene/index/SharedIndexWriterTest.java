@@ -0,0 +1,138 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.analysis.MessageAnalysis;
+import kz.kaznu.lucene.constants.Constants;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SharedIndexWriterTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void commitsEveryNDocs() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.everyDocs(10));
+        for (int i = 0; i < 25; i++) {
+            writer.add(document(i));
+        }
+        Assert.assertEquals(5, writer.getUncommittedCount());
+        assertCommitted(20);
+
+        writer.commit();
+        assertCommitted(25);
+    }
+
+    @Test
+    public void commitsEveryTMillis() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.everyMillis(50));
+        writer.add(document(0));
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getUncommittedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertCommitted(1);
+    }
+
+    @Test
+    public void addsFromManyThreads() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> adds = new ArrayList<>();
+        try {
+            for (int t = 0; t < 4; t++) {
+                adds.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        writer.add(document(i));
+                    }
+                    return null;
+                }));
+            }
+            // rethrows a failure of any thread
+            for (Future<?> add : adds) {
+                add.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // index methods reuse opened writer instead of failing on the write lock
+        indexer.index(false, document(0));
+        indexer.close();
+        assertCommitted(201);
+    }
+
+    @Test
+    public void rejectsOtherAnalyzerWhileShared() throws Exception {
+        indexer.openWriter(true, CommitPolicy.explicit());
+        final List<Document> documents = new ArrayList<>();
+        documents.add(document(0));
+        try {
+            indexer.index(false, documents, new StandardAnalyzer());
+            Assert.fail("Shared writer should not take another analyzer");
+        } catch (IllegalStateException e) {
+            // documents would be analyzed by the shared writer's analyzer
+        }
+
+        indexer.index(false, documents, MessageAnalysis.indexAnalyzer());
+        indexer.close();
+        assertCommitted(1);
+    }
+
+    @Test
+    public void closesDirectoriesWithWriterAndReader() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        writer.add(document(0));
+        final Directory writerDirectory = writer.getIndexWriter().getDirectory();
+        indexer.close();
+        Assert.assertFalse(writer.isOpen());
+        assertClosed(writerDirectory);
+
+        final DirectoryReader reader = (DirectoryReader) indexer.readIndex();
+        Assert.assertEquals(1, reader.numDocs());
+        reader.close();
+        assertClosed(reader.directory());
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+
+    private void assertCommitted(final int expected) throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(expected, reader.numDocs());
+        }
+    }
+
+    private static void assertClosed(final Directory directory) throws Exception {
+        try {
+            directory.listAll();
+            Assert.fail("Directory should be closed");
+        } catch (AlreadyClosedException e) {
+            // closed
+        }
+    }
+
+    private static Document document(final int i) {
+        return MessageToDocument.createWith("Заголовок " + i, "Тело документа " + i,
+                new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM");
+    }
+}
@@ -0,0 +1,90 @@
+package kz.kaznu.lucene.index;
+
+import kz.kaznu.lucene.constants.Constants;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Needs a small heap, run it with mvn test -Plow-memory
+ */
+public class StreamingIndexTest {
+    private static final long MAX_HEAP = 128L << 20;
+
+    private static final String[] WORDS = {"корреспондент", "Астана", "дорога", "полиция", "авария",
+            "водитель", "новости", "погода", "снег", "улица", "город", "область", "министр", "школа"};
+    private static final String[] REGIONS = {"Астана", "ALMATY_REGION", "AKTOBE_REGION", "GLOBAL"};
+
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+    private final File jsonFile = new File(Constants.TMP_DIR + "/tutorial_stream" + rnd.nextInt() + ".json");
+
+    @Test
+    public void indexFileLargerThanHeap() throws Exception {
+        final long heap = Runtime.getRuntime().maxMemory();
+        // file is three times the heap, so with a default heap it would take gigabytes of disk
+        Assume.assumeTrue("Run with -Plow-memory, heap is " + (heap >> 20) + " MB", heap <= MAX_HEAP);
+        final long count = generate(jsonFile, 3 * heap);
+        Assert.assertTrue("Generated file should be larger than heap", jsonFile.length() > 3 * heap);
+
+        final long indexed = indexer.index(true, jsonFile);
+        Assert.assertEquals(count, indexed);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(count, reader.numDocs());
+        }
+    }
+
+    @After
+    public void removeIndexes() {
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+        FileUtils.deleteQuietly(jsonFile);
+    }
+
+    /**
+     * Writes messages in tutorial.json format until file reaches the requested size
+     *
+     * @return number of written messages
+     */
+    private static long generate(final File file, final long size) throws IOException {
+        final Random random = new Random(42);
+        long count = 0;
+        long written = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.write("[\n");
+            while (written < size) {
+                final StringBuilder message = new StringBuilder(4096);
+                message.append(count == 0 ? "" : ",\n")
+                        .append("{\"title\": \"").append(words(random, 8))
+                        .append("\", \"body\": \"").append(words(random, 300))
+                        .append("\", \"region\": [\"").append(REGIONS[random.nextInt(REGIONS.length)])
+                        .append("\"], \"creationDate\": \"Feb 7, 2016 7:55:20 PM\"}");
+                out.write(message.toString());
+                written += message.toString().getBytes(StandardCharsets.UTF_8).length;
+                count++;
+            }
+            out.write("\n]");
+        }
+        return count;
+    }
+
+    private static String words(final Random random, final int count) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package kz.kaznu.lucene.metrics;
+
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexMetricsTest {
+
+    @Test
+    public void timesEveryFlush() throws Exception {
+        // flushes are found by InfoStream messages of Lucene, this fails when they change
+        final IndexMetrics metrics = new IndexMetrics(() -> 0);
+        final IndexWriterConfig iwc = metrics.instrument(new IndexWriterConfig(new KeywordAnalyzer()));
+        iwc.setMaxBufferedDocs(2); // flushed on its own every two documents
+        try (RAMDirectory directory = new RAMDirectory(); IndexWriter writer = new IndexWriter(directory, iwc)) {
+            for (int i = 0; i < 5; i++) {
+                writer.addDocument(MessageToDocument.createWith("Заголовок " + i, "Тело документа " + i,
+                        new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+            }
+            Assert.assertEquals(2, metrics.getFlushes().getCount());
+            writer.commit();
+            Assert.assertEquals(3, metrics.getFlushes().getCount());
+            Assert.assertTrue(metrics.getFlushes().getMaxNanos() > 0);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package kz.kaznu.lucene.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1_000_000, histogram.getMaxNanos());
+        Assert.assertEquals(500_500, histogram.getMeanNanos(), 1);
+        assertClose(500_000, histogram.getValueAtPercentile(50));
+        assertClose(990_000, histogram.getValueAtPercentile(99));
+        Assert.assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(1.0, histogram.getMillisAtPercentile(100), 0);
+    }
+
+    @Test
+    public void bucketsCoverAllValues() {
+        long previous = -1;
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 1L << 40, Long.MAX_VALUE}) {
+            final int bucket = LatencyHistogram.bucket(value);
+            Assert.assertTrue(bucket >= previous);
+            previous = bucket;
+            if (value < 1L << 45) {
+                Assert.assertTrue(LatencyHistogram.highestValue(bucket) >= value);
+                assertClose(value, LatencyHistogram.highestValue(bucket));
+            }
+        }
+    }
+
+    @Test
+    public void emptyHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99.9));
+        Assert.assertEquals(0, histogram.getMeanNanos(), 0);
+    }
+
+    private static void assertClose(final long expected, final long actual) {
+        Assert.assertEquals(expected, actual, Math.max(1, expected / LatencyHistogram.SUB_BUCKETS));
+    }
+}
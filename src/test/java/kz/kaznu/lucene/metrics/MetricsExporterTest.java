@@ -0,0 +1,71 @@
+package kz.kaznu.lucene.metrics;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class MetricsExporterTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void exportsSearchAndIndexMetrics() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        for (int i = 0; i < 3; i++) {
+            writer.add(MessageToDocument.createWith("Заголовок " + i, "Тело документа " + i,
+                    new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM"));
+            writer.commit();
+        }
+
+        final SearchMetrics searchMetrics = new SearchMetrics();
+        searchMetrics.setSlowQueryLog(new SlowQueryLog(0, 0)); // every query is slow
+        try (IndexReader reader = indexer.readIndex();
+             MetricsExporter exporter = new MetricsExporter(indexer.getPathToIndexFolder(), searchMetrics,
+                     indexer.getMetrics())) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+            search.setMetrics(searchMetrics);
+            search.search(new TermQuery(new Term("region", "Астана")), 10);
+            search.searchNewest(new TermQuery(new Term("region", "Астана")), 10);
+
+            final ObjectName name = exporter.register();
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(3L, server.getAttribute(name, "IndexedDocs"));
+            Assert.assertEquals(3, server.getAttribute(name, "SegmentCount"));
+            Assert.assertEquals(3L, ((CompositeData) server.getAttribute(name, "Flushes")).get("count"));
+            Assert.assertEquals(2L, server.getAttribute(name, "SlowQueries"));
+
+            final TabularData latencies = (TabularData) server.getAttribute(name, "SearchLatencies");
+            final CompositeData relevance = latencies.get(new Object[]{"relevance/TermQuery"});
+            Assert.assertNotNull(relevance);
+            Assert.assertEquals(1L, ((CompositeData) relevance.get("value")).get("count"));
+            Assert.assertNotNull(latencies.get(new Object[]{"newest/TermQuery"}));
+
+            exporter.close();
+            Assert.assertFalse(server.isRegistered(name));
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
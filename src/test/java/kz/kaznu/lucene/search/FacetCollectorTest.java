@@ -0,0 +1,133 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class FacetCollectorTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void countsRegionsAndDaysOfMatches() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги",
+                new String[]{"ALMATY", "ALMATY_REGION"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги",
+                new String[]{"ALMATY"}, "Feb 7, 2016 9:10:00 AM"));
+        documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги",
+                new String[]{"ASTANA"}, "Feb 8, 2016 1:00:00 AM"));
+        documents.add(MessageToDocument.createWith("Погода", "Снег",
+                new String[]{"ASTANA"}, "Feb 9, 2016 1:00:00 AM"));
+        indexer.index(true, documents);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+            final FacetedResults faceted = search.searchWithFacets(search.bodyQuery("ремонт"), 1, DateInterval.DAY, "title");
+
+            Assert.assertEquals(3, faceted.getResults().getTotalHits());
+            Assert.assertEquals(1, faceted.getResults().getHits().size());
+
+            final Facets facets = faceted.getFacets();
+            Assert.assertEquals(Arrays.asList("ALMATY", "ALMATY_REGION", "ASTANA"),
+                    new ArrayList<>(facets.getRegionCounts().keySet()));
+            Assert.assertEquals(2, facets.getRegionCount("ALMATY"));
+            Assert.assertEquals(1, facets.getRegionCount("ASTANA"));
+            Assert.assertEquals(0, facets.getRegionCount("GLOBAL"));
+
+            final ZoneId zone = ZoneId.systemDefault();
+            Assert.assertEquals(2, facets.getDateCounts().size());
+            Assert.assertEquals(Integer.valueOf(2),
+                    facets.getDateCounts().get(LocalDateTime.of(2016, 2, 7, 0, 0).atZone(zone).toEpochSecond()));
+            Assert.assertEquals(Integer.valueOf(1),
+                    facets.getDateCounts().get(LocalDateTime.of(2016, 2, 8, 0, 0).atZone(zone).toEpochSecond()));
+        }
+    }
+
+    @Test
+    public void countsManyRegionsFromDocValues() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги",
+                    new String[]{"REGION_" + i, "GLOBAL"}, "Feb 7, 2016 7:55:20 PM"));
+        }
+        indexer.index(true, documents);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+            final Facets facets = search.searchWithFacets(search.bodyQuery("ремонт"), 1, DateInterval.MONTH).getFacets();
+
+            Assert.assertEquals(101, facets.getRegionCounts().size());
+            Assert.assertEquals(100, facets.getRegionCount("GLOBAL"));
+            Assert.assertEquals(1, facets.getRegionCount("REGION_42"));
+            Assert.assertEquals(Integer.valueOf(100), facets.getDateCounts().values().iterator().next());
+        }
+    }
+
+    @Test
+    public void unparsedDatesGoToOverflow() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги",
+                new String[]{"ALMATY"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги",
+                new String[]{"ALMATY"}, "Feb 7, 2016 8:10:00 PM"));
+        documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги",
+                new String[]{"ASTANA"}, "not a date"));
+        indexer.index(true, documents);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+            final Facets facets = search.searchWithFacets(search.bodyQuery("ремонт"), 1, DateInterval.HOUR).getFacets();
+
+            Assert.assertEquals(2, facets.getDateCounts().size());
+            Assert.assertEquals(1, facets.getOtherDateCount());
+            Assert.assertEquals(2, SegmentFacets.of(reader.leaves().get(0).reader())
+                    .dates(reader.leaves().get(0).reader(), DateInterval.HOUR, ZoneId.systemDefault()).buckets.size());
+        }
+    }
+
+    @Test
+    public void keepsNewestBuckets() {
+        final ZoneId zone = ZoneId.of("Asia/Almaty");
+        final long newest = LocalDateTime.of(2016, 2, 7, 19, 55, 20).atZone(zone).toEpochSecond();
+        final long oldest = LocalDateTime.of(2010, 1, 1, 0, 0).atZone(zone).toEpochSecond();
+        final DateBuckets buckets = new DateBuckets(DateInterval.HOUR, zone, oldest, newest);
+
+        Assert.assertEquals(DateBuckets.MAX_BUCKETS, buckets.size());
+        Assert.assertEquals(DateBuckets.MAX_BUCKETS - 1, buckets.indexOf(newest));
+        Assert.assertEquals(-1, buckets.indexOf(oldest));
+    }
+
+    @Test
+    public void bucketsFollowCalendar() {
+        final ZoneId zone = ZoneId.of("Asia/Almaty");
+        final long time = LocalDateTime.of(2016, 2, 7, 19, 55, 20).atZone(zone).toEpochSecond();
+
+        Assert.assertEquals(LocalDateTime.of(2016, 2, 7, 19, 0).atZone(zone).toEpochSecond(),
+                DateInterval.HOUR.bucketStart(time, zone));
+        final long month = DateInterval.MONTH.bucketStart(time, zone);
+        Assert.assertEquals(LocalDateTime.of(2016, 2, 1, 0, 0).atZone(zone).toEpochSecond(), month);
+        Assert.assertEquals(29L * 24 * 3600, DateInterval.MONTH.nextBucketStart(month, zone) - month);
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
@@ -0,0 +1,94 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.ru.RussianAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FuzzyQueryBuilderTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Before
+    public void createIndex() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        documents.add(MessageToDocument.createWith("Новости", "Корреспонденты сообщают о ремонте",
+                new String[]{"ALMATY"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Новости", "Пресс-служба акимата",
+                new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Новости", "Дорога закрыта",
+                new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+        indexer.index(true, documents);
+    }
+
+    @Test
+    public void findsOtherWordFormWithTypo() throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+
+            final SearchResults results = search.search(search.typoTolerantQuery("кореспондентом", "body"), 10, "body");
+            Assert.assertEquals(1, results.getTotalHits());
+            Assert.assertTrue(results.getHits().get(0).get("body").startsWith("Корреспонденты"));
+
+            Assert.assertEquals(2, search.search(search.typoTolerantQuery("кореспондентом дорогу", "body"), 10).getTotalHits());
+            Assert.assertEquals(0, search.search(search.typoTolerantQuery("и в на", "body"), 10).getTotalHits());
+        }
+    }
+
+    @Test
+    public void firstLettersHaveToMatch() throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+
+            search.setFuzzyQueryBuilder(new FuzzyQueryBuilder(new RussianAnalyzer(), 2, 1, 50, new LevenshteinAutomataCache()));
+            Assert.assertEquals(0, search.search(search.typoTolerantQuery("вкимата", "body"), 10).getTotalHits());
+
+            search.setFuzzyQueryBuilder(new FuzzyQueryBuilder(new RussianAnalyzer(), 2, 0, 50, new LevenshteinAutomataCache()));
+            Assert.assertEquals(1, search.search(search.typoTolerantQuery("вкимата", "body"), 10).getTotalHits());
+        }
+    }
+
+    @Test
+    public void reusesAutomataOfSameStem() {
+        final LevenshteinAutomataCache cache = new LevenshteinAutomataCache(10);
+        final FuzzyQueryBuilder builder = new FuzzyQueryBuilder(new RussianAnalyzer(), 2, 1, 50, cache);
+
+        Assert.assertEquals(builder.build("body", "дороги"), builder.build("body", "дорогой"));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getHits());
+
+        builder.build("title", "дорога");
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shortStemsAllowLessEdits() {
+        final FuzzyQueryBuilder builder = new FuzzyQueryBuilder(new RussianAnalyzer());
+
+        Assert.assertEquals(0, builder.editsFor("ад"));
+        Assert.assertEquals(1, builder.editsFor("аким"));
+        Assert.assertEquals(2, builder.editsFor("корреспондент"));
+        Assert.assertTrue(builder.build("body", "ад") instanceof TermQuery);
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
@@ -0,0 +1,155 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MessageFiltersTest {
+    private static final String[] REGIONS = {"ALMATY_REGION"};
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void filtersDoNotChangeScores() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        documents.add(MessageToDocument.createWith("Ремонт", "Ремонт дороги ремонт моста ремонт",
+                new String[]{"ALMATY_REGION"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Дорога", "Ремонт дороги и длинный текст про погоду и снег",
+                new String[]{"ALMATY_REGION"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Ремонт", "Ремонт дороги ремонт моста ремонт",
+                new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+        indexer.index(true, documents);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+            final SearchResults results = search.search(
+                    search.manyQueriesQuery("ремонт", REGIONS, new long[0], 0), 10, "title");
+
+            Assert.assertEquals(2, results.getTotalHits());
+            // text match decides the order, not constant 1.0
+            Assert.assertEquals("Ремонт", results.getHits().get(0).get("title"));
+            Assert.assertTrue(results.getHits().get(0).getScore() > results.getHits().get(1).getScore());
+        }
+    }
+
+    @Test
+    public void repeatedFiltersAreCached() throws Exception {
+        indexer.index(true, MessageToDocument.createWith("Тима", "Ремонт дороги",
+                new String[]{"ALMATY_REGION"}, "Feb 7, 2016 7:55:20 PM"));
+
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+            search.search(search.manyQueriesQuery("ремонт", REGIONS, new long[0], 0), 10);
+            final long hits = MessageFilters.FILTER_CACHE.getHitCount();
+
+            // other text, same region and date filters
+            final SearchResults results = search.search(search.manyQueriesQuery("дороги", REGIONS, new long[0], 0), 10);
+            Assert.assertEquals(1, results.getTotalHits());
+            Assert.assertTrue(MessageFilters.FILTER_CACHE.getHitCount() > hits);
+        }
+    }
+
+    @Test
+    public void recognizesFilters() throws Exception {
+        Assert.assertTrue(MessageFilters.isFilter(MessageFilters.regionTerms(REGIONS)));
+        Assert.assertTrue(MessageFilters.isFilter(MessageFilters.regions(REGIONS)));
+        Assert.assertTrue(MessageFilters.isFilter(MessageFilters.dateRange(0, 10)));
+        Assert.assertFalse(MessageFilters.isFilter(new TermQuery(new Term("body", "ремонт"))));
+    }
+
+    @Test
+    public void regionsAreExactTerms() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        documents.add(MessageToDocument.createWith("Тима", "Ремонт дороги",
+                new String[]{"ALMATY", "ALMATY_REGION"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Тима", "Ремонт моста",
+                new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM"));
+        indexer.index(true, documents);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            for (String[] regions : new String[][]{{"ALMATY"}, {"ALMATY_REGION"}, {"Астана"}}) {
+                Assert.assertEquals(1, searcher.count(MessageFilters.regionTerms(regions)));
+                Assert.assertEquals(1, searcher.count(MessageFilters.regions(regions)));
+            }
+            // not stemmed or lowercased
+            for (String[] regions : new String[][]{{"астана"}, {"almaty"}, {"REGION"}}) {
+                Assert.assertEquals(0, searcher.count(MessageFilters.regionTerms(regions)));
+                Assert.assertEquals(0, searcher.count(MessageFilters.regions(regions)));
+            }
+
+            final SearchResults results = new BasicSearchExamples(reader).search(
+                    new RegionFilter("ALMATY_REGION"), 10, "region");
+            Assert.assertEquals("ALMATY ALMATY_REGION", results.getHits().get(0).get("region"));
+        }
+    }
+
+    @Test
+    public void regionFilterMatchesLikeTermFilter() throws Exception {
+        // first segment has more regions than SegmentFacets keeps sets of, second one fits
+        final List<Document> manyRegions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            manyRegions.add(MessageToDocument.createWith("Тима", i % 2 == 0 ? "Ремонт дороги" : "Погода",
+                    i % 3 == 0 ? new String[]{"R" + i, "ASTANA"} : new String[]{"R" + i}, "Feb 7, 2016 7:55:20 PM"));
+        }
+        indexer.index(true, manyRegions);
+        final List<Document> fewRegions = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            fewRegions.add(MessageToDocument.createWith("Тима", i % 2 == 0 ? "Ремонт дороги" : "Погода",
+                    new String[]{i % 3 == 0 ? "ASTANA" : "ALMATY", "R" + (i % 5)}, "Feb 7, 2016 7:55:20 PM"));
+        }
+        indexer.index(false, fewRegions);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(2, reader.leaves().size());
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            searcher.setQueryCache(null);
+            for (String[] regions : new String[][]{{"ASTANA"}, {"R3", "R65", "MISSING"}, {"ALMATY", "R1"}, {"MISSING"}}) {
+                final RegionFilter filter = new RegionFilter(regions);
+                Assert.assertEquals(searcher.count(MessageFilters.regionTerms(regions)), searcher.count(filter));
+                final Query repair = new TermQuery(new Term("body", "ремонт"));
+                Assert.assertEquals(searcher.count(new BooleanQuery.Builder()
+                                .add(repair, BooleanClause.Occur.MUST)
+                                .add(MessageFilters.regionTerms(regions), BooleanClause.Occur.FILTER).build()),
+                        searcher.count(new BooleanQuery.Builder()
+                                .add(repair, BooleanClause.Occur.MUST)
+                                .add(filter, BooleanClause.Occur.FILTER).build()));
+            }
+            Assert.assertEquals(34 + 10, searcher.count(new RegionFilter("ASTANA")));
+            Assert.assertEquals(new RegionFilter("R1", "ALMATY"), new RegionFilter("ALMATY", "R1", "R1"));
+            // one instance per set of regions, so ordinals are resolved once
+            Assert.assertSame(MessageFilters.regions("R1", "ALMATY"), MessageFilters.regions("ALMATY", "R1", "R1"));
+        }
+    }
+
+    @Test
+    public void nowIsRoundedUp() {
+        final long now = MessageFilters.now();
+        Assert.assertEquals(0, now % MessageFilters.NOW_ROUNDING_SECONDS);
+        Assert.assertTrue(now >= System.currentTimeMillis() / 1000L);
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
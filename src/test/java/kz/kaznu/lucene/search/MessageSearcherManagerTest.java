@@ -0,0 +1,71 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.search.IndexSearcher;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+public class MessageSearcherManagerTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void newDocumentsBecomeVisibleWithoutCommit() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        try (MessageSearcherManager manager = new MessageSearcherManager(writer, 10)) {
+            Assert.assertEquals(0, count(manager));
+
+            writer.add(MessageToDocument.createWith("Заголовок", "Тело документа",
+                    new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM"));
+
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (count(manager) == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(1, count(manager));
+            Assert.assertEquals("Nothing should be committed", 1, writer.getUncommittedCount());
+        }
+    }
+
+    @Test
+    public void acquiredSearcherSurvivesRefresh() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        try (MessageSearcherManager manager = new MessageSearcherManager(writer, 10)) {
+            final IndexSearcher old = manager.acquire();
+            try {
+                writer.add(MessageToDocument.createWith("Заголовок", "Тело документа",
+                        new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM"));
+                manager.maybeRefreshBlocking();
+
+                Assert.assertEquals(1, count(manager));
+                Assert.assertEquals("Old reader should still be usable", 0, old.getIndexReader().numDocs());
+            } finally {
+                manager.release(old);
+            }
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+
+    private static int count(final MessageSearcherManager manager) throws Exception {
+        final IndexSearcher searcher = manager.acquire();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            manager.release(searcher);
+        }
+    }
+}
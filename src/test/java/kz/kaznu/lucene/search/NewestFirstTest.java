@@ -0,0 +1,58 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class NewestFirstTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void findsOldMatchesOutsideOfFirstWindow() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        documents.add(MessageToDocument.createWith("Старое", "Старое", new String[]{"AKMOLA_REGION"}, "Jan 1, 2010 9:00:00 AM"));
+        documents.add(MessageToDocument.createWith("Старое", "Старое", new String[]{"AKMOLA_REGION"}, "Jan 2, 2010 9:00:00 AM"));
+        final String[] months = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+        for (int year = 2010; year <= 2015; year++) {
+            for (String month : months) {
+                documents.add(MessageToDocument.createWith("Новое", "Новое", new String[]{"ASTANA"},
+                        month + " 15, " + year + " 9:00:00 AM"));
+            }
+        }
+        indexer.index(true, documents);
+
+        try (IndexReader reader = indexer.readIndex()) {
+            final IndexSearcher searcher = new IndexSearcher(reader);
+
+            final TopDocs old = NewestFirst.search(searcher, MessageFilters.regions(new String[]{"AKMOLA_REGION"}), 0, 5);
+            Assert.assertEquals(2, old.scoreDocs.length);
+            Assert.assertEquals(1, old.scoreDocs[0].doc);
+
+            final TopDocs latest = NewestFirst.search(searcher, MessageFilters.regions(new String[]{"ASTANA"}), 1, 2);
+            Assert.assertEquals(2, latest.scoreDocs.length);
+            Assert.assertEquals(documents.size() - 2, latest.scoreDocs[0].doc); // Nov 2015
+            Assert.assertEquals(documents.size() - 3, latest.scoreDocs[1].doc);
+            Assert.assertTrue("Only latest months should be visited", latest.totalHits < 72);
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
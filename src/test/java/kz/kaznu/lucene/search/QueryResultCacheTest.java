@@ -0,0 +1,156 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Random;
+
+public class QueryResultCacheTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void cachesUntilReaderChanges() throws Exception {
+        final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+        writer.add(MessageToDocument.createWith("Дорога", "Ремонт дороги", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+
+        try (MessageSearcherManager manager = new MessageSearcherManager(writer, 10_000)) {
+            manager.maybeRefreshBlocking();
+            final BasicSearchExamples search = new BasicSearchExamples(manager);
+            final QueryResultCache cache = new QueryResultCache(10);
+            search.setResultCache(cache);
+
+            final SearchResults first = search.search(search.bodyQuery("ремонт"), 10, "title");
+            // equal query built once more is a hit
+            final SearchResults second = search.search(search.bodyQuery("ремонт"), 10, "title");
+            Assert.assertSame(first, second);
+            Assert.assertEquals(1, cache.getHits());
+            Assert.assertEquals(1, cache.getMisses());
+
+            // different limit or fields is a different entry
+            search.search(search.bodyQuery("ремонт"), 5, "title");
+            Assert.assertEquals(2, cache.getMisses());
+
+            final IndexSearcher old = manager.acquire();
+            final IndexReader oldReader = old.getIndexReader();
+            manager.release(old);
+            writer.add(MessageToDocument.createWith("Дорога", "Ремонт моста", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+            manager.maybeRefreshBlocking();
+
+            final SearchResults refreshed = search.search(search.bodyQuery("ремонт"), 10, "title");
+            Assert.assertEquals(2, refreshed.getTotalHits());
+            // results of the previous reader are kept while it may still be searched
+            Assert.assertEquals(0, cache.getInvalidations());
+            Assert.assertSame(first, cache.get(QueryResultCache.key(search.bodyQuery("ремонт"), 10, null, "title"),
+                    oldReader));
+
+            writer.add(MessageToDocument.createWith("Дорога", "Ремонт крыши", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+            manager.maybeRefreshBlocking();
+            Assert.assertEquals(3, search.search(search.bodyQuery("ремонт"), 10, "title").getTotalHits());
+            // third reader, results of the least recently used one are dropped
+            Assert.assertEquals(1, cache.getInvalidations());
+        }
+    }
+
+    @Test
+    public void evictsLeastFrequentlyUsed() throws Exception {
+        indexer.index(true, MessageToDocument.createWith("Дорога", "Ремонт дороги", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+        final BasicSearchExamples search = new BasicSearchExamples(indexer.readIndex());
+        final QueryResultCache cache = new QueryResultCache(2, QueryResultCache.Eviction.LFU, 1);
+        search.setResultCache(cache);
+
+        search.search(search.termQuery("a", "body"), 10);
+        search.search(search.termQuery("a", "body"), 10);
+        search.search(search.termQuery("b", "body"), 10); // b is used recently, but less often than a
+        search.search(search.termQuery("c", "body"), 10);
+
+        Assert.assertEquals(1, cache.getEvictions());
+        search.search(search.termQuery("a", "body"), 10);
+        search.search(search.termQuery("c", "body"), 10);
+        Assert.assertEquals(3, cache.getHits());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        indexer.index(true, MessageToDocument.createWith("Дорога", "Ремонт дороги", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+        final BasicSearchExamples search = new BasicSearchExamples(indexer.readIndex());
+        final QueryResultCache cache = new QueryResultCache(2);
+        search.setResultCache(cache);
+
+        search.search(search.termQuery("a", "body"), 10);
+        search.search(search.termQuery("b", "body"), 10);
+        search.search(search.termQuery("a", "body"), 10); // a is used recently, b is the eldest
+        search.search(search.termQuery("c", "body"), 10);
+
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(2, cache.size());
+        search.search(search.termQuery("a", "body"), 10);
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void equivalentQueriesShareEntry() throws Exception {
+        indexer.index(true, MessageToDocument.createWith("Дорога", "Ремонт дороги", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+        final BasicSearchExamples search = new BasicSearchExamples(indexer.readIndex());
+        final QueryResultCache cache = new QueryResultCache(10);
+        search.setResultCache(cache);
+
+        final Query text = search.bodyQuery("ремонт");
+        search.search(filtered(text, MessageFilters.regions(new String[]{"ASTANA", "ALMATY"}), MessageFilters.dateRange(0, 10)), 10);
+        search.search(filtered(text, MessageFilters.dateRange(0, 10), MessageFilters.regions(new String[]{"ALMATY", "ASTANA"})), 10);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.size());
+
+        // one clause is the same as the clause itself
+        search.search(new BooleanQuery.Builder().add(text, BooleanClause.Occur.MUST).build(), 10);
+        search.search(text, 10);
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void lookupOnNewReaderKeepsResults() throws Exception {
+        indexer.index(true, MessageToDocument.createWith("Дорога", "Ремонт дороги", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+        final QueryResultCache cache = new QueryResultCache(10, QueryResultCache.Eviction.LRU, 1);
+        final QueryResultCache.Key key = QueryResultCache.key(new TermQuery(new Term("body", "ремонт")), 10, null);
+        try (IndexReader reader = indexer.readIndex()) {
+            cache.put(key, reader, new SearchResults(1, Collections.emptyList()));
+            indexer.index(false, MessageToDocument.createWith("Дорога", "Ремонт моста", new String[]{"ASTANA"}, "Feb 7, 2016 7:55:20 PM"));
+            try (IndexReader newReader = indexer.readIndex()) {
+                Assert.assertNull(cache.get(key, newReader));
+                Assert.assertNotNull(cache.get(key, reader));
+                Assert.assertEquals(0, cache.getInvalidations());
+            }
+        }
+    }
+
+    private static Query filtered(final Query text, final Query... filters) {
+        final BooleanQuery.Builder query = new BooleanQuery.Builder().add(text, BooleanClause.Occur.MUST);
+        for (Query filter : filters) {
+            query.add(filter, BooleanClause.Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
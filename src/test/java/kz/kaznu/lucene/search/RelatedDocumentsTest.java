@@ -0,0 +1,93 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RelatedDocumentsTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Before
+    public void createIndex() throws Exception {
+        final List<Document> documents = new ArrayList<>();
+        documents.add(MessageToDocument.createWith("Ремонт дороги", "Дорогу на Капчагай закроют на ремонт до осени",
+                new String[]{"ALMATY_REGION"}, "Feb 7, 2016 7:55:20 PM"));
+        documents.add(MessageToDocument.createWith("Погода", "Синоптики обещают снег и метель в столице",
+                new String[]{"ASTANA"}, "Feb 7, 2016 8:00:00 PM"));
+        documents.add(MessageToDocument.createWith("Дорога на Капчагай", "Ремонт дороги на Капчагай продлится до осени",
+                new String[]{"ALMATY"}, "Feb 8, 2016 9:00:00 AM"));
+        documents.add(MessageToDocument.createWith("Снег", "Метель и снег в столице, синоптики предупреждают",
+                new String[]{"ASTANA"}, "Feb 8, 2016 10:00:00 AM"));
+        documents.add(MessageToDocument.createWith("Аким", "Аким встретился с жителями района",
+                new String[]{"GLOBAL"}, "Feb 9, 2016 10:00:00 AM"));
+        indexer.index(true, documents);
+    }
+
+    @Test
+    public void findsRelatedWithoutSource() throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples search = new BasicSearchExamples(reader);
+
+            final SearchResults roads = search.searchRelated(0, 3, "title");
+            Assert.assertFalse(roads.isEmpty());
+            Assert.assertEquals(2, roads.getHits().get(0).getDocId());
+            for (SearchHit hit : roads.getHits()) {
+                Assert.assertNotEquals(0, hit.getDocId());
+            }
+
+            Assert.assertEquals(3, search.searchRelated(1, 1, "title").getHits().get(0).getDocId());
+        }
+    }
+
+    @Test
+    public void reusesQueryOfSameDocument() throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            final RelatedDocuments related = new RelatedDocuments();
+
+            Assert.assertSame(related.likeQuery(reader, 3), related.likeQuery(reader, 3));
+            Assert.assertEquals(1, related.getMisses());
+            Assert.assertEquals(1, related.getHits());
+            Assert.assertEquals(1, related.search(searcher, 3, 1).scoreDocs[0].doc);
+            Assert.assertTrue(related.interestingTerms(reader, 3).length > 0);
+        }
+    }
+
+    @Test
+    public void dropsQueriesOfClosedSegments() throws Exception {
+        final RelatedDocuments related = new RelatedDocuments();
+        try (IndexReader reader = indexer.readIndex()) {
+            related.likeQuery(reader, 0);
+            related.likeQuery(reader, 3);
+            Assert.assertEquals(2, related.size());
+        }
+        Assert.assertEquals(0, related.size());
+
+        try (IndexReader reader = indexer.readIndex()) {
+            related.likeQuery(reader, 0);
+            Assert.assertEquals(1, related.size());
+        }
+        Assert.assertEquals(0, related.size());
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
@@ -0,0 +1,97 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.utils.Helper;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SearchCursorTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+    private BasicSearchExamples search;
+
+    @Before
+    public void createIndex() throws Exception {
+        final File file = new File(getClass().getClassLoader().getResource("tutorial.json").getFile());
+        indexer.index(true, Helper.readDocumentsFromFile(file));
+        search = new BasicSearchExamples(indexer.readIndex());
+    }
+
+    @Test
+    public void pagesByRelevanceMatchOneBigPage() throws Exception {
+        final Query query = search.multiFieldQuery("дорога OR корреспондент OR Алматы");
+        final SearchResults all = search.search(query, 100, "title");
+        Assert.assertTrue(all.getHits().size() > 3);
+
+        Assert.assertEquals(docIds(all.getHits()), docIds(readAllPages(query, false)));
+    }
+
+    @Test
+    public void pagesNewestFirstMatchOneBigPage() throws Exception {
+        final Query query = new MatchAllDocsQuery();
+        final SearchResults all = search.searchNewest(query, 100, "title");
+
+        Assert.assertEquals(docIds(all.getHits()), docIds(readAllPages(query, true)));
+    }
+
+    @Test
+    public void tokenKeepsPosition() throws Exception {
+        final SearchResults first = search.searchNewestAfter(new MatchAllDocsQuery(), null, 2, "title");
+        final SearchCursor cursor = first.getNextCursor();
+
+        Assert.assertEquals(cursor, SearchCursor.fromToken(cursor.toToken()));
+        Assert.assertEquals(
+                docIds(search.searchNewestAfter(new MatchAllDocsQuery(), cursor, 2).getHits()),
+                docIds(search.searchNewestAfter(new MatchAllDocsQuery(), SearchCursor.fromToken(cursor.toToken()), 2).getHits()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cursorOfOtherOrderIsRejected() throws Exception {
+        final SearchCursor newest = search.searchNewestAfter(new MatchAllDocsQuery(), null, 2).getNextCursor();
+        search.searchAfter(new MatchAllDocsQuery(), newest, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void brokenTokenIsRejected() {
+        SearchCursor.fromToken("AQ");
+    }
+
+    private List<SearchHit> readAllPages(final Query query, final boolean newest) throws Exception {
+        final List<SearchHit> hits = new ArrayList<>();
+        SearchCursor cursor = null;
+        do {
+            final SearchResults page = newest ? search.searchNewestAfter(query, cursor, 3, "title")
+                    : search.searchAfter(query, cursor, 3, "title");
+            Assert.assertTrue(page.getHits().size() <= 3);
+            hits.addAll(page.getHits());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return hits;
+    }
+
+    private static List<Integer> docIds(final List<SearchHit> hits) {
+        final List<Integer> ids = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            ids.add(hit.getDocId());
+        }
+        return ids;
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
@@ -0,0 +1,87 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.CommitPolicy;
+import kz.kaznu.lucene.index.DirectoryConfig;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.index.SharedIndexWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearcherWarmerTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt(),
+            DirectoryConfig.mmap(true).withNrtCaching());
+
+    @Test
+    public void warmsSearcherBeforeItIsPublished() throws Exception {
+        final Path queryLog = Files.createTempFile("queries", ".txt");
+        try {
+            Files.write(queryLog, Arrays.asList("дорога", "", "ремонт AND (", "title:погода"), StandardCharsets.UTF_8);
+            final AtomicInteger warmed = new AtomicInteger();
+            final SearcherWarmer warmer = new SearcherWarmer(
+                    SearcherWarmer.fromQueryLog(queryLog, 10, 1).getQueries()) {
+                @Override
+                public long warm(final IndexSearcher searcher) throws IOException {
+                    warmed.incrementAndGet();
+                    return super.warm(searcher);
+                }
+            };
+            Assert.assertEquals(2, warmer.getQueries().size());
+            Assert.assertEquals(1, SearcherWarmer.fromQueryLog(queryLog, 10, 1).getSkippedQueries());
+
+            final SharedIndexWriter writer = indexer.openWriter(true, CommitPolicy.explicit());
+            final MessageSearcherFactory factory = new MessageSearcherFactory(null,
+                    SlicedIndexSearcher.DEFAULT_MAX_DOCS_PER_SLICE, SlicedIndexSearcher.DEFAULT_MAX_SEGMENTS_PER_SLICE, warmer);
+            try (MessageSearcherManager manager = new MessageSearcherManager(writer, 10_000, factory)) {
+                Assert.assertEquals("Initial searcher should be warmed", 1, warmed.get());
+
+                writer.add(MessageToDocument.createWith("Погода", "Ремонт дорога",
+                        new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM"));
+                manager.maybeRefreshBlocking();
+                Assert.assertEquals("Refreshed searcher should be warmed", 2, warmed.get());
+
+                final IndexSearcher searcher = manager.acquire();
+                try {
+                    Assert.assertEquals(1, searcher.search(warmer.getQueries().get(0), 10).totalHits);
+                } finally {
+                    manager.release(searcher);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(queryLog);
+        }
+    }
+
+    @Test
+    public void readsIndexWithEveryDirectory() throws Exception {
+        indexer.index(true, MessageToDocument.createWith("Погода", "Ремонт дорога",
+                new String[]{"Астана"}, "Feb 7, 2016 7:55:20 PM"));
+        for (DirectoryConfig config : Arrays.asList(DirectoryConfig.defaults(), DirectoryConfig.nio(),
+                DirectoryConfig.mmap(false), DirectoryConfig.mmap(true).withNrtCaching())) {
+            try (IndexReader reader = new MessageIndexer(indexer.getPathToIndexFolder(), config).readIndex()) {
+                Assert.assertEquals(config.toString(), 1, reader.numDocs());
+            }
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
@@ -0,0 +1,129 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.index.ShardRouting;
+import kz.kaznu.lucene.index.ShardedIndexer;
+import kz.kaznu.lucene.model.Message;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ShardedSearcherTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final String path = Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Test
+    public void monthlyShardsOutOfDateRangeAreSkipped() throws Exception {
+        try (ShardedIndexer indexer = new ShardedIndexer(path, ShardRouting.monthly())) {
+            Assert.assertEquals(6, indexer.index(true, Arrays.asList(
+                    message(1L, "Снег в Астане", "Jan 10, 2016 10:00:00 AM"),
+                    message(2L, "Снег в Алматы", "Jan 20, 2016 10:00:00 AM"),
+                    message(3L, "Снег в Астане", "Feb 7, 2016 7:55:20 PM"),
+                    message(4L, "Дождь в Астане", "Feb 8, 2016 7:55:20 PM"),
+                    message(5L, "Снег в Астане", "Mar 1, 2016 8:00:00 AM"),
+                    message(6L, "Жара в Астане", "Mar 2, 2016 8:00:00 AM")).iterator(), 2));
+            Assert.assertEquals(new HashSet<>(Arrays.asList("2016-01", "2016-02", "2016-03")),
+                    indexer.getShardsByName().keySet());
+        }
+
+        // shards are found again in the folder
+        try (ShardedIndexer indexer = new ShardedIndexer(path, ShardRouting.monthly());
+             ShardedSearcher searcher = ShardedSearcher.open(indexer, executor)) {
+            final Query february = new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                    .add(MessageFilters.dateRange(MessageToDocument.parseDate("Feb 1, 2016 12:00:00 AM"),
+                            MessageToDocument.parseDate("Feb 28, 2016 12:00:00 AM")), BooleanClause.Occur.FILTER)
+                    .build();
+            final SearchResults results = searcher.searchNewest(february, 10, "title", "creationDate");
+            Assert.assertEquals(2, results.getTotalHits());
+            Assert.assertEquals("Дождь в Астане", results.getHits().get(0).get("title"));
+            Assert.assertEquals(1, searcher.getSearchedShards());
+            Assert.assertEquals(2, searcher.getSkippedShards());
+        }
+    }
+
+    @Test
+    public void hashShardsAreMergedLikeOneIndex() throws Exception {
+        final List<Message> messages = new ArrayList<>();
+        for (long id = 0; id < 40; id++) {
+            messages.add(message(id, id % 2 == 0 ? "Снег в Астане" : "Дождь в Алматы",
+                    "Feb " + (1 + id % 28) + ", 2016 " + (1 + id % 12) + ":00:00 PM"));
+        }
+        try (ShardedIndexer indexer = new ShardedIndexer(path, ShardRouting.byIdHash(4))) {
+            indexer.index(true, messages.iterator(), 10);
+            try (ShardedSearcher searcher = ShardedSearcher.open(indexer, executor)) {
+                Assert.assertEquals(4, searcher.getShardNames().size());
+
+                final SearchResults snow = searcher.search(new TermQuery(new Term("title", "снег")), 50, "title");
+                Assert.assertEquals(20, snow.getTotalHits());
+                final Set<Integer> docIds = new HashSet<>();
+                for (SearchHit hit : snow.getHits()) {
+                    Assert.assertEquals("Снег в Астане", hit.get("title"));
+                    docIds.add(hit.getDocId());
+                }
+                Assert.assertEquals("Document ids of shards should not overlap", 20, docIds.size());
+
+                final SearchResults newest = searcher.searchNewest(new MatchAllDocsQuery(), 5, "creationDate");
+                Assert.assertEquals(5, newest.getHits().size());
+                long previous = Long.MAX_VALUE;
+                for (SearchHit hit : newest.getHits()) {
+                    final long date = Long.parseLong(hit.get("creationDate"));
+                    Assert.assertTrue(date <= previous);
+                    previous = date;
+                }
+                Assert.assertEquals(MessageToDocument.parseDate("Feb 28, 2016 4:00:00 PM"),
+                        Long.parseLong(newest.getHits().get(0).get("creationDate")));
+            }
+        }
+    }
+
+    @Test
+    public void createReplacesDocumentsOfOpenShards() throws Exception {
+        final List<Message> messages = new ArrayList<>();
+        for (long id = 0; id < 10; id++) {
+            messages.add(message(id, "Снег в Астане", "Feb 7, 2016 7:55:20 PM"));
+        }
+        try (ShardedIndexer indexer = new ShardedIndexer(path, ShardRouting.byIdHash(2))) {
+            indexer.index(true, messages.iterator(), 3);
+            indexer.index(true, messages.iterator(), 3);
+            try (ShardedSearcher searcher = ShardedSearcher.open(indexer, executor)) {
+                Assert.assertEquals(10, searcher.search(new MatchAllDocsQuery(), 20, "title").getTotalHits());
+            }
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        executor.shutdown();
+        FileUtils.deleteQuietly(new File(path)); // remove indexes
+    }
+
+    private static Message message(final Long id, final String title, final String date) {
+        final Message message = new Message();
+        message.setNotificationId(id);
+        message.setTitle(title);
+        message.setBody(title);
+        message.setRegion(new String[]{"ASTANA"});
+        message.setCreationDate(date);
+        return message;
+    }
+}
@@ -0,0 +1,155 @@
+package kz.kaznu.lucene.search;
+
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.Counter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+public class SlicedIndexSearcherTest {
+    private static final int SEGMENTS = 7;
+
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+    private final ExecutorService executor = SlicedIndexSearcher.newExecutor(2);
+
+    @Before
+    public void createIndex() throws Exception {
+        // every call commits a segment of its own, segment i has i + 1 documents
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            final List<Document> documents = new ArrayList<>();
+            for (int i = 0; i <= segment; i++) {
+                documents.add(MessageToDocument.createWith("Дорога " + segment, "Ремонт дороги номер " + i,
+                        new String[]{"ALMATY"}, "Feb 7, 2016 7:55:20 PM"));
+            }
+            indexer.index(segment == 0, documents);
+        }
+    }
+
+    @Test
+    public void packsSmallSegmentsIntoSlices() throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            Assert.assertEquals(SEGMENTS, reader.leaves().size());
+
+            Assert.assertEquals(SEGMENTS, new SlicedIndexSearcher(reader, executor, 1, 100).getSliceCount());
+            Assert.assertEquals(3, new SlicedIndexSearcher(reader, executor, 100, 3).getSliceCount());
+            // 1 + 2 + 3 + 4, 5 + 6, 7
+            Assert.assertEquals(3, new SlicedIndexSearcher(reader, executor, 9, 100).getSliceCount());
+            Assert.assertEquals(1, new SlicedIndexSearcher(reader, null, 1, 1).getSliceCount());
+        }
+    }
+
+    @Test
+    public void parallelSearchFindsSameHits() throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples sequential = new BasicSearchExamples(reader);
+            final BasicSearchExamples parallel = new BasicSearchExamples(reader, executor);
+            parallel.setTimeout(10_000);
+
+            for (String text : new String[]{"ремонт", "номер 3", "дорога 5"}) {
+                final SearchResults expected = sequential.search(sequential.bodyQuery(text), 5, "title");
+                final SearchResults actual = parallel.search(parallel.bodyQuery(text), 5, "title");
+                Assert.assertFalse(actual.isTimedOut());
+                Assert.assertEquals(expected.getTotalHits(), actual.getTotalHits());
+                Assert.assertEquals(expected.getHits().size(), actual.getHits().size());
+                for (int i = 0; i < expected.getHits().size(); i++) {
+                    Assert.assertEquals(expected.getHits().get(i).getDocId(), actual.getHits().get(i).getDocId());
+                    Assert.assertEquals(expected.getHits().get(i).getScore(), actual.getHits().get(i).getScore(), 0.0001f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pagesTiedHitsLikeSequentialSearch() throws Exception {
+        try (IndexReader reader = indexer.readIndex()) {
+            final BasicSearchExamples sequential = new BasicSearchExamples(reader);
+            final BasicSearchExamples parallel = new BasicSearchExamples(new SlicedIndexSearcher(reader, executor, 1, 1));
+            // all documents match both queries, MatchAllDocsQuery gives them the same score
+            for (Query query : new Query[]{new MatchAllDocsQuery(), sequential.bodyQuery("ремонт")}) {
+                final List<Integer> expected = readAllPages(sequential, query);
+                Assert.assertEquals(reader.maxDoc(), expected.size());
+                Assert.assertEquals(expected, readAllPages(parallel, query));
+            }
+        }
+    }
+
+    @Test
+    public void fullQueueSearchesInCallingThread() throws Exception {
+        final ExecutorService small = SlicedIndexSearcher.newExecutor(1, 1);
+        try (IndexReader reader = indexer.readIndex()) {
+            final SlicedIndexSearcher searcher = new SlicedIndexSearcher(reader, small, 1, 1);
+            Assert.assertEquals(SEGMENTS, searcher.getSliceCount());
+            Assert.assertEquals(reader.maxDoc(), searcher.search(new MatchAllDocsQuery(), 100).totalHits);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    public void timeoutKeepsHitsCollectedSoFar() throws Exception {
+        // clock moves by a millisecond every time it is read
+        final Counter clock = new Counter() {
+            private long time;
+
+            @Override
+            public synchronized long addAndGet(final long delta) {
+                return time += delta;
+            }
+
+            @Override
+            public synchronized long get() {
+                return ++time;
+            }
+        };
+        try (IndexReader reader = indexer.readIndex()) {
+            final IndexSearcher searcher = new SlicedIndexSearcher(reader, null);
+            final TimeLimitedSearch.TimedTopDocs limited = TimeLimitedSearch.searchAfter(searcher, null,
+                    new MatchAllDocsQuery(), 100, 5, clock);
+            Assert.assertTrue(limited.isTimedOut());
+            Assert.assertTrue(limited.totalHits > 0);
+            Assert.assertTrue(limited.totalHits < reader.maxDoc());
+            Assert.assertEquals(limited.totalHits, limited.scoreDocs.length);
+
+            final TopDocs all = TimeLimitedSearch.searchAfter(searcher, null, new MatchAllDocsQuery(), 100, 10_000);
+            Assert.assertEquals(reader.maxDoc(), all.totalHits);
+        }
+    }
+
+    private static List<Integer> readAllPages(final BasicSearchExamples search, final Query query) throws Exception {
+        final List<Integer> docIds = new ArrayList<>();
+        SearchCursor cursor = null;
+        do {
+            final SearchResults page = search.searchAfter(query, cursor, 5);
+            for (SearchHit hit : page.getHits()) {
+                docIds.add(hit.getDocId());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return docIds;
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        executor.shutdown();
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+}
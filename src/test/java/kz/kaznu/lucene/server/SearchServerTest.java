@@ -0,0 +1,141 @@
+package kz.kaznu.lucene.server;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import kz.kaznu.lucene.BasicSearchExamples;
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.utils.Helper;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+public class SearchServerTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final MessageIndexer indexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void answersSearchesWithJson() throws Exception {
+        indexer.index(true, Helper.readDocumentsFromFile(
+                new File(getClass().getClassLoader().getResource("tutorial.json").getFile())));
+        try (IndexReader reader = indexer.readIndex();
+             SearchServer server = new SearchServer(new BasicSearchExamples(reader), ServerConfig.defaults())) {
+            final String base = "http://localhost:" + server.getPort();
+
+            final JsonObject found = get(base + "/search?limit=1&fields=title&q="
+                    + URLEncoder.encode("корреспондент", "UTF-8"), 200);
+            Assert.assertTrue(found.get("totalHits").getAsInt() > 1);
+            Assert.assertEquals(1, found.getAsJsonArray("hits").size());
+            final JsonObject hit = found.getAsJsonArray("hits").get(0).getAsJsonObject();
+            Assert.assertTrue(hit.has("score"));
+            Assert.assertTrue(hit.getAsJsonObject("fields").has("title"));
+            Assert.assertFalse(hit.getAsJsonObject("fields").has("body"));
+
+            // next page with the cursor of the first one
+            final JsonObject next = get(base + "/search?limit=1&fields=title&q="
+                    + URLEncoder.encode("корреспондент", "UTF-8") + "&after=" + found.get("next").getAsString(), 200);
+            Assert.assertNotEquals(hit.get("docId"), next.getAsJsonArray("hits").get(0).getAsJsonObject().get("docId"));
+
+            final JsonObject newest = get(base + "/search?type=range&from=0&sort=newest&limit=1", 200);
+            Assert.assertFalse("Sorted hits have no score",
+                    newest.getAsJsonArray("hits").get(0).getAsJsonObject().has("score"));
+
+            Assert.assertTrue(get(base + "/search?type=unknown&q=a", 400).has("error"));
+            Assert.assertTrue(get(base + "/search?limit=100000&q=a", 400).has("error"));
+            Assert.assertEquals(5, get(base + "/stats", 200).get("requests").getAsInt());
+        }
+    }
+
+    @Test
+    public void identicalRequestsInFlightRunOnce() {
+        final RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>();
+        final CompletableFuture<Integer> search = new CompletableFuture<>();
+        final CompletableFuture<Integer> first = coalescer.submit("погода", () -> search);
+        final CompletableFuture<Integer> second = coalescer.submit("погода", () -> {
+            throw new AssertionError("Should join the request in flight");
+        });
+        Assert.assertEquals(1, coalescer.getInFlight());
+        search.complete(42);
+        Assert.assertEquals(42, first.join().intValue());
+        Assert.assertEquals(42, second.join().intValue());
+        Assert.assertEquals(0, coalescer.getInFlight());
+
+        // finished requests are not reused
+        Assert.assertEquals(7, coalescer.submit("погода", () -> CompletableFuture.completedFuture(7)).join().intValue());
+        Assert.assertEquals(2, coalescer.getStarted());
+        Assert.assertEquals(1, coalescer.getCoalesced());
+    }
+
+    @Test
+    public void executorsRejectAndShedOverload() throws Exception {
+        final ServerConfig config = ServerConfig.defaults().withWorkers(1, 1).withMaxQueueMillis(50);
+        checkOverload(config);
+        try {
+            checkOverload(config.withVirtualThreads(true));
+        } catch (UnsupportedOperationException e) {
+            // built without the java21 profile or running on an older JDK
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        indexer.close();
+        FileUtils.deleteQuietly(new File(indexer.getPathToIndexFolder())); // remove indexes
+    }
+
+    private static void checkOverload(final ServerConfig config) throws Exception {
+        try (SearchExecutor executor = SearchExecutor.create(config)) {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CompletableFuture<Integer> running = executor.submit(() -> {
+                started.countDown();
+                release.await();
+                return 1;
+            });
+            started.await();
+            final CompletableFuture<Integer> waiting = executor.submit(() -> 2);
+            final CompletableFuture<Integer> rejected = executor.submit(() -> 3);
+            assertOverloaded(rejected);
+            Assert.assertEquals(1, executor.getWaiting());
+
+            Thread.sleep(100); // longer than maxQueueMillis
+            release.countDown();
+            Assert.assertEquals(1, running.get().intValue());
+            assertOverloaded(waiting);
+            Assert.assertEquals(config.toString(), 1, executor.getRejected());
+            Assert.assertEquals(config.toString(), 1, executor.getShed());
+        }
+    }
+
+    private static void assertOverloaded(final CompletableFuture<?> search) throws InterruptedException {
+        try {
+            search.get();
+            Assert.fail("Should be answered with 503");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof OverloadedException);
+        }
+    }
+
+    private static JsonObject get(final String url, final int expectedStatus) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        Assert.assertEquals(expectedStatus, connection.getResponseCode());
+        try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new JsonParser().parse(IOUtils.toString(in, StandardCharsets.UTF_8)).getAsJsonObject();
+        }
+    }
+}
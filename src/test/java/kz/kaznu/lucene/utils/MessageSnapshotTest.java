@@ -0,0 +1,135 @@
+package kz.kaznu.lucene.utils;
+
+import kz.kaznu.lucene.constants.Constants;
+import kz.kaznu.lucene.index.MessageIndexer;
+import kz.kaznu.lucene.index.MessageToDocument;
+import kz.kaznu.lucene.model.Message;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MessageSnapshotTest {
+    private final Random rnd = new Random(); // to generate safe name for index folder. After tests we removing folders
+    private final File snapshotFile = new File(Constants.TMP_DIR + "/tutorial_snapshot" + rnd.nextInt() + ".bin");
+    private final MessageIndexer jsonIndexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+    private final MessageIndexer snapshotIndexer = new MessageIndexer(Constants.TMP_DIR + "/tutorial_test" + rnd.nextInt());
+
+    @Test
+    public void snapshotHasTheMessagesOfJson() throws Exception {
+        final File json = new File(getClass().getClassLoader().getResource("tutorial.json").getFile());
+        final long converted = MessageSnapshotWriter.convert(json, snapshotFile);
+
+        // window smaller than a record, so every record is mapped on its own
+        try (MessageStream messages = Helper.openMessageStream(json);
+             MessageSnapshotReader snapshot = new MessageSnapshotReader(snapshotFile, 16)) {
+            Assert.assertEquals(converted, snapshot.size());
+            long read = 0;
+            while (messages.hasNext()) {
+                final Message message = messages.next();
+                Assert.assertTrue(snapshot.hasNext());
+                snapshot.next();
+                read++;
+                Assert.assertEquals(message.getTitle(), snapshot.getTitle());
+                Assert.assertEquals(message.getBody(), snapshot.getBody());
+                Assert.assertEquals(MessageToDocument.parseDate(message.getCreationDate()), snapshot.getCreationDate());
+                final String[] regions = new String[snapshot.getRegionCount()];
+                for (int i = 0; i < regions.length; i++) {
+                    regions[i] = snapshot.getRegion(i);
+                    Assert.assertEquals(regions[i], snapshot.getRegionBytes(i).utf8ToString());
+                }
+                Assert.assertArrayEquals(message.getRegion(), regions);
+            }
+            Assert.assertFalse(snapshot.hasNext());
+            Assert.assertEquals(converted, read);
+        }
+    }
+
+    @Test
+    public void snapshotIndexesLikeJson() throws Exception {
+        final File json = new File(getClass().getClassLoader().getResource("tutorial.json").getFile());
+        final Message withId = new Message();
+        withId.setNotificationId(42L);
+        withId.setTitle("Снег в Астане");
+        withId.setBody("корреспондент сообщает о снеге");
+        withId.setRegion(new String[]{"Астана", "GLOBAL"});
+        withId.setCreationDate("Feb 07, 2016 07:55:22 PM");
+        try (MessageSnapshotWriter writer = new MessageSnapshotWriter(snapshotFile);
+             MessageStream messages = Helper.openMessageStream(json)) {
+            while (messages.hasNext()) {
+                writer.add(messages.next());
+            }
+            writer.add(withId);
+            writer.finish();
+        }
+        jsonIndexer.index(true, json);
+        jsonIndexer.index(false, Arrays.asList(withId).iterator(), 1);
+        try (MessageSnapshotReader snapshot = new MessageSnapshotReader(snapshotFile)) {
+            Assert.assertEquals(snapshot.size(), snapshotIndexer.index(true, snapshot));
+        }
+
+        try (IndexReader fromJson = jsonIndexer.readIndex(); IndexReader fromSnapshot = snapshotIndexer.readIndex()) {
+            Assert.assertEquals(fromJson.numDocs(), fromSnapshot.numDocs());
+            for (String word : new String[]{"корреспондент", "снег", "игра"}) {
+                final TermQuery query = new TermQuery(new Term("body", word));
+                Assert.assertEquals(word, new IndexSearcher(fromJson).count(query),
+                        new IndexSearcher(fromSnapshot).count(query));
+            }
+            final SortedSetDocValues jsonRegions = MultiDocValues.getSortedSetValues(fromJson, "region");
+            final SortedSetDocValues snapshotRegions = MultiDocValues.getSortedSetValues(fromSnapshot, "region");
+            Assert.assertEquals(jsonRegions.getValueCount(), snapshotRegions.getValueCount());
+
+            final int doc = new IndexSearcher(fromSnapshot).search(new TermQuery(new Term("id", "42")), 1).scoreDocs[0].doc;
+            Assert.assertEquals(MessageToDocument.contentHash(withId.getTitle(), withId.getBody(), withId.getRegion(),
+                    withId.getCreationDate()),
+                    MultiDocValues.getNumericValues(fromSnapshot, "contentHash").get(doc));
+        }
+    }
+
+    @Test
+    public void unfinishedSnapshotIsRejected() throws Exception {
+        final Message message = new Message();
+        message.setTitle("Снег в Астане");
+        message.setCreationDate("Feb 07, 2016 07:55:22 PM");
+        try (MessageSnapshotWriter writer = new MessageSnapshotWriter(snapshotFile)) {
+            writer.add(message);
+        }
+        try (MessageSnapshotReader snapshot = new MessageSnapshotReader(snapshotFile)) {
+            Assert.fail("Snapshot without footer was read: " + snapshot.size());
+        } catch (IOException e) {
+            // expected
+        }
+
+        final File json = new File(snapshotFile.getPath() + ".json");
+        FileUtils.write(json, "[{\"title\": \"Снег\"}, {\"title\": ", StandardCharsets.UTF_8);
+        try {
+            MessageSnapshotWriter.convert(json, snapshotFile);
+            Assert.fail("Malformed JSON was converted");
+        } catch (IOException | RuntimeException e) {
+            Assert.assertFalse(snapshotFile.exists());
+        } finally {
+            FileUtils.deleteQuietly(json);
+        }
+    }
+
+    @After
+    public void removeIndexes() throws Exception {
+        jsonIndexer.close();
+        snapshotIndexer.close();
+        FileUtils.deleteQuietly(new File(jsonIndexer.getPathToIndexFolder())); // remove indexes
+        FileUtils.deleteQuietly(new File(snapshotIndexer.getPathToIndexFolder()));
+        FileUtils.deleteQuietly(snapshotFile);
+    }
+}